@@ -1,7 +1,9 @@
 package suncertify.business;
 
 import java.util.Map;
+import suncertify.db.AsyncCallback;
 import suncertify.db.Contractor;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.SecurityException;
 
@@ -31,7 +33,130 @@ public interface BookingBusinessAdapter {
     Map<Long, Contractor> searchContractors(String name, String location) 
             throws RecordNotFoundException;
     
-    
+    /**
+     * Populates an HashMap of <code>Long</code> record numbers (file positions) 
+     * and <code>Contractors</code> records when search criteria is entered, 
+     * either matching the beginning of the fields as 
+     * <code>searchContractors(name, location)</code> does, or matching them 
+     * exactly.  An exact match ignores case and surrounding white space and is 
+     * evaluated by the database, so only true matches are returned.  The 
+     * field titles record 0 comes first.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param exactMatch true if the name and location must match exactly.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException  if the record is deleted or doesn't 
+     * exist.
+     */
+    Map<Long, Contractor> searchContractors(String name, String location, 
+            boolean exactMatch) throws RecordNotFoundException;
+
+    /**
+     * Populates an ordered Map of <code>Long</code> record numbers (file 
+     * positions) and at most <code>limit</code> <code>Contractors</code> 
+     * records matching the search criteria, sorted on the server so that only 
+     * the records wanted are returned, e.g. the 20 cheapest contractors in a 
+     * city.  The field titles record 0 comes first, followed by the records in 
+     * ascending order of the sort field.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param exactMatch true if the name and location must match exactly.
+     * @param sortField the field to sort on, one of 
+     * <code>Contractor.NAME_FIELD_INDEX</code>, 
+     * <code>Contractor.SIZE_FIELD_INDEX</code> or 
+     * <code>Contractor.RATE_FIELD_INDEX</code>.
+     * @param limit the largest number of contractors to return.
+     * @return a <code>LinkedHashMap<Contractors, Long></code> of records numbers 
+     * and <code>Contractor</code> objects in sorted order.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    Map<Long, Contractor> searchContractors(String name, String location, 
+            boolean exactMatch, int sortField, int limit) 
+            throws RecordNotFoundException;
+
+    /**
+     * Populates an ordered Map of <code>Long</code> record numbers (file 
+     * positions) and at most <code>limit</code> <code>Contractors</code> 
+     * records whose number of staff and rate lie within the given bounds, e.g. 
+     * the cheapest plumbers with at least five staff.  The field titles 
+     * record 0 comes first, followed by the records in ascending order of 
+     * rate, cheapest first, then of record number.  A contractor without a 
+     * value in a bounded field is left out.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param specialty a type of work the contractors must offer e.g. 
+     * "Plumbing", an empty <code>String</code> matches any work.
+     * @param minSize the fewest staff, or <code>Long.MIN_VALUE</code>.
+     * @param maxSize the most staff, or <code>Long.MAX_VALUE</code>.
+     * @param minRate the lowest rate in cents, or <code>Long.MIN_VALUE</code>.
+     * @param maxRate the highest rate in cents, or <code>Long.MAX_VALUE</code>.
+     * @param limit the largest number of contractors to return, or -1 for 
+     * every matching contractor.
+     * @return a <code>LinkedHashMap<Contractors, Long></code> of records numbers 
+     * and <code>Contractor</code> objects in ascending order of rate.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    Map<Long, Contractor> searchContractorsByRange(String name, 
+            String location, String specialty, long minSize, long maxSize, 
+            long minRate, long maxRate, int limit) 
+            throws RecordNotFoundException;
+
+    /**
+     * Populates an HashMap of <code>Long</code> record numbers (file positions) 
+     * and <code>Contractors</code> records that are not booked when search 
+     * criteria is entered.  The field titles record 0 is included as with 
+     * <code>searchContractors()</code>.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    Map<Long, Contractor> searchAvailableContractors(String name, 
+            String location) throws RecordNotFoundException;
+
+    /**
+     * Populates an HashMap of <code>Long</code> record numbers (file positions) 
+     * and <code>Contractors</code> records offering the given types of work, 
+     * looked up through the specialties index of the database.  The field 
+     * titles record 0 is included as with <code>searchContractors()</code>.
+     * 
+     * @param location the location search criteria, an empty 
+     * <code>String</code> matches any location.
+     * @param specialties the types of work to look for e.g. "Electrical".
+     * @param matchAll true if a contractor must offer every type of work, 
+     * false if offering any one of them is enough.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    Map<Long, Contractor> searchContractorsBySpecialties(String location, 
+            String[] specialties, boolean matchAll) 
+            throws RecordNotFoundException;
+
+    /**
+     * Populates an HashMap of <code>Long</code> record numbers (file positions) 
+     * and <code>Contractors</code> records booked by a customer, looked up 
+     * through the owner index of the database.  The field titles record 0 is 
+     * included as with <code>searchContractors()</code>.
+     * 
+     * @param custNo the eight digit customer id.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    Map<Long, Contractor> getCustomerBookings(String custNo) 
+            throws RecordNotFoundException;
 
     /**
      * Books a particular Contractor using the combined name and location field 
@@ -46,10 +171,43 @@ public interface BookingBusinessAdapter {
      * than lockCookie.
      * @throws RecordAlreadyBookedException if the record already has a customer 
      * number
+     * @throws LockTimeoutException if another client holds the record for 
+     * longer than the booking is allowed to wait.
+     * @throws IllegalArgumentException if the customer id is not eight 
+     * digits.
      */
     void bookContractor(long recNo, String custNo) 
             throws RecordNotFoundException, SecurityException, 
-            RecordAlreadyBookedException;
+            RecordAlreadyBookedException, LockTimeoutException;
+    
+    /**
+     * Books a particular Contractor like <code>bookContractor()</code>, but 
+     * without holding up the calling thread while another client has the 
+     * record locked.  The callback is told once the booking has been made, 
+     * or given the exception <code>bookContractor()</code> would have thrown, 
+     * possibly on another thread after this method has returned.
+     * 
+     * @param recNo the record number (file position).
+     * @param custNo the eight digit customer id.
+     * @param callback the callback told the outcome of the booking.
+     */
+    void bookContractor(long recNo, String custNo, 
+            AsyncCallback<Void> callback);
+    
+    /**
+     * Books a batch of contractors in one call, e.g. the jobs assigned at the 
+     * start of a shift.  The contractors that exist and are not booked are 
+     * locked together, in ascending record number order so that concurrent 
+     * batches cannot deadlock, waiting no longer than the lock timeout for 
+     * the whole batch.  Each booking still succeeds or fails on its own.
+     * 
+     * @param bookings the eight digit customer id to book each record number 
+     * (file position) for.
+     * @return the outcome of each booking, in the order of the bookings.
+     * @throws IllegalArgumentException if any customer id is not eight 
+     * digits, in which case none of the records is booked.
+     */
+    Map<Long, BookingOutcome> bookContractors(Map<Long, String> bookings);
     
     /**
      * Checks to see if a particular contractor record has already been booked.
@@ -2,10 +2,22 @@ package suncertify.business;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import suncertify.db.AsyncCallback;
+import suncertify.db.AsyncDBAccess;
 import suncertify.db.Contractor;
-import suncertify.db.DBAccess;
+import suncertify.db.ExtendedDBAccess;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.SecurityException;
 
@@ -20,20 +32,94 @@ import suncertify.db.SecurityException;
 public class BookingBusinessAdapterImp implements BookingBusinessAdapter {
     
     /**
-     * Holds an instance of <code>DBAccess</code> class.
+     * The default longest time in milliseconds a booking waits for another 
+     * client to release the contractor record.
      */
-    private DBAccess dataAccess;
+    public static final long DEFAULT_LOCK_TIMEOUT = 10000l;
+    
+    /**
+     * Matches a valid customer id, which is eight digits.
+     */
+    private static final Pattern CUSTOMER_NUMBER = Pattern.compile("\\d{8}");
+    
+    /**
+     * Holds an instance of <code>ExtendedDBAccess</code> class.
+     */
+    private ExtendedDBAccess dataAccess;
+    
+    /**
+     * Holds the <code>AsyncDBAccess</code> used to wait for record locks 
+     * without a thread, or null if bookings wait on the calling thread.
+     */
+    private final AsyncDBAccess asyncAccess;
+    
+    /**
+     * Holds the longest time in milliseconds a booking waits for the record 
+     * lock.
+     */
+    private final long lockTimeout;
 
     /**
-     * The default constructor that take a <code>DBAccess</code> object.
+     * The default constructor that take a <code>ExtendedDBAccess</code> object.
      * 
-     * @param dataAccess the <code>DBAccess</code> instance.
+     * @param dataAccess the <code>ExtendedDBAccess</code> instance.
      * @throws FileNotFoundException if the database file cannot be found.
      * @throws IOException if the database file cannot be read or written to.
      */
-    public BookingBusinessAdapterImp(DBAccess dataAccess) 
+    public BookingBusinessAdapterImp(ExtendedDBAccess dataAccess) 
+            throws FileNotFoundException, IOException {
+        this(dataAccess, BookingBusinessAdapterImp.DEFAULT_LOCK_TIMEOUT);
+    }
+
+    /**
+     * This constructor also takes the longest time a booking waits for 
+     * another client to release the contractor record.
+     * 
+     * @param dataAccess the <code>ExtendedDBAccess</code> instance.
+     * @param lockTimeout the lock timeout in milliseconds.
+     * @throws FileNotFoundException if the database file cannot be found.
+     * @throws IOException if the database file cannot be read or written to.
+     */
+    public BookingBusinessAdapterImp(ExtendedDBAccess dataAccess, 
+            long lockTimeout) throws FileNotFoundException, IOException {
+        this(dataAccess, null, lockTimeout);
+    }
+
+    /**
+     * This constructor also takes an <code>AsyncDBAccess</code> to the same 
+     * database, owned by the same client as the <code>ExtendedDBAccess</code>, 
+     * which the asynchronous <code>bookContractor()</code> queues its lock 
+     * requests through.
+     * 
+     * @param dataAccess the <code>ExtendedDBAccess</code> instance.
+     * @param asyncAccess the <code>AsyncDBAccess</code> instance.
+     * @throws FileNotFoundException if the database file cannot be found.
+     * @throws IOException if the database file cannot be read or written to.
+     */
+    public BookingBusinessAdapterImp(ExtendedDBAccess dataAccess, 
+            AsyncDBAccess asyncAccess) 
+            throws FileNotFoundException, IOException {
+        this(dataAccess, asyncAccess, 
+                BookingBusinessAdapterImp.DEFAULT_LOCK_TIMEOUT);
+    }
+
+    /**
+     * This constructor takes both data access objects and the longest time a 
+     * booking waits for another client to release the contractor record.
+     * 
+     * @param dataAccess the <code>ExtendedDBAccess</code> instance.
+     * @param asyncAccess the <code>AsyncDBAccess</code> instance, or null if 
+     * bookings wait on the calling thread.
+     * @param lockTimeout the lock timeout in milliseconds.
+     * @throws FileNotFoundException if the database file cannot be found.
+     * @throws IOException if the database file cannot be read or written to.
+     */
+    public BookingBusinessAdapterImp(ExtendedDBAccess dataAccess, 
+            AsyncDBAccess asyncAccess, long lockTimeout) 
             throws FileNotFoundException, IOException {
         this.dataAccess = dataAccess;
+        this.asyncAccess = asyncAccess;
+        this.lockTimeout = lockTimeout;
     }
 
     /**
@@ -66,21 +152,272 @@ public class BookingBusinessAdapterImp implements BookingBusinessAdapter {
             criteria[1] = location;
         }
         
-        //Create a HashMap the collect the searched contractor records.
-        Map<Long, Contractor> contractors = new HashMap<Long, Contractor>();
+        //Create a LinkedHashMap the collect the searched contractor records in 
+        //the ascending record number order they are found.
+        Map<Long, Contractor> contractors = new LinkedHashMap<Long, Contractor>();
+        
+        //Finds and reads the contractors that match the search criteria in a 
+        //single pass and populates the hashMap with the record numbers and 
+        //Contractor objets.
+        for (Map.Entry<Long, String[]> record 
+                : dataAccess.readByCriteria(criteria).entrySet()) {
+            contractors.put(record.getKey(), new Contractor(record.getValue()));
+        }
+        
+        //returns the HashMap.
+        return contractors;
+    }
+
+    /**
+     * Populates an HashMap of <code>Long</code> record numbers (file positions) 
+     * and <code>Contractors</code> records whose name and location begin with, 
+     * or exactly match, the search criteria.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param exactMatch true if the name and location must match exactly.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public Map<Long, Contractor> searchContractors(String name, String location, 
+            boolean exactMatch) throws RecordNotFoundException {
+        if (!exactMatch) {
+            return this.searchContractors(name, location);
+        }
+        
+        //Creates a criteria array holding the name and location, if entered.
+        String[] criteria = new String[2];
+        if (!name.equals("")) {
+            criteria[0] = name;
+        }
+        if (!location.equals("")) {
+            criteria[1] = location;
+        }
+        
+        //Retrieve the exactly matching contractor numbers and populates the 
+        //map with the record numbers and Contractor objets.
+        return this.readContractors(dataAccess.findExact(criteria));
+    }
+
+    /**
+     * Populates an ordered Map of <code>Long</code> record numbers (file 
+     * positions) and at most <code>limit</code> <code>Contractors</code> 
+     * records matching the search criteria, in ascending order of the sort 
+     * field.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param exactMatch true if the name and location must match exactly.
+     * @param sortField the Name, Size or Rate field position.
+     * @param limit the largest number of contractors to return.
+     * @return a <code>LinkedHashMap<Contractors, Long></code> of records numbers 
+     * and <code>Contractor</code> objects in sorted order.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public Map<Long, Contractor> searchContractors(String name, String location, 
+            boolean exactMatch, int sortField, int limit) 
+            throws RecordNotFoundException {
+        //Creates a criteria array holding the name and location, if entered.
+        String[] criteria = new String[2];
+        if (!name.equals("")) {
+            criteria[0] = name;
+        }
+        if (!location.equals("")) {
+            criteria[1] = location;
+        }
         
-        //Retrieve the contractor numbers that match the search criteria.
-        long[] recNos = dataAccess.findByCriteria(criteria);
+        //Retrieve the top contractor numbers and populates the map with the 
+        //record numbers and Contractor objets.
+        return this.readContractors(
+                dataAccess.findTop(criteria, exactMatch, sortField, limit));
+    }
+
+    /**
+     * Populates an ordered Map of <code>Long</code> record numbers (file 
+     * positions) and at most <code>limit</code> <code>Contractors</code> 
+     * records whose number of staff and rate lie within the given bounds, in 
+     * ascending order of rate.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param specialty a type of work the contractors must offer, an empty 
+     * <code>String</code> matches any work.
+     * @param minSize the fewest staff.
+     * @param maxSize the most staff.
+     * @param minRate the lowest rate in cents.
+     * @param maxRate the highest rate in cents.
+     * @param limit the largest number of contractors to return, or -1 for 
+     * every matching contractor.
+     * @return a <code>LinkedHashMap<Contractors, Long></code> of records numbers 
+     * and <code>Contractor</code> objects in ascending order of rate.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public Map<Long, Contractor> searchContractorsByRange(String name, 
+            String location, String specialty, long minSize, long maxSize, 
+            long minRate, long maxRate, int limit) 
+            throws RecordNotFoundException {
+        //Creates a criteria array holding the name and location, if entered.
+        String[] criteria = new String[2];
+        if (!name.equals("")) {
+            criteria[0] = name;
+        }
+        if (!location.equals("")) {
+            criteria[1] = location;
+        }
+        
+        //Creates the bounds of the numeric fields.
+        long[] minimums = new long[Contractor.RATE_FIELD_INDEX + 1];
+        long[] maximums = new long[Contractor.RATE_FIELD_INDEX + 1];
+        Arrays.fill(minimums, Long.MIN_VALUE);
+        Arrays.fill(maximums, Long.MAX_VALUE);
+        minimums[Contractor.SIZE_FIELD_INDEX] = minSize;
+        maximums[Contractor.SIZE_FIELD_INDEX] = maxSize;
+        minimums[Contractor.RATE_FIELD_INDEX] = minRate;
+        maximums[Contractor.RATE_FIELD_INDEX] = maxRate;
+        long[] recNos = dataAccess.findByRange(criteria, minimums, maximums);
+        
+        //Keeps the contractors offering the type of work, looked up through 
+        //the specialties index so that it need not be the first one listed.
+        Set<Long> offering = null;
+        if (!specialty.equals("")) {
+            offering = new HashSet<Long>();
+            for (long recNo : dataAccess.findBySpecialties(
+                    criteria, new String[] {specialty}, false)) {
+                offering.add(recNo);
+            }
+        }
         
-        //if (recNos)
-        //Populates the hashMap with the record numbers and Contractor objets.
+        //Keeps the cheapest contractors, up to the limit, in rate order.
+        List<Long> matches = new ArrayList<Long>();
         for (long recNo : recNos) {
-            Contractor contractor = null;
-            contractor = new Contractor(dataAccess.readRecord(recNo));
-            contractors.put(recNo, contractor);
+            if (limit >= 0 && matches.size() == limit) {
+                break;
+            }
+            if (offering == null || offering.contains(recNo)) {
+                matches.add(recNo);
+            }
+        }
+        long[] matchingRecNos = new long[matches.size()];
+        for (int i = 0; i < matchingRecNos.length; i++) {
+            matchingRecNos[i] = matches.get(i);
         }
         
-        //returns the HashMap.
+        //Retrieve the contractors and populates the map with the record 
+        //numbers and Contractor objets.
+        return this.readContractors(matchingRecNos);
+    }
+
+    /**
+     * Populates an HashMap of <code>Long</code> record numbers (file positions) 
+     * and <code>Contractors</code> records that are not booked when search 
+     * criteria is entered, looked up through the availability bitmap of the 
+     * database.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public Map<Long, Contractor> searchAvailableContractors(String name, 
+            String location) throws RecordNotFoundException {
+        //Creates a criteria array holding the name and location, if entered.
+        String[] criteria = new String[2];
+        if (!name.equals("")) {
+            criteria[0] = name;
+        }
+        if (!location.equals("")) {
+            criteria[1] = location;
+        }
+        
+        //Retrieve the available contractor numbers that match the search 
+        //criteria and populates the hashMap with the record numbers and 
+        //Contractor objets.
+        return this.readContractors(dataAccess.findAvailable(criteria));
+    }
+
+    /**
+     * Populates an HashMap of <code>Long</code> record numbers (file positions) 
+     * and <code>Contractors</code> records offering the given types of work, 
+     * looked up through the specialties index of the database.
+     * 
+     * @param location the location search criteria, an empty 
+     * <code>String</code> matches any location.
+     * @param specialties the types of work to look for e.g. "Electrical".
+     * @param matchAll true if a contractor must offer every type of work, 
+     * false if offering any one of them is enough.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public Map<Long, Contractor> searchContractorsBySpecialties(String location, 
+            String[] specialties, boolean matchAll) 
+            throws RecordNotFoundException {
+        //Creates a criteria array holding the location, if one was entered.
+        String[] criteria = new String[2];
+        if (!location.equals("")) {
+            criteria[1] = location;
+        }
+        
+        //Retrieve the contractor numbers offering the types of work and 
+        //populates the hashMap with the record numbers and Contractor objets.
+        return this.readContractors(
+                dataAccess.findBySpecialties(criteria, specialties, matchAll));
+    }
+
+    /**
+     * Populates an HashMap of <code>Long</code> record numbers (file positions) 
+     * and <code>Contractors</code> records booked by a customer, looked up 
+     * through the owner index of the database.
+     * 
+     * @param custNo the eight digit customer id.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public Map<Long, Contractor> getCustomerBookings(String custNo) 
+            throws RecordNotFoundException {
+        //Retrieve the contractor numbers booked by the customer and populates 
+        //the hashMap with the record numbers and Contractor objets.
+        return this.readContractors(dataAccess.findByOwner(custNo));
+    }
+    
+    /**
+     * This private method reads the field titles record and the found records 
+     * with a single bulk read, and collects them in a LinkedHashMap in the 
+     * order they were found.  Records deleted since they were found are left 
+     * out.
+     * 
+     * @param recNos the record numbers (file positions) found by a search.
+     * @return a <code>LinkedHashMap<Contractors, Long></code> of records 
+     * numbers and <code>Contractor</code> objects, starting with the field 
+     * titles record used for the table headers.
+     */
+    private Map<Long, Contractor> readContractors(long[] recNos) {
+        //Puts the field titles record in front of the found records.
+        long[] allRecNos = new long[recNos.length + 1];
+        System.arraycopy(recNos, 0, allRecNos, 1, recNos.length);
+        String[][] records = dataAccess.readRecords(allRecNos);
+        
+        Map<Long, Contractor> contractors = new LinkedHashMap<Long, Contractor>();
+        for (int i = 0; i < allRecNos.length; i++) {
+            if (records[i] != null) {
+                contractors.put(allRecNos[i], new Contractor(records[i]));
+            }
+        }
         return contractors;
     }
 
@@ -97,16 +434,144 @@ public class BookingBusinessAdapterImp implements BookingBusinessAdapter {
      * than lockCookie.
      * @throws RecordAlreadyBookedException if the record already has a customer 
      * number stored in the owner field i.e. already booked.
+     * @throws LockTimeoutException if another client holds the record for 
+     * longer than the lock timeout.
+     * @throws IllegalArgumentException if the customer id is not eight 
+     * digits.
      */
     @Override
     public void bookContractor(long recNo, String custNo) 
             throws SecurityException, RecordAlreadyBookedException, 
-            RecordNotFoundException {
-        long cookie = 0l;
+            RecordNotFoundException, LockTimeoutException {
+        BookingBusinessAdapterImp.checkCustomerNumber(custNo);
+        
+        //Books the record in a single call if it is not booked already.  If a 
+        //client has the record locked it is booked as before, once the lock 
+        //has been released.
+        try {
+            if (!dataAccess.compareAndSetOwner(recNo, "", custNo)) {
+                throw new RecordAlreadyBookedException("The contractor is "
+                        + "already booked");
+            }
+            return;
+        } catch (SecurityException ex) {
+            //The record is locked so the booking waits for it below.
+        }
+        
+        //Lock the record and store the record lock cookie, waiting no longer 
+        //than the lock timeout.  There is nothing to unlock if the lock is not 
+        //obtained.
+        long cookie = dataAccess.tryLockRecord(recNo, this.lockTimeout);
+        this.bookLockedRecord(recNo, custNo, cookie);
+    }
+
+    /**
+     * Books a particular Contractor like <code>bookContractor()</code>.  If 
+     * another client has the record locked, the lock request is queued 
+     * rather than waited for, and the booking is made by the database I/O 
+     * thread once the record has been handed over.  Without an 
+     * <code>AsyncDBAccess</code> the booking is made on the calling thread.
+     * 
+     * @param recNo the record position number.
+     * @param custNo the eight digit customer id.
+     * @param callback the callback told the outcome of the booking.
+     */
+    @Override
+    public void bookContractor(final long recNo, final String custNo, 
+            final AsyncCallback<Void> callback) {
+        if (this.asyncAccess == null) {
+            try {
+                this.bookContractor(recNo, custNo);
+            } catch (Exception ex) {
+                callback.failed(ex);
+                return;
+            }
+            callback.completed(null);
+            return;
+        }
         try {
-            //Lock the record and store the record lock cookie.
-            cookie = dataAccess.lockRecord(recNo);
+            BookingBusinessAdapterImp.checkCustomerNumber(custNo);
+        } catch (IllegalArgumentException ex) {
+            callback.failed(ex);
+            return;
+        }
+        
+        //Books the record in a single call if it is not booked already.
+        try {
+            if (!dataAccess.compareAndSetOwner(recNo, "", custNo)) {
+                callback.failed(new RecordAlreadyBookedException("The "
+                        + "contractor is already booked"));
+                return;
+            }
+            callback.completed(null);
+            return;
+        } catch (SecurityException ex) {
+            //The record is locked so the booking waits for it below.
+        } catch (RecordNotFoundException ex) {
+            callback.failed(ex);
+            return;
+        }
+        
+        //Queues the lock request, which the reaper withdraws if the record 
+        //has not been handed over before the lock timeout, and makes the 
+        //booking once the lock has been granted.
+        this.asyncAccess.lockRecord(recNo, this.lockTimeout).addCallback(
+                new AsyncCallback<Long>() {
+            
+            @Override
+            public void completed(Long cookie) {
+                try {
+                    BookingBusinessAdapterImp.this.bookLockedRecord(
+                            recNo, custNo, cookie);
+                } catch (Exception ex) {
+                    callback.failed(ex);
+                    return;
+                }
+                callback.completed(null);
+            }
+            
+            @Override
+            public void failed(Exception ex) {
+                callback.failed(ex);
+            }
             
+        });
+    }
+
+    /**
+     * This private method checks that a customer id is eight digits before 
+     * it is stored in the Owner field of a record.
+     * 
+     * @param custNo the customer id.
+     * @throws IllegalArgumentException if the customer id is null or not 
+     * eight digits.
+     */
+    private static void checkCustomerNumber(String custNo) {
+        if (custNo == null || !BookingBusinessAdapterImp.CUSTOMER_NUMBER
+                .matcher(custNo).matches()) {
+            throw new IllegalArgumentException(
+                    "The customer id must be eight digits: " + custNo);
+        }
+    }
+
+    /**
+     * This private method books a record that has been locked with the 
+     * given cookie, and unlocks it whatever the outcome.
+     * 
+     * @param recNo the record position number.
+     * @param custNo the eight digit customer id.
+     * @param cookie the cookie the record is locked with.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     * @throws SecurityException if the record is locked with a cookie other 
+     * than lockCookie.
+     * @throws RecordAlreadyBookedException if the record already has a customer 
+     * number stored in the owner field i.e. already booked.
+     */
+    private void bookLockedRecord(long recNo, String custNo, long cookie) 
+            throws RecordNotFoundException, SecurityException, 
+            RecordAlreadyBookedException {
+        try {
             //Checks to see if the record is already booked, if it is a 
             //RecordAlreadyBookedException is thrown.
             Contractor contractor = new Contractor(dataAccess.readRecord(recNo));
@@ -129,6 +594,144 @@ public class BookingBusinessAdapterImp implements BookingBusinessAdapter {
         }
     }
 
+    /**
+     * Books a batch of contractors in one pass.  Every record is first 
+     * checked to exist and not be booked, then the remaining records are 
+     * locked in one group under a single deadline, updated and unlocked 
+     * together.  Any failure is recorded as the outcome of that booking 
+     * rather than stopping the batch.
+     * 
+     * @param bookings the eight digit customer id to book each record number 
+     * (file position) for.
+     * @return the outcome of each booking, in the order of the bookings.
+     * @throws IllegalArgumentException if any customer id is not eight 
+     * digits, in which case none of the records is booked.
+     */
+    @Override
+    public Map<Long, BookingOutcome> bookContractors(
+            Map<Long, String> bookings) {
+        for (String custNo : bookings.values()) {
+            BookingBusinessAdapterImp.checkCustomerNumber(custNo);
+        }
+        
+        Map<Long, BookingOutcome> sortedOutcomes 
+                = new TreeMap<Long, BookingOutcome>();
+        SortedMap<Long, String> freeBookings 
+                = new TreeMap<Long, String>(bookings);
+        while (!freeBookings.isEmpty()) {
+            //Checks the whole batch first, so that only the records that 
+            //exist and are not booked are locked.
+            Iterator<Map.Entry<Long, String>> checks 
+                    = freeBookings.entrySet().iterator();
+            while (checks.hasNext()) {
+                Long recNo = checks.next().getKey();
+                try {
+                    if (dataAccess.isBooked(recNo)) {
+                        sortedOutcomes.put(recNo, 
+                                BookingOutcome.ALREADY_BOOKED);
+                        checks.remove();
+                    }
+                } catch (RecordNotFoundException ex) {
+                    sortedOutcomes.put(recNo, BookingOutcome.NOT_FOUND);
+                    checks.remove();
+                }
+            }
+            if (freeBookings.isEmpty()) {
+                break;
+            }
+            
+            //Locks the free records together, waiting no longer than the lock 
+            //timeout for the whole group.
+            long[] recNos = new long[freeBookings.size()];
+            int i = 0;
+            for (Long recNo : freeBookings.keySet()) {
+                recNos[i++] = recNo;
+            }
+            long cookie;
+            try {
+                cookie = dataAccess.tryLockRecords(recNos, this.lockTimeout);
+            } catch (RecordNotFoundException ex) {
+                //A record was deleted since it was checked, so the batch is 
+                //checked again.
+                continue;
+            } catch (LockTimeoutException ex) {
+                for (Long recNo : freeBookings.keySet()) {
+                    sortedOutcomes.put(recNo, BookingOutcome.LOCKED);
+                }
+                break;
+            }
+            
+            try {
+                for (Map.Entry<Long, String> booking 
+                        : freeBookings.entrySet()) {
+                    sortedOutcomes.put(booking.getKey(), this.bookHeldRecord(
+                            booking.getKey(), booking.getValue(), cookie));
+                }
+            } finally {
+                this.unlockGroup(recNos, cookie);
+            }
+            break;
+        }
+        
+        //Returns the outcomes in the order the bookings were given.
+        Map<Long, BookingOutcome> outcomes 
+                = new LinkedHashMap<Long, BookingOutcome>();
+        for (Long recNo : bookings.keySet()) {
+            outcomes.put(recNo, sortedOutcomes.get(recNo));
+        }
+        return outcomes;
+    }
+
+    /**
+     * This private method books one record of a locked batch, checking again 
+     * that it was not booked before the lock was taken.
+     * 
+     * @param recNo the record position number.
+     * @param custNo the eight digit customer id.
+     * @param cookie the composite cookie the batch is locked with.
+     * @return the outcome of the booking.
+     */
+    private BookingOutcome bookHeldRecord(long recNo, String custNo, 
+            long cookie) {
+        try {
+            Contractor contractor = new Contractor(dataAccess.readRecord(recNo));
+            if (!(contractor.getOwner().equals(""))) {
+                return BookingOutcome.ALREADY_BOOKED;
+            }
+            String[] data = new String[6];
+            data[5] = custNo;
+            dataAccess.updateRecord(recNo, data, cookie);
+            return BookingOutcome.BOOKED;
+        } catch (RecordNotFoundException ex) {
+            return BookingOutcome.NOT_FOUND;
+        } catch (SecurityException ex) {
+            //The lease of the lock ran out before the record was updated.
+            return BookingOutcome.LOCKED;
+        }
+    }
+
+    /**
+     * This private method unlocks a batch.  If the lease of any record has 
+     * run out the group cannot be unlocked as a whole, so the records still 
+     * held are unlocked one at a time.
+     * 
+     * @param recNos the record numbers of the batch.
+     * @param cookie the composite cookie the batch is locked with.
+     */
+    private void unlockGroup(long[] recNos, long cookie) {
+        try {
+            dataAccess.unlockRecords(recNos, cookie);
+        } catch (SecurityException ex) {
+            for (long recNo : recNos) {
+                try {
+                    dataAccess.unlock(recNo, cookie);
+                } catch (SecurityException lostEx) {
+                    //The record has already been released by the reaper.
+                }
+            }
+        }
+    }
+
     /**
      * Checks to see if a particular contractor record has already been booked.
      * i.e. has a record has an eight digit customer number in the owner field.
@@ -139,12 +742,9 @@ public class BookingBusinessAdapterImp implements BookingBusinessAdapter {
      */
     @Override
     public boolean isContractorBooked(long recNo) throws RecordNotFoundException {
-        String[] record = this.dataAccess.readRecord(recNo);
-        if (record[5].trim().equals("")) {
-            return false;
-        } else {
-            return true;
-        }
+        //The database keeps track of the booked records, so the record itself 
+        //does not need to be read.
+        return this.dataAccess.isBooked(recNo);
     }
     
 }
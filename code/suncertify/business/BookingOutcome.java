@@ -0,0 +1,33 @@
+package suncertify.business;
+
+/**
+ * The outcome of booking a single contractor in a bulk booking, so that each 
+ * booking in a batch can succeed or fail on its own.
+ * 
+ * @author Robert Black
+ * @version 1.0
+ */
+public enum BookingOutcome {
+    
+    /**
+     * The contractor has been booked for the customer.
+     */
+    BOOKED,
+    
+    /**
+     * The contractor was already booked, so it was left unchanged.
+     */
+    ALREADY_BOOKED,
+    
+    /**
+     * The contractor record is deleted or doesn't exist.
+     */
+    NOT_FOUND,
+    
+    /**
+     * Another client held the contractor record for longer than the lock 
+     * timeout, so the booking can be tried again later.
+     */
+    LOCKED
+    
+}
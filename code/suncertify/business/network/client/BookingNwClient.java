@@ -4,19 +4,48 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.swing.JOptionPane;
+import suncertify.business.network.commands.Command;
+import suncertify.business.network.protocol.BookingProtocol;
+import suncertify.business.network.protocol.MessageFrames;
+import suncertify.business.network.protocol.ProtocolSession;
+import suncertify.business.network.protocol.ResponseCompression;
 import suncertify.presentation.ApplicationRunner;
 
 /**
  * This class is responsible for communicating with the booking server using 
- * sockets.
+ * sockets.  On connecting it agrees a protocol version with the server, then 
+ * each command is sent as a length prefixed <code>BookingProtocol</code> 
+ * request with its own request id.<br/><br/>
+ * 
+ * Sending a command does not wait for its response, so several commands may 
+ * be in flight over the one connection at once and the server may answer them 
+ * in any order.  A reader thread reads each response as it arrives, reads the 
+ * outcome into the command with the same request id and completes the 
+ * <code>Future</code> returned when the command was sent.<br/><br/>
+ * 
+ * Unless <code>dataFile.compression</code> is set to <code>false</code> in the 
+ * properties file, the client asks the server to compress large responses, 
+ * which makes searches quicker over a slow link.
  * 
  * @author Robert Black
  * @version 1.0
@@ -43,30 +72,48 @@ public class BookingNwClient {
      */
     private int port;
     
+    /**
+     * True if the client asks the server to compress large responses.
+     */
+    private boolean compression;
+    
     /**
      * Holds the clients socket object.
      */
     private Socket socket;
     
     /**
-     * Holds the socket input stream.
+     * Holds the socket output stream.
      */
-    private InputStream inStream;
+    private OutputStream outStream;
     
     /**
-     * Holds the socket object input stream.
+     * Holds what the client and server have agreed for the connection.
      */
-    private ObjectInputStream objectInStream;
+    private ProtocolSession session;
     
     /**
-     * Holds the socket output stream.
+     * Holds the requests sent on the current connection and waiting for their 
+     * responses, keyed by request id.
      */
-    private OutputStream outStream;
+    private volatile ConcurrentMap<Integer, PendingRequest> pendingRequests 
+            = new ConcurrentHashMap<Integer, PendingRequest>();
     
     /**
-     * Holds the socket object output stream.
+     * True while the current connection can be used.
      */
-    private ObjectOutputStream objectOutStream;
+    private volatile boolean connected = false;
+    
+    /**
+     * Holds the last request id given out.
+     */
+    private final AtomicInteger lastRequestId = new AtomicInteger();
+    
+    /**
+     * Guards connecting and writing to the socket, so that requests sent by 
+     * different threads are not interleaved.
+     */
+    private final Lock connectionLock = new ReentrantLock();
 
     /**
      * The default constructor.
@@ -94,28 +141,49 @@ public class BookingNwClient {
                 applicationProperties.getProperty("dataFile.serverPort").trim();
         this.host = applicationProperties.getProperty("dataFile.serverIp").trim();
         this.port = Integer.valueOf(propertiesPort);
+        
+        //Compression is optional and asked for unless switched off.
+        this.compression = Boolean.parseBoolean(applicationProperties
+                .getProperty("dataFile.compression", "true").trim());
     }
     
     /**
-     * This method is responsible for connecting to the server.
+     * This method is responsible for connecting to the server.  Any previous 
+     * connection is closed, which fails the requests still waiting on it.
      */
     public void connect() {
+        this.connectionLock.lock();
         try {
+            this.close();
+            
             //Create the client socket.
             this.socket = new Socket(host, port);
             
-            //Create the out stream.
-            this.outStream = this.socket.getOutputStream();
-            this.objectOutStream = new ObjectOutputStream(outStream);
+            this.socket.setTcpNoDelay(true);
             
-            //Makes sure all information has been sent to the server to prevent
-            //a deadlock with the objectInputStream blocking trying to read the 
-            //servers handshake.
-            this.objectOutStream.flush();
+            //Create the out stream and the input stream.
+            this.outStream 
+                    = new BufferedOutputStream(this.socket.getOutputStream());
+            InputStream inStream 
+                    = new BufferedInputStream(this.socket.getInputStream());
             
-            //Create the input stream.
-            this.inStream = this.socket.getInputStream();
-            this.objectInStream = new ObjectInputStream(this.inStream);
+            //Agrees the protocol version with the server, asking for one with 
+            //request ids, and whether large responses are compressed.
+            this.session = new ProtocolSession();
+            MessageFrames.writeFrame(this.outStream, BookingProtocol
+                    .encodeHello(BookingProtocol.REQUEST_ID_VERSION, 
+                    this.compression));
+            BookingProtocol.readHelloAnswer(
+                    this.session, MessageFrames.readFrame(inStream));
+            
+            //Starts reading the responses of the new connection.
+            this.pendingRequests 
+                    = new ConcurrentHashMap<Integer, PendingRequest>();
+            Thread reader = new Thread(new ResponseReader(inStream, 
+                    this.session, this.pendingRequests), "Booking client reader");
+            reader.setDaemon(true);
+            reader.start();
+            this.connected = true;
         } catch (UnknownHostException ex) {
             JOptionPane.showMessageDialog(
                     null, ex.getMessage() + "\nis not a valid address\nNetwork "
@@ -125,86 +193,247 @@ public class BookingNwClient {
             JOptionPane.showMessageDialog(
                     null, ex.getMessage() + "\nNetwork Client Shuting down");
             System.exit(0);
+        } finally {
+            this.connectionLock.unlock();
         }
     }
     
     /**
-     * This method is responsible for sending an <code>Object</code> to the 
-     * server.
+     * This method is responsible for sending a <code>Command</code> to the 
+     * server without waiting for its response.  If the connection has been 
+     * lost it is made again first.
      * 
-     * @param obj the object to be sent.
+     * @param command the command to be sent.
+     * @return the <code>Future</code> that gives the command once its outcome 
+     * has been read into it.
      * @throws IOException if there is a communication problem with the serve.
      */
-    public void send(Object obj) throws IOException {
-        //Initailise an integer used to retry ten times.
-        int retry = this.MAXRETRIES;
+    public Future<Command> submit(Command command) throws IOException {
+        PendingRequest pending = new PendingRequest(command);
         
-        //The while loop is used for retrys.
-        while (retry > 0) {
-            try {
-                //Writes the object to the stream
-                this.objectOutStream.writeObject(obj);
-                this.objectOutStream.flush();
-                
-                //If successful (no exceptions) then the retry variable is set to 
-                //0 to leave the while loop.
-                retry = 0;
-            } catch (IOException ex) {
-                //Counnts down the send trys.
-                retry--;
-                
-                //If ten unsuccessful trys, then throws and exception
-                if (retry == 0) {
-                    throw ex;
-                }
+        this.connectionLock.lock();
+        try {
+            if (!this.connected) {
+                this.connect();
+            }
+            
+            //Encodes the command once, ready for any retries.
+            int requestId = this.lastRequestId.incrementAndGet();
+            byte[] request = BookingProtocol.encodeRequest(command, requestId);
+            
+            //Initailise an integer used to retry ten times.
+            int retry = this.MAXRETRIES;
+            
+            //The while loop is used for retrys.
+            while (retry > 0) {
+                //The request is waited for on the connection it is sent on.
+                ConcurrentMap<Integer, PendingRequest> requests 
+                        = this.pendingRequests;
+                requests.put(requestId, pending);
                 try {
-                    Thread.sleep(this.THREADSLEEPTIME);
-                } catch (InterruptedException ex1) {
-                    ApplicationRunner.handleException(ex1.getMessage());
+                    //Writes the message to the stream
+                    MessageFrames.writeFrame(this.outStream, request);
+                    
+                    //If successful (no exceptions) then the retry variable is set to 
+                    //0 to leave the while loop.
+                    retry = 0;
+                } catch (IOException ex) {
+                    requests.remove(requestId);
+                    
+                    //Counnts down the send trys.
+                    retry--;
+                    
+                    //If ten unsuccessful trys, then throws and exception
+                    if (retry == 0) {
+                        throw ex;
+                    }
+                    try {
+                        Thread.sleep(this.THREADSLEEPTIME);
+                    } catch (InterruptedException ex1) {
+                        ApplicationRunner.handleException(ex1.getMessage());
+                    }
+                    this.connect();
                 }
-                this.connect();
             }
+        } finally {
+            this.connectionLock.unlock();
         }
+        return pending;
     }
     
     /**
-     * This method is responsible for receiving an object from the server.
+     * This method sends a <code>Command</code> to the server and waits for its 
+     * outcome to be read into it.
      * 
-     * @return the object from the server.
-     * @throws ClassNotFoundException if class of a serialized object cannot be
-     * found.
+     * @param command the command to be sent.
+     * @return the executed command.
      * @throws IOException if there is a communication problem with the serve.
      */
-    public Object receive() throws ClassNotFoundException, IOException {
-        Object obj = null;
+    public Command execute(Command command) throws IOException {
+        Future<Command> response = this.submit(command);
         try {
-            obj = this.objectInStream.readObject();
-        } catch (ClassNotFoundException ex) {
-            connect();
-            throw ex;
-        } catch (IOException ex) {
-            connect();
-            throw ex;
+            return response.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    "Interrupted waiting for the server.");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
         }
-        
-        return obj;
     }
     
     /**
-     * Closes the client socket.
+     * Closes the client socket.  The reader thread then fails any requests 
+     * still waiting for a response.
      */
     public void close() {
-        try {
-            //Left empty
-        } finally {
-            if (this.socket != null) {
+        this.connected = false;
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            } catch (IOException ex) {
+                ApplicationRunner.handleException(ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * The task of the reader thread of one connection.  It reads each 
+     * response as it arrives and completes the request with the same request 
+     * id, until the connection ends.
+     */
+    private class ResponseReader implements Runnable {
+        
+        /**
+         * The input stream of the connection.
+         */
+        private final InputStream inStream;
+        
+        /**
+         * What the client and server have agreed for the connection.
+         */
+        private final ProtocolSession session;
+        
+        /**
+         * The requests waiting on the connection, keyed by request id.
+         */
+        private final ConcurrentMap<Integer, PendingRequest> requests;
+        
+        /**
+         * Creates the reader of a connection.
+         * 
+         * @param inStream the input stream of the connection.
+         * @param session the protocol session of the connection.
+         * @param requests the requests waiting on the connection.
+         */
+        ResponseReader(InputStream inStream, ProtocolSession session, 
+                ConcurrentMap<Integer, PendingRequest> requests) {
+            this.inStream = inStream;
+            this.session = session;
+            this.requests = requests;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    byte[] response = MessageFrames.readFrame(this.inStream);
+                    DataInputStream in = new DataInputStream(
+                            new ByteArrayInputStream(response));
+                    PendingRequest pending = this.requests.remove(in.readInt());
+                    if (pending != null) {
+                        pending.complete(this.session, in);
+                    }
+                }
+            } catch (IOException ex) {
+                //The connection has ended, so it must be made again before 
+                //the next request and the waiting requests will never be 
+                //answered.  This is done under the connection lock, so a 
+                //request is either sent before the waiting requests are 
+                //failed, and failed with them, or finds the client 
+                //disconnected and is sent on a new connection.
+                BookingNwClient.this.connectionLock.lock();
                 try {
-                    this.socket.close();
-                } catch (IOException ex) {
-                    ApplicationRunner.handleException(ex.getMessage());
+                    if (this.requests == BookingNwClient.this.pendingRequests) {
+                        BookingNwClient.this.connected = false;
+                    }
+                    
+                    //Each request is removed on its own, so none can be 
+                    //dropped without being failed.
+                    for (Integer requestId : this.requests.keySet()) {
+                        PendingRequest pending 
+                                = this.requests.remove(requestId);
+                        if (pending != null) {
+                            pending.fail(ex);
+                        }
+                    }
+                } finally {
+                    BookingNwClient.this.connectionLock.unlock();
                 }
             }
         }
+        
+    }
+    
+    /**
+     * A request waiting for its response.  It is a <code>FutureTask</code> 
+     * that is never run, instead it is completed directly by the reader 
+     * thread when the response arrives.
+     */
+    private static class PendingRequest extends FutureTask<Command> {
+        
+        /**
+         * The command sent in the request.
+         */
+        private final Command command;
+        
+        /**
+         * Creates a request that can only be completed by 
+         * <code>complete()</code> or <code>fail()</code>.
+         * 
+         * @param command the command sent in the request.
+         */
+        PendingRequest(Command command) {
+            super(new Callable<Command>() {
+                
+                @Override
+                public Command call() {
+                    return null;
+                }
+                
+            });
+            this.command = command;
+        }
+        
+        /**
+         * Reads the outcome of the command from its response, inflating it 
+         * if it was compressed, and completes the request with the command.
+         * 
+         * @param session the protocol session of the connection.
+         * @param in the response, after its request id.
+         */
+        void complete(ProtocolSession session, DataInputStream in) {
+            try {
+                this.command.readResult(
+                        ResponseCompression.readOutcome(session, in));
+                this.set(this.command);
+            } catch (IOException ex) {
+                this.setException(ex);
+            }
+        }
+        
+        /**
+         * Completes the request with an exception.
+         * 
+         * @param ex the exception to be thrown by <code>get()</code>.
+         */
+        void fail(Exception ex) {
+            this.setException(ex);
+        }
+        
     }
     
 }
@@ -1,6 +1,11 @@
 package suncertify.business.network.commands;
 
-import suncertify.presentation.BookingModel;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import suncertify.business.BookingBusinessAdapter;
+import suncertify.business.network.protocol.BookingProtocol;
+import suncertify.db.AsyncCallback;
 
 /**
  * This class extends the abstract command class and implements the 
@@ -12,13 +17,6 @@ import suncertify.presentation.BookingModel;
  */
 public class BookContractorCommand extends Command {
     
-    /**
-     * A version number for this class so that serialization can occur without 
-     * worrying about the underlying class changing between serialization and 
-     * de-serialization.
-     */
-    private static final long serialVersionUID = -6248986781980881086L;
-    
     /**
      * Holds the record position number.
      */
@@ -42,18 +40,31 @@ public class BookContractorCommand extends Command {
         this.recNo = recNo;
     }
 
+    /**
+     * This constructor reads the record number and customer number written 
+     * by <code>writeRequest()</code>.
+     * 
+     * @param in the request, after its opcode.
+     * @throws IOException if the arguments cannot be read.
+     */
+    public BookContractorCommand(DataInput in) throws IOException {
+        this.recNo = BookingProtocol.readRecordNumber(in);
+        this.custNo = BookingProtocol.readText(in);
+    }
+    
     /**
      * This execute method updates the <code>result</code> or stores an 
      * exception in the <code>exception</code> variable.  It also takes a 
-     * <code>BookingModel</code> to work with. 
+     * <code>BookingBusinessAdapter</code> to work with. 
      * 
-     * @param model the model used to carry out the desired operation.
+     * @param bookingAdapter the business adapter used to carry out the 
+     * desired operation.
      */
     @Override
-    public void execute(BookingModel model) {
+    public void execute(BookingBusinessAdapter bookingAdapter) {
         try {
             //There is no object return required for this operation.
-            model.bookContractor(recNo, custNo);
+            bookingAdapter.bookContractor(recNo, custNo);
         } catch (Exception ex) {
             //If an exception is throw from the above operation, it is stored 
             //in the exception variable.
@@ -61,4 +72,63 @@ public class BookContractorCommand extends Command {
         }
     }
     
+    /**
+     * This execute method books the contractor without holding up the 
+     * calling thread while another client has the record locked, and runs 
+     * the completion once the outcome has been stored.
+     * 
+     * @param bookingAdapter the business adapter used to carry out the 
+     * desired operation.
+     * @param completion run once the outcome of the booking has been stored.
+     */
+    @Override
+    public void execute(BookingBusinessAdapter bookingAdapter, 
+            final Runnable completion) {
+        bookingAdapter.bookContractor(recNo, custNo, new AsyncCallback<Void>() {
+            
+            @Override
+            public void completed(Void result) {
+                completion.run();
+            }
+            
+            @Override
+            public void failed(Exception ex) {
+                BookContractorCommand.this.exception = ex;
+                completion.run();
+            }
+            
+        });
+    }
+    
+    @Override
+    public byte getOpcode() {
+        return BookingProtocol.OP_BOOK;
+    }
+
+    @Override
+    public void writeRequest(DataOutput out) throws IOException {
+        BookingProtocol.writeRecordNumber(out, this.recNo);
+        BookingProtocol.writeText(out, this.custNo);
+    }
+    
+    /**
+     * There is no result to write for this operation.
+     * 
+     * @param out the response.
+     */
+    @Override
+    protected void writeResultValue(DataOutput out) {
+    }
+    
+    /**
+     * There is no result to read for this operation.
+     * 
+     * @param in the response.
+     * @return null.
+     */
+    @Override
+    protected Object readResultValue(DataInput in) {
+        return null;
+    }
+    
 }
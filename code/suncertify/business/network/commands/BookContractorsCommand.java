@@ -0,0 +1,145 @@
+package suncertify.business.network.commands;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import suncertify.business.BookingBusinessAdapter;
+import suncertify.business.BookingOutcome;
+import suncertify.business.network.protocol.BookingProtocol;
+
+/**
+ * This class extends the abstract command class and implements the 
+ * <code>execute()</code> method to book a batch of contractors in one round 
+ * trip, updating the <code>result</code> variable with the outcome of each 
+ * booking or storing an exception in the <code>exception</code> variable.
+ * 
+ * @author Robert Black
+ * @version 1.0
+ */
+public class BookContractorsCommand extends Command {
+    
+    /**
+     * Holds the eight digit customer id to book each record number for.
+     */
+    private final Map<Long, String> bookings;
+    
+    /**
+     * The constructor takes the bookings and stores a copy of them to be used 
+     * by the <code>execute()</code> method on the server side.
+     * 
+     * @param bookings the eight digit customer id to book each record number 
+     * (file position) for.
+     */
+    public BookContractorsCommand(Map<Long, String> bookings) {
+        this.bookings = new LinkedHashMap<Long, String>(bookings);
+    }
+    
+    /**
+     * This constructor reads the bookings written by 
+     * <code>writeRequest()</code>.
+     * 
+     * @param in the request, after its opcode.
+     * @throws IOException if the bookings cannot be read.
+     */
+    public BookContractorsCommand(DataInput in) throws IOException {
+        this.bookings = new LinkedHashMap<Long, String>();
+        int count = BookContractorsCommand.readCount(in);
+        for (int i = 0; i < count; i++) {
+            long recNo = BookingProtocol.readRecordNumber(in);
+            this.bookings.put(recNo, BookingProtocol.readText(in));
+        }
+    }
+    
+    /**
+     * This execute method updates the <code>result</code> with the outcome of 
+     * each booking or stores an exception in the <code>exception</code> 
+     * variable.  It also takes a <code>BookingBusinessAdapter</code> to work 
+     * with.
+     * 
+     * @param bookingAdapter the business adapter used to carry out the 
+     * desired operation.
+     */
+    @Override
+    public void execute(BookingBusinessAdapter bookingAdapter) {
+        try {
+            //Stores the outcome of each booking.
+            this.result = bookingAdapter.bookContractors(bookings);
+        } catch (Exception ex) {
+            //If an exception is throw from the above operation, it is stored 
+            //in the exception variable.
+            this.exception = ex;
+        }
+    }
+    
+    @Override
+    public byte getOpcode() {
+        return BookingProtocol.OP_BOOK_BATCH;
+    }
+
+    @Override
+    public void writeRequest(DataOutput out) throws IOException {
+        out.writeInt(this.bookings.size());
+        for (Map.Entry<Long, String> booking : this.bookings.entrySet()) {
+            BookingProtocol.writeRecordNumber(out, booking.getKey());
+            BookingProtocol.writeText(out, booking.getValue());
+        }
+    }
+    
+    /**
+     * This method writes the record number and outcome of each booking, the 
+     * outcome as the position of its <code>BookingOutcome</code>.
+     * 
+     * @param out the response.
+     * @throws IOException if the outcomes cannot be written.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeResultValue(DataOutput out) throws IOException {
+        Map<Long, BookingOutcome> outcomes 
+                = (Map<Long, BookingOutcome>) this.result;
+        out.writeInt(outcomes.size());
+        for (Map.Entry<Long, BookingOutcome> outcome : outcomes.entrySet()) {
+            BookingProtocol.writeRecordNumber(out, outcome.getKey());
+            out.writeByte(outcome.getValue().ordinal());
+        }
+    }
+    
+    @Override
+    protected Object readResultValue(DataInput in) throws IOException {
+        BookingOutcome[] values = BookingOutcome.values();
+        Map<Long, BookingOutcome> outcomes 
+                = new LinkedHashMap<Long, BookingOutcome>();
+        int count = BookContractorsCommand.readCount(in);
+        for (int i = 0; i < count; i++) {
+            long recNo = BookingProtocol.readRecordNumber(in);
+            int outcome = in.readUnsignedByte();
+            if (outcome >= values.length) {
+                throw new StreamCorruptedException(
+                        "Unknown booking outcome: " + outcome);
+            }
+            outcomes.put(recNo, values[outcome]);
+        }
+        return outcomes;
+    }
+    
+    /**
+     * This private method reads the number of bookings or outcomes that 
+     * follow.
+     * 
+     * @param in the input.
+     * @return the number of entries.
+     * @throws IOException if the number is not valid.
+     */
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new StreamCorruptedException(
+                    "Invalid number of bookings: " + count);
+        }
+        return count;
+    }
+    
+}
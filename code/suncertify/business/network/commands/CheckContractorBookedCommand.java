@@ -1,6 +1,10 @@
 package suncertify.business.network.commands;
 
-import suncertify.presentation.BookingModel;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import suncertify.business.BookingBusinessAdapter;
+import suncertify.business.network.protocol.BookingProtocol;
 
 /**
  * This class extends the abstract command class and implements the 
@@ -12,13 +16,6 @@ import suncertify.presentation.BookingModel;
  */
 public class CheckContractorBookedCommand extends Command {
     
-    /**
-     * A version number for this class so that serialization can occur without 
-     * worrying about the underlying class changing between serialization and 
-     * de-serialization.
-     */
-    private static final long serialVersionUID = -6463427460436762026L;
-    
     /**
      * Holds the record number (file position) to be used.
      */
@@ -34,19 +31,31 @@ public class CheckContractorBookedCommand extends Command {
     public CheckContractorBookedCommand(long recNo) {
         this.recNo = recNo;
     }
+    
+    /**
+     * This constructor reads the record number written by 
+     * <code>writeRequest()</code>.
+     * 
+     * @param in the request, after its opcode.
+     * @throws IOException if the record number cannot be read.
+     */
+    public CheckContractorBookedCommand(DataInput in) throws IOException {
+        this.recNo = BookingProtocol.readRecordNumber(in);
+    }
 
     /**
      * This execute method updates the <code>result</code> or stores an 
      * exception in the <code>exception</code> variable.  It also takes a 
-     * <code>BookingModel</code> to work with.  
+     * <code>BookingBusinessAdapter</code> to work with.  
      * 
-     * @param model the model used to carry out the desired operation.
+     * @param bookingAdapter the business adapter used to carry out the 
+     * desired operation.
      */
     @Override
-    public void execute(BookingModel model) {
+    public void execute(BookingBusinessAdapter bookingAdapter) {
         try {
             //Stores the object rturned from this operation.
-            this.result = model.isContractorBooked(recNo);
+            this.result = bookingAdapter.isContractorBooked(recNo);
         } catch (Exception ex) {
             //If an exception is throw from the above operation, it is stored 
             //in the exception variable.
@@ -54,4 +63,24 @@ public class CheckContractorBookedCommand extends Command {
         }
     }
     
+    @Override
+    public byte getOpcode() {
+        return BookingProtocol.OP_CHECK_BOOKED;
+    }
+
+    @Override
+    public void writeRequest(DataOutput out) throws IOException {
+        BookingProtocol.writeRecordNumber(out, this.recNo);
+    }
+    
+    @Override
+    protected void writeResultValue(DataOutput out) throws IOException {
+        out.writeBoolean((Boolean) this.result);
+    }
+    
+    @Override
+    protected Object readResultValue(DataInput in) throws IOException {
+        return in.readBoolean();
+    }
+    
 }
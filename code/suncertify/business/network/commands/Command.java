@@ -1,7 +1,10 @@
 package suncertify.business.network.commands;
 
-import java.io.Serializable;
-import suncertify.presentation.BookingModel;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import suncertify.business.BookingBusinessAdapter;
+import suncertify.business.network.protocol.BookingProtocol;
 
 /**
  * This is an abstract class that has two attributes and two methods.  It is 
@@ -9,38 +12,119 @@ import suncertify.presentation.BookingModel;
  * invokes the <code>execute()</code> method.  The <code>execute()</code> 
  * method either updates the <code>result</code> or stores an exception in the 
  * <code>exception</code> variable.  It is the subclasses responsibility to 
- * implement the <code>execute()</code> method.
+ * implement the <code>execute()</code> method, and to write and read its 
+ * arguments and result in the <code>BookingProtocol</code>.
  * 
  * @author Robert Black
  * @version 1.0
  */
-public abstract class Command implements Serializable {
+public abstract class Command {
     
      /**
-     * A version number for this class so that serialization can occur without 
-     * worrying about the underlying class changing between serialization and 
-     * de-serialization.
-     */
-    private static final long serialVersionUID = 2169633843326176906L;
-    
-    /**
-     * Holds the serializable object.
+     * Holds the result object.
      */
     protected Object result = null;
     
     /**
-     * Holds the Serializable exception.
+     * Holds the exception thrown by the operation.
      */
     protected Exception exception = null;
     
     /**
      * The execute method that updates the <code>result</code> or stores an 
-     * exception in the <code>exception</code> variable.  It also takes a 
-     * <code>BookingModel</code> to work with.
+     * exception in the <code>exception</code> variable.  It also takes the 
+     * <code>BookingBusinessAdapter</code> of the connection to work with, so a 
+     * command goes straight to the business tier without any presentation 
+     * side effects.
+     * 
+     * @param bookingAdapter the <code>BookingBusinessAdapter</code>.
+     */
+    public abstract void execute(BookingBusinessAdapter bookingAdapter);
+    
+    /**
+     * This execute method carries out the command like <code>execute()</code>, 
+     * then runs the completion once the <code>result</code> or 
+     * <code>exception</code> has been stored.  A command that can wait without 
+     * holding up a thread, e.g. a booking waiting for a record lock, overrides 
+     * it so that the completion runs later on another thread; by default the 
+     * command is executed on the calling thread.
      * 
-     * @param model the <code>BookingModel</code>.
+     * @param bookingAdapter the <code>BookingBusinessAdapter</code>.
+     * @param completion run once the outcome of the command has been stored.
      */
-    public abstract void execute(BookingModel model);
+    public void execute(BookingBusinessAdapter bookingAdapter, 
+            Runnable completion) {
+        this.execute(bookingAdapter);
+        completion.run();
+    }
+    
+    /**
+     * Returns the <code>BookingProtocol</code> opcode of this command.
+     * 
+     * @return the opcode.
+     */
+    public abstract byte getOpcode();
+    
+    /**
+     * This method writes the arguments of this command, to be read back by 
+     * its <code>DataInput</code> constructor on the server side.
+     * 
+     * @param out the request.
+     * @throws IOException if the arguments cannot be written.
+     */
+    public abstract void writeRequest(DataOutput out) throws IOException;
+    
+    /**
+     * This method writes the result of this command once it has executed 
+     * successfully.
+     * 
+     * @param out the response.
+     * @throws IOException if the result cannot be written.
+     */
+    protected abstract void writeResultValue(DataOutput out) 
+            throws IOException;
+    
+    /**
+     * This method reads the result written by <code>writeResultValue()</code>.
+     * 
+     * @param in the response.
+     * @return the result object.
+     * @throws IOException if the result cannot be read.
+     */
+    protected abstract Object readResultValue(DataInput in) throws IOException;
+    
+    /**
+     * This method writes the outcome of this command on the server side, that 
+     * is a status followed by either the result or the message of the stored 
+     * exception.
+     * 
+     * @param out the response.
+     * @throws IOException if the outcome cannot be written.
+     */
+    public void writeResult(DataOutput out) throws IOException {
+        if (this.exception != null) {
+            BookingProtocol.writeException(out, this.exception);
+        } else {
+            out.writeByte(BookingProtocol.STATUS_OK);
+            this.writeResultValue(out);
+        }
+    }
+    
+    /**
+     * This method reads the outcome written by <code>writeResult()</code> on 
+     * the client side, storing either the result or the exception.
+     * 
+     * @param in the response.
+     * @throws IOException if the outcome cannot be read.
+     */
+    public void readResult(DataInput in) throws IOException {
+        int status = in.readUnsignedByte();
+        if (status == BookingProtocol.STATUS_OK) {
+            this.result = this.readResultValue(in);
+        } else {
+            this.exception = BookingProtocol.readException(status, in);
+        }
+    }
     
     /**
      * This method will either return the stored object or throw the stored 
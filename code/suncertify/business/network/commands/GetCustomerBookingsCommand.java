@@ -0,0 +1,91 @@
+package suncertify.business.network.commands;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import suncertify.business.BookingBusinessAdapter;
+import suncertify.business.network.protocol.BookingProtocol;
+import suncertify.db.Contractor;
+
+/**
+ * This class extends the abstract command class and implements the
+ * <code>execute()</code> method to either update the <code>result</code>
+ * variable with the contractors booked by a customer or store an exception in
+ * the <code>exception</code> variable.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public class GetCustomerBookingsCommand extends Command {
+    
+    /**
+     * Holds the customer id to be used.
+     */
+    private final String custNo;
+    
+    /**
+     * The constructor.  It takes the eight digit customer id and stores it in
+     * the respective variable to be used by the <code>execute()</code> method
+     * on the server side.
+     *
+     * @param custNo the eight digit customer id.
+     */
+    public GetCustomerBookingsCommand(String custNo) {
+        this.custNo = custNo;
+    }
+    
+    /**
+     * This constructor reads the customer id written by 
+     * <code>writeRequest()</code>.
+     *
+     * @param in the request, after its opcode.
+     * @throws IOException if the customer id cannot be read.
+     */
+    public GetCustomerBookingsCommand(DataInput in) throws IOException {
+        this.custNo = BookingProtocol.readText(in);
+    }
+    
+    /**
+     * This execute method updates the <code>result</code> or stores an
+     * exception in the <code>exception</code> variable.  It also takes a
+     * <code>BookingBusinessAdapter</code> to work with.
+     *
+     * @param bookingAdapter the business adapter used to carry out the 
+     * desired operation.
+     */
+    @Override
+    public void execute(BookingBusinessAdapter bookingAdapter) {
+        try {
+            //Stores the object rturned from this operation.
+            this.result = bookingAdapter.getCustomerBookings(custNo);
+        } catch (Exception ex) {
+            //If an exception is throw from the above operation, it is stored
+            //in the exception variable.
+            this.exception = ex;
+        }
+    }
+    
+    @Override
+    public byte getOpcode() {
+        return BookingProtocol.OP_CUSTOMER_BOOKINGS;
+    }
+
+    @Override
+    public void writeRequest(DataOutput out) throws IOException {
+        BookingProtocol.writeText(out, this.custNo);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeResultValue(DataOutput out) throws IOException {
+        BookingProtocol.writeContractors(out, 
+                (Map<Long, Contractor>) this.result);
+    }
+    
+    @Override
+    protected Object readResultValue(DataInput in) throws IOException {
+        return BookingProtocol.readContractors(in);
+    }
+    
+}
@@ -0,0 +1,164 @@
+package suncertify.business.network.commands;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import suncertify.business.BookingBusinessAdapter;
+import suncertify.business.network.protocol.BookingProtocol;
+import suncertify.db.Contractor;
+
+/**
+ * This class extends the abstract command class and implements the
+ * <code>execute()</code> method to either update the <code>result</code>
+ * variable with the contractors whose number of staff and rate lie within the
+ * given bounds, cheapest first, or store an exception in the
+ * <code>exception</code> variable.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public class GetRangeSearchResultsCommand extends Command {
+    
+    /**
+     * Holds the name criteria to be used.
+     */
+    private final String name;
+    
+    /**
+     * Holds the location criteria to be used.
+     */
+    private final String location;
+    
+    /**
+     * Holds the type of work the contractors must offer.
+     */
+    private final String specialty;
+    
+    /**
+     * Holds the fewest staff.
+     */
+    private final long minSize;
+    
+    /**
+     * Holds the most staff.
+     */
+    private final long maxSize;
+    
+    /**
+     * Holds the lowest rate in cents.
+     */
+    private final long minRate;
+    
+    /**
+     * Holds the highest rate in cents.
+     */
+    private final long maxRate;
+    
+    /**
+     * Holds the largest number of results to return, or -1 for every
+     * matching contractor.
+     */
+    private final int limit;
+    
+    /**
+     * The constructor.  It takes the criteria and bounds and stores them in
+     * the respective variables to be used by the <code>execute()</code>
+     * method on the server side.  <code>Long.MIN_VALUE</code> and
+     * <code>Long.MAX_VALUE</code> leave a bound open.
+     *
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param specialty a type of work the contractors must offer, an empty
+     * <code>String</code> matches any work.
+     * @param minSize the fewest staff.
+     * @param maxSize the most staff.
+     * @param minRate the lowest rate in cents.
+     * @param maxRate the highest rate in cents.
+     * @param limit the largest number of contractors to return, or -1 for
+     * every matching contractor.
+     */
+    public GetRangeSearchResultsCommand(String name, String location,
+            String specialty, long minSize, long maxSize, long minRate,
+            long maxRate, int limit) {
+        this.name = name;
+        this.location = location;
+        this.specialty = specialty;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.limit = limit;
+    }
+    
+    /**
+     * This constructor reads the criteria, bounds and limit written by
+     * <code>writeRequest()</code>.
+     *
+     * @param in the request, after its opcode.
+     * @throws IOException if the arguments cannot be read.
+     */
+    public GetRangeSearchResultsCommand(DataInput in) throws IOException {
+        this.name = BookingProtocol.readText(in);
+        this.location = BookingProtocol.readText(in);
+        this.specialty = BookingProtocol.readText(in);
+        this.minSize = in.readLong();
+        this.maxSize = in.readLong();
+        this.minRate = in.readLong();
+        this.maxRate = in.readLong();
+        this.limit = in.readInt();
+    }
+    
+    /**
+     * This execute method updates the <code>result</code> or stores an
+     * exception in the <code>exception</code> variable.  It also takes a
+     * <code>BookingBusinessAdapter</code> to work with.
+     *
+     * @param bookingAdapter the business adapter used to carry out the
+     * desired operation.
+     */
+    @Override
+    public void execute(BookingBusinessAdapter bookingAdapter) {
+        try {
+            //Stores the contractors returned from this operation, in
+            //ascending order of rate.
+            this.result = bookingAdapter.searchContractorsByRange(name,
+                    location, specialty, minSize, maxSize, minRate, maxRate,
+                    limit);
+        } catch (Exception ex) {
+            //If an exception is throw from the above operation, it is stored
+            //in the exception variable.
+            this.exception = ex;
+        }
+    }
+    
+    @Override
+    public byte getOpcode() {
+        return BookingProtocol.OP_RANGE_SEARCH;
+    }
+    
+    @Override
+    public void writeRequest(DataOutput out) throws IOException {
+        BookingProtocol.writeText(out, this.name);
+        BookingProtocol.writeText(out, this.location);
+        BookingProtocol.writeText(out, this.specialty);
+        out.writeLong(this.minSize);
+        out.writeLong(this.maxSize);
+        out.writeLong(this.minRate);
+        out.writeLong(this.maxRate);
+        out.writeInt(this.limit);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeResultValue(DataOutput out) throws IOException {
+        BookingProtocol.writeContractors(out,
+                (Map<Long, Contractor>) this.result);
+    }
+    
+    @Override
+    protected Object readResultValue(DataInput in) throws IOException {
+        return BookingProtocol.readContractors(in);
+    }
+    
+}
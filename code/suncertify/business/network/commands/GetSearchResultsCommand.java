@@ -1,24 +1,25 @@
 package suncertify.business.network.commands;
 
-import suncertify.presentation.BookingModel;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import suncertify.business.BookingBusinessAdapter;
+import suncertify.business.network.protocol.BookingProtocol;
+import suncertify.db.Contractor;
 
 /**
  * This class extends the abstract command class and implements the 
  * <code>execute()</code> method to either update the <code>result</code> 
- * variable or store an exception in the <code>exception</code> variable.
+ * variable or store an exception in the <code>exception</code> variable.  The 
+ * criteria are matched exactly on the server, so only the contractors that 
+ * match are sent back to the client.
  * 
  * @author Robert Black
  * @version 1.0
  */
 public class GetSearchResultsCommand extends Command {
     
-    /**
-     * A version number for this class so that serialization can occur without 
-     * worrying about the underlying class changing between serialization and 
-     * de-serialization.
-     */
-    private static final long serialVersionUID = 5379375589201620477L;
-    
     /**
      * Holds the name criteria to be used.
      */
@@ -28,6 +29,17 @@ public class GetSearchResultsCommand extends Command {
      * Holds the location criteria to be used.
      */
     private final String location;
+    
+    /**
+     * Holds the field to sort the results on.
+     */
+    private final int sortField;
+    
+    /**
+     * Holds the largest number of results to return, or -1 if the results 
+     * are not sorted and limited.
+     */
+    private final int limit;
 
     /**
      * The constructor.  It takes the name criteria and the location criteria 
@@ -38,22 +50,61 @@ public class GetSearchResultsCommand extends Command {
      * @param location location the location search criteria.
      */
     public GetSearchResultsCommand(String name, String location) {
+        this(name, location, Contractor.NAME_FIELD_INDEX, -1);
+    }
+
+    /**
+     * This constructor also takes a sort field and a limit so that only the 
+     * top <code>limit</code> results in ascending order of the sort field are 
+     * returned by the server.
+     * 
+     * @param name the name search criteria.
+     * @param location location the location search criteria.
+     * @param sortField the Name, Size or Rate field position.
+     * @param limit the largest number of contractors to return.
+     */
+    public GetSearchResultsCommand(String name, String location, 
+            int sortField, int limit) {
         this.name = name;
         this.location = location;
+        this.sortField = sortField;
+        this.limit = limit;
     }
 
+    /**
+     * This constructor reads the criteria, sort field and limit written by 
+     * <code>writeRequest()</code>.
+     * 
+     * @param in the request, after its opcode.
+     * @throws IOException if the arguments cannot be read.
+     */
+    public GetSearchResultsCommand(DataInput in) throws IOException {
+        this.name = BookingProtocol.readText(in);
+        this.location = BookingProtocol.readText(in);
+        this.sortField = in.readUnsignedByte();
+        this.limit = in.readInt();
+    }
+    
     /**
      * This execute method updates the <code>result</code> or stores an 
      * exception in the <code>exception</code> variable.  It also takes a 
-     * <code>BookingModel</code> to work with.  
+     * <code>BookingBusinessAdapter</code> to work with.  
      * 
-     * @param model the model used to carry out the desired operation.
+     * @param bookingAdapter the business adapter used to carry out the 
+     * desired operation.
      */
     @Override
-    public void execute(BookingModel model) {
+    public void execute(BookingBusinessAdapter bookingAdapter) {
         try {
-            //Stores the object rturned from this operation.
-            this.result = model.searchContractors(name, location);
+            //Stores the object rturned from this operation, sorted and limited 
+            //if a limit was given.
+            if (limit < 0) {
+                this.result = bookingAdapter.searchContractors(
+                        name, location, true);
+            } else {
+                this.result = bookingAdapter.searchContractors(
+                        name, location, true, sortField, limit);
+            }
         } catch (Exception ex) {
             //If an exception is throw from the above operation, it is stored 
             //in the exception variable.
@@ -61,4 +112,29 @@ public class GetSearchResultsCommand extends Command {
         }
     }
     
+    @Override
+    public byte getOpcode() {
+        return BookingProtocol.OP_SEARCH;
+    }
+
+    @Override
+    public void writeRequest(DataOutput out) throws IOException {
+        BookingProtocol.writeText(out, this.name);
+        BookingProtocol.writeText(out, this.location);
+        out.writeByte(this.sortField);
+        out.writeInt(this.limit);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeResultValue(DataOutput out) throws IOException {
+        BookingProtocol.writeContractors(out, 
+                (Map<Long, Contractor>) this.result);
+    }
+    
+    @Override
+    protected Object readResultValue(DataInput in) throws IOException {
+        return BookingProtocol.readContractors(in);
+    }
+    
 }
@@ -0,0 +1,529 @@
+package suncertify.business.network.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import suncertify.business.RecordAlreadyBookedException;
+import suncertify.business.network.commands.BookContractorCommand;
+import suncertify.business.network.commands.BookContractorsCommand;
+import suncertify.business.network.commands.CheckContractorBookedCommand;
+import suncertify.business.network.commands.Command;
+import suncertify.business.network.commands.GetCustomerBookingsCommand;
+import suncertify.business.network.commands.GetRangeSearchResultsCommand;
+import suncertify.business.network.commands.GetSearchResultsCommand;
+import suncertify.db.Contractor;
+import suncertify.db.LockTimeoutException;
+import suncertify.db.RecordNotFoundException;
+import suncertify.db.SecurityException;
+
+/**
+ * This class holds the binary protocol spoken between the
+ * <code>BookingNwClient</code> and the server inside each message frame.  A
+ * request is a one byte opcode followed by the arguments of the command, and
+ * a response is a one byte status followed by the result of the command or,
+ * if it failed, the message of its exception.  Only the commands listed here
+ * can be read by the server, so no class is ever loaded from the wire.
+ * <br/><br/>
+ *
+ * Each connection starts with a hello exchange in which the client sends the
+ * range of versions it speaks and the server answers with the version to use.
+ * From version 2 every request carries a request id after its opcode, and its
+ * response starts with the same id, so a client may send several requests
+ * without waiting and the server may answer them in any order.  From version 3
+ * the hello request carries flags asking for optional features, of which the
+ * server answers with those it will use, and the outcome in each response
+ * follows an encoding byte so that large outcomes can be compressed, see
+ * <code>ResponseCompression</code>.
+ * Contractors are sent field by field in the order of the database schema,
+ * each field as a length byte followed by its US ASCII characters.  The field
+ * lengths of the database file are sent first and bound every field, so a
+ * row costs only the characters it holds rather than the padded width of its
+ * slot on disk.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public class BookingProtocol {
+    
+    /**
+     * The magic number that starts a hello request, "SCBK" in US ASCII.
+     */
+    public static final int MAGIC = 0x5343424B;
+    
+    /**
+     * The oldest protocol version this end speaks.
+     */
+    public static final int MIN_VERSION = 1;
+    
+    /**
+     * The newest protocol version this end speaks.
+     */
+    public static final int VERSION = 3;
+    
+    /**
+     * The first protocol version in which requests and responses carry a 
+     * request id.
+     */
+    public static final int REQUEST_ID_VERSION = 2;
+    
+    /**
+     * The first protocol version in which the hello exchange carries flags 
+     * and responses may be compressed.
+     */
+    public static final int COMPRESSION_VERSION = 3;
+    
+    /**
+     * The hello flag that asks for large responses to be compressed.
+     */
+    public static final int FLAG_COMPRESSION = 1;
+    
+    /**
+     * The opcode of the hello request that agrees the protocol version.
+     */
+    public static final byte OP_HELLO = 0;
+    
+    /**
+     * The opcode of a <code>GetSearchResultsCommand</code>.
+     */
+    public static final byte OP_SEARCH = 1;
+    
+    /**
+     * The opcode of a <code>GetCustomerBookingsCommand</code>.
+     */
+    public static final byte OP_CUSTOMER_BOOKINGS = 2;
+    
+    /**
+     * The opcode of a <code>BookContractorCommand</code>.
+     */
+    public static final byte OP_BOOK = 3;
+    
+    /**
+     * The opcode of a <code>BookContractorsCommand</code>.
+     */
+    public static final byte OP_BOOK_BATCH = 4;
+    
+    /**
+     * The opcode of a <code>CheckContractorBookedCommand</code>.
+     */
+    public static final byte OP_CHECK_BOOKED = 5;
+    
+    /**
+     * The opcode of a <code>GetRangeSearchResultsCommand</code>.
+     */
+    public static final byte OP_RANGE_SEARCH = 6;
+    
+    /**
+     * The status of a command that succeeded.
+     */
+    public static final int STATUS_OK = 0;
+    
+    /**
+     * The status of a command that threw a
+     * <code>RecordNotFoundException</code>.
+     */
+    public static final int STATUS_RECORD_NOT_FOUND = 1;
+    
+    /**
+     * The status of a command that threw a <code>SecurityException</code>.
+     */
+    public static final int STATUS_SECURITY = 2;
+    
+    /**
+     * The status of a command that threw a
+     * <code>RecordAlreadyBookedException</code>.
+     */
+    public static final int STATUS_ALREADY_BOOKED = 3;
+    
+    /**
+     * The status of a command that threw a <code>LockTimeoutException</code>.
+     */
+    public static final int STATUS_LOCK_TIMEOUT = 4;
+    
+    /**
+     * The status of a command that threw any other exception.
+     */
+    public static final int STATUS_FAILED = 5;
+    
+    /**
+     * The status of a hello request whose versions the server does not speak.
+     */
+    public static final int STATUS_UNSUPPORTED_VERSION = 6;
+    
+    /**
+     * The length in bytes of each contractor field, in field order.  These 
+     * are the <code>Contractor</code> constants, which match the schema of 
+     * the database file, since the client has no database file to read the 
+     * schema from.  Each length is sent in one byte.
+     */
+    private static final int[] FIELD_LENGTHS = {Contractor.NAME_FIELD_LENGTH,
+        Contractor.LOCATION_FIELD_SIZE, Contractor.SPECIALITIES_FIELD_SIZE,
+        Contractor.SIZE_FIELD_SIZE, Contractor.RATE_FIELD_SIZE,
+        Contractor.OWNER_FIELD_SIZE};
+    
+    /**
+     * The Character Set of the contractor fields.
+     */
+    private static final Charset CHAR_SET = Charset.forName("US-ASCII");
+    
+    /**
+     * The constructor is private as this class only holds static methods.
+     */
+    private BookingProtocol() {
+    }
+    
+    /**
+     * This method encodes the hello request a client sends when it connects, 
+     * without asking for compression.
+     *
+     * @param minVersion the oldest protocol version the client will accept.
+     * @return the request body.
+     */
+    public static byte[] encodeHello(int minVersion) {
+        return BookingProtocol.encodeHello(minVersion, false);
+    }
+    
+    /**
+     * This method encodes the hello request a client sends when it connects.
+     *
+     * @param minVersion the oldest protocol version the client will accept.
+     * @param compression true to ask for large responses to be compressed.
+     * @return the request body.
+     */
+    public static byte[] encodeHello(int minVersion, boolean compression) {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytesOut);
+        try {
+            out.writeByte(BookingProtocol.OP_HELLO);
+            out.writeInt(BookingProtocol.MAGIC);
+            out.writeByte(minVersion);
+            out.writeByte(BookingProtocol.VERSION);
+            out.writeByte(compression ? BookingProtocol.FLAG_COMPRESSION : 0);
+        } catch (IOException ex) {
+            //A ByteArrayOutputStream does not throw IOExceptions.
+            throw new IllegalStateException(ex);
+        }
+        return bytesOut.toByteArray();
+    }
+    
+    /**
+     * This method answers a hello request on the server, agreeing the newest
+     * version both ends speak and the features asked for, and storing them in 
+     * the session.
+     *
+     * @param session the session of the connection.
+     * @param in the hello request, after its opcode.
+     * @param out the response.
+     * @throws IOException if the request is not a hello request.
+     */
+    public static void answerHello(ProtocolSession session, DataInput in,
+            DataOutput out) throws IOException {
+        if (in.readInt() != BookingProtocol.MAGIC) {
+            throw new StreamCorruptedException("Not a booking client.");
+        }
+        int minVersion = in.readUnsignedByte();
+        int maxVersion = in.readUnsignedByte();
+        int flags = 0;
+        if (maxVersion >= BookingProtocol.COMPRESSION_VERSION) {
+            flags = in.readUnsignedByte();
+        }
+        int version = Math.min(maxVersion, BookingProtocol.VERSION);
+        if (version < Math.max(minVersion, BookingProtocol.MIN_VERSION)) {
+            out.writeByte(BookingProtocol.STATUS_UNSUPPORTED_VERSION);
+            out.writeUTF("The server speaks protocol versions "
+                    + BookingProtocol.MIN_VERSION + " to "
+                    + BookingProtocol.VERSION + ".");
+            return;
+        }
+        session.setVersion(version);
+        out.writeByte(BookingProtocol.STATUS_OK);
+        out.writeByte(version);
+        
+        //Answers with the features that will be used, which are those asked 
+        //for that the server has.
+        if (version >= BookingProtocol.COMPRESSION_VERSION) {
+            flags &= BookingProtocol.FLAG_COMPRESSION;
+            session.setCompressionEnabled(
+                    (flags & BookingProtocol.FLAG_COMPRESSION) != 0);
+            out.writeByte(flags);
+        }
+    }
+    
+    /**
+     * This method reads the servers answer to a hello request on the client
+     * and stores the agreed version and features in the session.
+     *
+     * @param session the session of the connection.
+     * @param response the response body.
+     * @throws IOException if the server does not speak any version the client
+     * speaks.
+     */
+    public static void readHelloAnswer(ProtocolSession session,
+            byte[] response) throws IOException {
+        DataInputStream in
+                = new DataInputStream(new ByteArrayInputStream(response));
+        int status = in.readUnsignedByte();
+        if (status != BookingProtocol.STATUS_OK) {
+            throw new IOException(in.readUTF());
+        }
+        int version = in.readUnsignedByte();
+        if (version >= BookingProtocol.COMPRESSION_VERSION) {
+            int flags = in.readUnsignedByte();
+            session.setCompressionEnabled(
+                    (flags & BookingProtocol.FLAG_COMPRESSION) != 0);
+        }
+        session.setVersion(version);
+    }
+    
+    /**
+     * This method encodes a command as a request with a request id.
+     *
+     * @param command the command.
+     * @param requestId the id the response to the request will carry.
+     * @return the request body.
+     * @throws IOException if the arguments of the command cannot be encoded.
+     */
+    public static byte[] encodeRequest(Command command, int requestId)
+            throws IOException {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytesOut);
+        out.writeByte(command.getOpcode());
+        out.writeInt(requestId);
+        command.writeRequest(out);
+        out.flush();
+        return bytesOut.toByteArray();
+    }
+    
+    /**
+     * This method reads the command held in a request on the server.
+     *
+     * @param opcode the opcode of the request.
+     * @param in the request, after its opcode.
+     * @return the command.
+     * @throws IOException if the opcode is not known or the arguments cannot
+     * be read.
+     */
+    public static Command readRequest(int opcode, DataInput in)
+            throws IOException {
+        switch (opcode) {
+            case BookingProtocol.OP_SEARCH:
+                return new GetSearchResultsCommand(in);
+            case BookingProtocol.OP_CUSTOMER_BOOKINGS:
+                return new GetCustomerBookingsCommand(in);
+            case BookingProtocol.OP_BOOK:
+                return new BookContractorCommand(in);
+            case BookingProtocol.OP_BOOK_BATCH:
+                return new BookContractorsCommand(in);
+            case BookingProtocol.OP_CHECK_BOOKED:
+                return new CheckContractorBookedCommand(in);
+            case BookingProtocol.OP_RANGE_SEARCH:
+                return new GetRangeSearchResultsCommand(in);
+            default:
+                throw new StreamCorruptedException("Unknown opcode: " + opcode);
+        }
+    }
+    
+    /**
+     * This method writes a <code>String</code> that may be null.
+     *
+     * @param out the output.
+     * @param text the text, or null.
+     * @throws IOException if the text cannot be written.
+     */
+    public static void writeText(DataOutput out, String text)
+            throws IOException {
+        out.writeBoolean(text != null);
+        if (text != null) {
+            out.writeUTF(text);
+        }
+    }
+    
+    /**
+     * This method reads a <code>String</code> written by
+     * <code>writeText()</code>.
+     *
+     * @param in the input.
+     * @return the text, or null.
+     * @throws IOException if the text cannot be read.
+     */
+    public static String readText(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    /**
+     * This method writes a record number as four bytes.
+     *
+     * @param out the output.
+     * @param recNo the record number (file position).
+     * @throws IOException if the record number does not fit in four bytes.
+     */
+    public static void writeRecordNumber(DataOutput out, long recNo)
+            throws IOException {
+        if (recNo < Integer.MIN_VALUE || recNo > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException(
+                    "Record number out of range: " + recNo);
+        }
+        out.writeInt((int) recNo);
+    }
+    
+    /**
+     * This method reads a record number written by
+     * <code>writeRecordNumber()</code>.
+     *
+     * @param in the input.
+     * @return the record number (file position).
+     * @throws IOException if the record number cannot be read.
+     */
+    public static long readRecordNumber(DataInput in) throws IOException {
+        return in.readInt();
+    }
+    
+    /**
+     * This method writes a map of record numbers and contractors in order.
+     * The contractor field lengths are written first, then the number of 
+     * contractors, then each record number followed by the fields of its 
+     * contractor.
+     *
+     * @param out the output.
+     * @param contractors the record numbers and contractors.
+     * @throws IOException if a field length does not fit in one byte, or a 
+     * field is longer than its field length.
+     */
+    public static void writeContractors(DataOutput out,
+            Map<Long, Contractor> contractors) throws IOException {
+        int[] fieldLengths = BookingProtocol.FIELD_LENGTHS;
+        out.writeByte(fieldLengths.length);
+        for (int fieldLength : fieldLengths) {
+            //A length over 255 would be cut short by writeByte().
+            if (fieldLength > 0xFF) {
+                throw new StreamCorruptedException(
+                        "Field length too long to send: " + fieldLength);
+            }
+            out.writeByte(fieldLength);
+        }
+        out.writeInt(contractors.size());
+        
+        //Each field is written as its length and its characters.
+        for (Map.Entry<Long, Contractor> entry : contractors.entrySet()) {
+            BookingProtocol.writeRecordNumber(out, entry.getKey());
+            String[] fields = entry.getValue().getStringArrayData();
+            for (int field = 0; field < fieldLengths.length; field++) {
+                byte[] value = fields[field] == null ? new byte[0]
+                        : fields[field].getBytes(BookingProtocol.CHAR_SET);
+                if (value.length > fieldLengths[field]) {
+                    throw new StreamCorruptedException("Field " + field
+                            + " of record " + entry.getKey() + " is too long.");
+                }
+                out.writeByte(value.length);
+                out.write(value);
+            }
+        }
+    }
+    
+    /**
+     * This method reads a map of record numbers and contractors written by
+     * <code>writeContractors()</code>, in the order they were written.
+     *
+     * @param in the input.
+     * @return the record numbers and contractors.
+     * @throws IOException if the contractors cannot be read.
+     */
+    public static Map<Long, Contractor> readContractors(DataInput in)
+            throws IOException {
+        int[] fieldLengths = new int[in.readUnsignedByte()];
+        if (fieldLengths.length != BookingProtocol.FIELD_LENGTHS.length) {
+            throw new StreamCorruptedException(
+                    "Unexpected number of fields: " + fieldLengths.length);
+        }
+        int longestField = 0;
+        for (int field = 0; field < fieldLengths.length; field++) {
+            fieldLengths[field] = in.readUnsignedByte();
+            longestField = Math.max(longestField, fieldLengths[field]);
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new StreamCorruptedException(
+                    "Invalid number of contractors: " + count);
+        }
+        
+        //Each field is read back as its length and its characters.
+        Map<Long, Contractor> contractors = new LinkedHashMap<Long, Contractor>();
+        String[] fields = new String[fieldLengths.length];
+        byte[] block = new byte[longestField];
+        for (int i = 0; i < count; i++) {
+            long recNo = BookingProtocol.readRecordNumber(in);
+            for (int field = 0; field < fieldLengths.length; field++) {
+                int length = in.readUnsignedByte();
+                if (length > fieldLengths[field]) {
+                    throw new StreamCorruptedException("Field " + field
+                            + " of record " + recNo + " is too long.");
+                }
+                in.readFully(block, 0, length);
+                fields[field] = new String(block, 0, length,
+                        BookingProtocol.CHAR_SET);
+            }
+            contractors.put(recNo, new Contractor(fields));
+        }
+        return contractors;
+    }
+    
+    /**
+     * This method writes the status and message of a failed command.
+     *
+     * @param out the output.
+     * @param exception the exception thrown by the command.
+     * @throws IOException if the exception cannot be written.
+     */
+    public static void writeException(DataOutput out, Exception exception)
+            throws IOException {
+        int status = BookingProtocol.STATUS_FAILED;
+        if (exception instanceof RecordNotFoundException) {
+            status = BookingProtocol.STATUS_RECORD_NOT_FOUND;
+        } else if (exception instanceof SecurityException) {
+            status = BookingProtocol.STATUS_SECURITY;
+        } else if (exception instanceof RecordAlreadyBookedException) {
+            status = BookingProtocol.STATUS_ALREADY_BOOKED;
+        } else if (exception instanceof LockTimeoutException) {
+            status = BookingProtocol.STATUS_LOCK_TIMEOUT;
+        }
+        out.writeByte(status);
+        BookingProtocol.writeText(out, exception.getMessage());
+    }
+    
+    /**
+     * This method reads the message of a failed command and recreates its
+     * exception from the status.
+     *
+     * @param status the status of the response.
+     * @param in the response, after its status.
+     * @return the exception thrown by the command.
+     * @throws IOException if the message cannot be read or the status is not
+     * known.
+     */
+    public static Exception readException(int status, DataInput in)
+            throws IOException {
+        String message = BookingProtocol.readText(in);
+        switch (status) {
+            case BookingProtocol.STATUS_RECORD_NOT_FOUND:
+                return new RecordNotFoundException(message);
+            case BookingProtocol.STATUS_SECURITY:
+                return new SecurityException(message);
+            case BookingProtocol.STATUS_ALREADY_BOOKED:
+                return new RecordAlreadyBookedException(message);
+            case BookingProtocol.STATUS_LOCK_TIMEOUT:
+                return new LockTimeoutException(message);
+            case BookingProtocol.STATUS_FAILED:
+                return new Exception(message);
+            default:
+                throw new StreamCorruptedException("Unknown status: " + status);
+        }
+    }
+    
+}
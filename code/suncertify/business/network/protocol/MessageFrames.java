@@ -0,0 +1,128 @@
+package suncertify.business.network.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * This class holds the framing used between the <code>BookingNwClient</code>
+ * and the <code>BookingNwServer</code>.  Every message is a four byte big
+ * endian length followed by that many bytes of body, so the server can tell
+ * when a whole request has arrived without blocking a thread on the socket.
+ * <br/><br/>
+ *
+ * The body of a message is laid out by the <code>BookingProtocol</code>, and
+ * each message stands alone so no stream state is carried from one message to
+ * the next.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public class MessageFrames {
+    
+    /**
+     * The length in bytes of the length prefix.
+     */
+    public static final int HEADER_LENGTH = 4;
+    
+    /**
+     * The largest message body accepted, so a corrupt or hostile length
+     * prefix cannot make either side allocate an unbounded buffer.
+     */
+    public static final int MAX_BODY_LENGTH = 16 * 1024 * 1024;
+    
+    /**
+     * The largest request body the server accepts.  Requests only carry
+     * criteria, record numbers and customer ids, so they are kept far smaller
+     * than responses and a client cannot make the server hold a large buffer
+     * for its connection.
+     */
+    public static final int MAX_REQUEST_LENGTH = 64 * 1024;
+    
+    /**
+     * The constructor is private as this class only holds static methods.
+     */
+    private MessageFrames() {
+    }
+    
+    /**
+     * This method checks a length prefix read from the wire.
+     *
+     * @param length the body length.
+     * @throws StreamCorruptedException if the length is negative or larger
+     * than <code>MAX_BODY_LENGTH</code>.
+     */
+    public static void checkBodyLength(int length)
+            throws StreamCorruptedException {
+        MessageFrames.checkBodyLength(length, MessageFrames.MAX_BODY_LENGTH);
+    }
+    
+    /**
+     * This method checks a length prefix read from the wire against the
+     * largest body the reader accepts.
+     *
+     * @param length the body length.
+     * @param maxLength the largest body length accepted.
+     * @throws StreamCorruptedException if the length is negative or larger
+     * than <code>maxLength</code>.
+     */
+    public static void checkBodyLength(int length, int maxLength)
+            throws StreamCorruptedException {
+        if (length < 0 || length > maxLength) {
+            throw new StreamCorruptedException(
+                    "Invalid message length: " + length);
+        }
+    }
+    
+    /**
+     * This method writes a message, length prefix and body, to a blocking
+     * stream and flushes it.
+     *
+     * @param out the stream to write to.
+     * @param body the message body.
+     * @throws IOException if the message cannot be written.
+     */
+    public static void writeFrame(OutputStream out, byte[] body)
+            throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(body.length);
+        dataOut.write(body);
+        dataOut.flush();
+    }
+    
+    /**
+     * This method reads a whole message body from a blocking stream.
+     *
+     * @param in the stream to read from.
+     * @return the message body.
+     * @throws IOException if the stream ends or the length prefix is not
+     * valid.
+     */
+    public static byte[] readFrame(InputStream in) throws IOException {
+        return MessageFrames.readFrame(in, MessageFrames.MAX_BODY_LENGTH);
+    }
+    
+    /**
+     * This method reads a whole message body from a blocking stream, refusing
+     * a body larger than the reader accepts.
+     *
+     * @param in the stream to read from.
+     * @param maxLength the largest body length accepted.
+     * @return the message body.
+     * @throws IOException if the stream ends or the length prefix is not
+     * valid.
+     */
+    public static byte[] readFrame(InputStream in, int maxLength)
+            throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        int length = dataIn.readInt();
+        MessageFrames.checkBodyLength(length, maxLength);
+        byte[] body = new byte[length];
+        dataIn.readFully(body);
+        return body;
+    }
+    
+}
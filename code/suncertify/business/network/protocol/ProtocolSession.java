@@ -0,0 +1,70 @@
+package suncertify.business.network.protocol;
+
+/**
+ * This class holds what the two ends of one connection have agreed, so that
+ * each request on the connection is read and answered the same way.  The
+ * client and the server each keep a session for the connection, filled in by
+ * the hello exchange that opens it.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public class ProtocolSession {
+    
+    /**
+     * Holds the protocol version agreed for the connection, or 0 until the
+     * hello exchange has taken place.
+     */
+    private volatile int version = 0;
+    
+    /**
+     * True if large responses on the connection are compressed.
+     */
+    private volatile boolean compressionEnabled = false;
+    
+    /**
+     * Returns the protocol version agreed for the connection.
+     *
+     * @return the protocol version, or 0 if none has been agreed.
+     */
+    public int getVersion() {
+        return this.version;
+    }
+    
+    /**
+     * Sets the protocol version agreed for the connection.
+     *
+     * @param version the protocol version.
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+    
+    /**
+     * Returns true once a protocol version has been agreed.
+     *
+     * @return true if the hello exchange has taken place.
+     */
+    public boolean isNegotiated() {
+        return this.version != 0;
+    }
+    
+    /**
+     * Returns true if large responses on the connection are compressed.
+     *
+     * @return true if compression has been agreed.
+     */
+    public boolean isCompressionEnabled() {
+        return this.compressionEnabled;
+    }
+    
+    /**
+     * Sets whether large responses on the connection are compressed.
+     *
+     * @param compressionEnabled true if compression has been agreed.
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+    
+}
@@ -0,0 +1,206 @@
+package suncertify.business.network.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class holds the compression of responses between the
+ * <code>BookingNwClient</code> and the server.  From protocol version 3 the
+ * outcome of a command in a response follows an encoding byte.  If the client
+ * asked for compression in its hello request, an outcome of at least
+ * <code>COMPRESSION_THRESHOLD</code> bytes, such as a search that returns the
+ * whole contractor table, is deflated.  Smaller outcomes are sent as they
+ * are, since deflating them saves too little to be worth the time.<br/>
+ * <br/>
+ *
+ * Both ends prime the deflater with the same preset dictionary, which holds
+ * the field names of the database schema, the specialties and the cities
+ * of the contractors.  A search result repeats these words from its first row,
+ * so even a short result compresses well.  The dictionary is part of the
+ * protocol, so changing it needs a new protocol version.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public class ResponseCompression {
+    
+    /**
+     * The encoding byte of an outcome sent as it is.
+     */
+    public static final int ENCODING_PLAIN = 0;
+    
+    /**
+     * The encoding byte of a deflated outcome.  It is followed by the length
+     * of the outcome before deflating and then the deflated bytes.
+     */
+    public static final int ENCODING_DEFLATE = 1;
+    
+    /**
+     * The smallest outcome in bytes that is deflated.
+     */
+    public static final int COMPRESSION_THRESHOLD = 512;
+    
+    /**
+     * The preset dictionary shared by both ends.  The deflater finds matches
+     * nearer the end of the dictionary more cheaply, so the most common words
+     * come last.
+     */
+    private static final byte[] DICTIONARY = ("name location specialties "
+            + "size rate owner "
+            + "Electrical Glass Air Conditioning Painting Plumbing Heating "
+            + "Carpets Drywall Roofing, "
+            + "Bali Hai Digitopolis Atlantis EmeraldCity Hobbiton Paravel "
+            + "Lendmarch Xanadu Pleasantville Metropolis Smallville Whoville "
+            + "$100.00$35.00$45.00$50.00$60.00$65.00$70.00$75.00$80.00$85.00"
+            + "$90.00$95.00")
+            .getBytes(Charset.forName("US-ASCII"));
+    
+    /**
+     * The constructor is private as this class only holds static methods.
+     */
+    private ResponseCompression() {
+    }
+    
+    /**
+     * This method writes the outcome of a command into a response on the
+     * server.  Before protocol version 3 it is written as it is, otherwise it
+     * follows an encoding byte and is deflated if the client asked for
+     * compression and it is large enough.
+     *
+     * @param session the session of the connection.
+     * @param outcome the outcome of the command.
+     * @param out the response.
+     * @throws IOException if the outcome cannot be written.
+     */
+    public static void writeOutcome(ProtocolSession session, byte[] outcome,
+            DataOutput out) throws IOException {
+        if (session.getVersion() < BookingProtocol.COMPRESSION_VERSION) {
+            out.write(outcome);
+            return;
+        }
+        if (session.isCompressionEnabled()
+                && outcome.length >= ResponseCompression.COMPRESSION_THRESHOLD) {
+            byte[] deflated = ResponseCompression.deflate(outcome);
+            
+            //The outcome is only sent deflated if that makes it smaller.
+            if (deflated.length < outcome.length) {
+                out.writeByte(ResponseCompression.ENCODING_DEFLATE);
+                out.writeInt(outcome.length);
+                out.write(deflated);
+                return;
+            }
+        }
+        out.writeByte(ResponseCompression.ENCODING_PLAIN);
+        out.write(outcome);
+    }
+    
+    /**
+     * This method reads the outcome of a command from a response on the
+     * client, inflating it if it was deflated.
+     *
+     * @param session the session of the connection.
+     * @param in the response, after its request id.
+     * @return the stream to read the outcome from.
+     * @throws IOException if the encoding is not known or the outcome cannot
+     * be inflated.
+     */
+    public static DataInputStream readOutcome(ProtocolSession session,
+            DataInputStream in) throws IOException {
+        if (session.getVersion() < BookingProtocol.COMPRESSION_VERSION) {
+            return in;
+        }
+        int encoding = in.readUnsignedByte();
+        if (encoding == ResponseCompression.ENCODING_PLAIN) {
+            return in;
+        }
+        if (encoding != ResponseCompression.ENCODING_DEFLATE) {
+            throw new StreamCorruptedException(
+                    "Unknown response encoding: " + encoding);
+        }
+        
+        //The inflated length is checked like a length prefix, so a corrupt
+        //response cannot make the client allocate an unbounded buffer.
+        int length = in.readInt();
+        MessageFrames.checkBodyLength(length);
+        byte[] deflated = new byte[in.available()];
+        in.readFully(deflated);
+        return new DataInputStream(new ByteArrayInputStream(
+                ResponseCompression.inflate(deflated, length)));
+    }
+    
+    /**
+     * This private method deflates an outcome with the preset dictionary.
+     *
+     * @param outcome the outcome.
+     * @return the deflated bytes.
+     */
+    private static byte[] deflate(byte[] outcome) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setDictionary(ResponseCompression.DICTIONARY);
+            deflater.setInput(outcome);
+            deflater.finish();
+            ByteArrayOutputStream bytesOut
+                    = new ByteArrayOutputStream(outcome.length / 2 + 16);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                bytesOut.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return bytesOut.toByteArray();
+        } finally {
+            //Frees the native memory of the deflater now rather than when it
+            //is garbage collected.
+            deflater.end();
+        }
+    }
+    
+    /**
+     * This private method inflates an outcome deflated with the preset
+     * dictionary.
+     *
+     * @param deflated the deflated bytes.
+     * @param length the length of the outcome before deflating.
+     * @return the outcome.
+     * @throws IOException if the bytes do not inflate to the given length.
+     */
+    private static byte[] inflate(byte[] deflated, int length)
+            throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            byte[] outcome = new byte[length];
+            int offset = 0;
+            while (!inflater.finished()) {
+                int count = inflater.inflate(
+                        outcome, offset, outcome.length - offset);
+                offset += count;
+                if (inflater.needsDictionary()) {
+                    inflater.setDictionary(ResponseCompression.DICTIONARY);
+                } else if (count == 0 && (inflater.needsInput()
+                        || offset == outcome.length)) {
+                    //The deflated bytes have ended early or hold more than
+                    //the given length.
+                    break;
+                }
+            }
+            if (!inflater.finished() || offset != length) {
+                throw new StreamCorruptedException(
+                        "Compressed response is not valid.");
+            }
+            return outcome;
+        } catch (DataFormatException ex) {
+            throw new StreamCorruptedException(ex.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+    
+}
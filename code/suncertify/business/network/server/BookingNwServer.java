@@ -5,23 +5,43 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.SocketException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import java.util.Properties;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import suncertify.business.BookingBusinessAdapter;
-import suncertify.db.DBAccess;
+import suncertify.db.AsyncCallback;
+import suncertify.db.AsyncData;
 import suncertify.db.Data;
 import suncertify.presentation.ApplicationRunner;
-import suncertify.presentation.BookingModel;
-import suncertify.presentation.BookingModelImp;
 
 /**
  * The class is the socket server responsible for listening and connecting any 
- * client that request connection, then passing the socket on to a startService 
- * using a thread pool so it can take multiple clients.
+ * client that request connection.  A single selector thread owns every 
+ * connection, reading framed requests without blocking, and only a request 
+ * that has arrived in full is passed to a bounded pool of worker threads.  
+ * The number of clients is therefore limited by the file descriptors 
+ * available, not by the number of threads.<br/><br/>
+ * 
+ * Setting <code>dataFile.serverMode</code> to <code>threads</code> in the 
+ * properties file runs the simpler blocking <code>ServerService</code> loop 
+ * instead, each connection on its own thread.  The thread is a virtual thread 
+ * where the platform has them, or else a small stack daemon thread.
  * 
  * @author Robert Black
  * @version 1.0
@@ -29,14 +49,51 @@ import suncertify.presentation.BookingModelImp;
 public class BookingNwServer {
     
     /**
-     * Holds the maximum number of threads allowed in the thread pool.
+     * Holds the number of worker threads that carry out requests.
+     */
+    private static final int NWORKERS = 16;
+    
+    /**
+     * Holds the largest number of requests waiting for a worker thread.
+     */
+    private static final int QUEUE_CAPACITY = 1000;
+    
+    /**
+     * The value of <code>dataFile.serverMode</code> that runs each connection 
+     * on its own thread.
+     */
+    public static final String THREAD_PER_CONNECTION_MODE = "threads";
+    
+    /**
+     * The value of <code>dataFile.serverMode</code> that serves every 
+     * connection from the selector thread, used when the properties file does 
+     * not set a mode.
+     */
+    public static final String SELECTOR_MODE = "selector";
+    
+    /**
+     * True if each connection runs on its own thread rather than being served 
+     * by the selector thread.
+     */
+    private final boolean threadPerConnection;
+    
+    /**
+     * Holds the factory of the connection threads in thread per connection 
+     * mode.
      */
-    private static final int NTHREADS = 100;
+    private final ConnectionThreadFactory connectionThreads 
+            = new ConnectionThreadFactory();
     
     /**
-     * Holds the <code>Executor</code> used to create the thread pool.
+     * Holds the server socket in thread per connection mode.
      */
-    private static Executor exec;
+    private volatile ServerSocket serverSocket;
+    
+    /**
+     * Holds the worker pool that carries out requests in selector mode, or 
+     * null in thread per connection mode.
+     */
+    private final ThreadPoolExecutor workers;
     
     /**
      * Holds the port number the server will listen on.
@@ -44,20 +101,27 @@ public class BookingNwServer {
     private int port;
     
     /**
-     * Holds the server socket.
+     * Holds the server socket channel.
+     */
+    private volatile ServerSocketChannel serverChannel;
+    
+    /**
+     * Holds the selector that watches the server socket channel and every 
+     * client connection.
      */
-    private ServerSocket serverSocket;
+    private volatile Selector selector;
     
     /**
-     * Holds the socket created by a request to be passed to a startService.
+     * Holds the connections that have responses queued by a worker thread, 
+     * for the selector thread to write.
      */
-    private Socket serviceSocket;
+    private final Queue<ClientConnection> writeReady 
+            = new ConcurrentLinkedQueue<ClientConnection>();
     
     /**
-     * Holds the server startService that the socket is passed to in its own 
-     * thread.
+     * Holds the statistics of the open connections and the memory they hold.
      */
-    private ServerService serverService;
+    private final ConnectionStatistics statistics = new ConnectionStatistics();
 
     /**
      * The default constructor that builds the instance to the 
@@ -89,76 +153,387 @@ public class BookingNwServer {
             //Close the FileInputStream.
             propertiesIn.close();
 
-            //Initailizes the Executor for the thread pool.
-            BookingNwServer.exec = Executors.newFixedThreadPool(NTHREADS);
-
             //Read the required properties and store them into their respective 
             //variable.
             String propertiesPort = 
                     applicationProperties.getProperty("dataFile.serverPort").trim();
             this.port = Integer.parseInt(propertiesPort);
+            
+            //The server mode is optional.
+            String serverMode = applicationProperties.getProperty(
+                    "dataFile.serverMode", BookingNwServer.SELECTOR_MODE).trim();
+            if (serverMode.equalsIgnoreCase(
+                    BookingNwServer.THREAD_PER_CONNECTION_MODE)) {
+                this.threadPerConnection = true;
+            } else if (serverMode.equalsIgnoreCase(
+                    BookingNwServer.SELECTOR_MODE)) {
+                this.threadPerConnection = false;
+            } else {
+                throw new IOException("The server mode in the properties file "
+                        + "is not known: " + serverMode);
+            }
+            
+            //Initailizes the bounded worker pool that carries out requests in 
+            //selector mode.  A request that arrives when the queue is full 
+            //is refused.  In thread per connection mode each connection 
+            //carries out its own requests, so no pool is needed.
+            if (this.threadPerConnection) {
+                this.workers = null;
+            } else {
+                this.workers = new ThreadPoolExecutor(NWORKERS, NWORKERS, 0l, 
+                        TimeUnit.MILLISECONDS, 
+                        new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY));
+            }
+            
+            //Opens the database file when the server starts, so a file that 
+            //cannot be read is reported straight away.  Each connection then 
+            //has its own Data instance on the shared file.
+            new Data();
+            
+            //Makes the connection statistics available to JMX clients.  If 
+            //they cannot be registered, for example because another server 
+            //in the same virtual machine has been, they are still kept.
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        this.statistics, new ObjectName(
+                        "suncertify.business:type=ConnectionStatistics"));
+            } catch (JMException ex) {
+                //The statistics are still kept.
+            }
     }
     
     /**
-     * This method is used start the server and creates a 
-     * <code>ServerSocket</code> that listens on the stored port number.  It 
-     * then enters a while loop until a request comes in.  When a request comes 
-     * in it passes the socket to a startService in its own thread in the thread 
-     * pool created by the <code>Executor</code> allowing the server to listen 
-     * for further incoming requests.
+     * This method is used start the server in the mode given in the 
+     * properties file, and returns once the server has shut down.
      */
     public void startServer() {
         try {
-            //Creating the ServerSocket.
-            this.serverSocket = new ServerSocket(port);
+            if (this.threadPerConnection) {
+                this.acceptConnections();
+            } else {
+                this.selectConnections();
+            }
+        } catch (ClosedSelectorException ex) {
+            //The server has been shut down.
+        } catch (IOException ex) {
+            //The server has been shut down or could not carry on.
+        } finally {
+            this.closeConnections();
+            if (this.workers != null) {
+                this.workers.shutdown();
+            }
+        }
+        ApplicationRunner.handleException("Server has shut down.");
+    }
+
+    /**
+     * Returns true if the server runs each connection on a virtual thread, 
+     * that is it is in thread per connection mode on a platform that has 
+     * virtual threads.
+     * 
+     * @return true if connections run on virtual threads.
+     */
+    public boolean isUsingVirtualThreads() {
+        return this.threadPerConnection && this.connectionThreads.isVirtual();
+    }
+
+    /**
+     * Returns the statistics of the open client connections, including the 
+     * memory each holds.
+     * 
+     * @return the connection statistics.
+     */
+    public ConnectionStatisticsMBean getConnectionStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * This private method creates the server service of a new connection.  
+     * Each connection has its own <code>Data</code> instance, which owns the 
+     * record locks taken for its client, so the locks of one client are 
+     * never taken for another's and can all be released when its connection 
+     * ends.  Bookings wait for record locks through the asynchronous access, 
+     * so a waiting booking does not hold on to a worker thread.
+     * 
+     * @param data the <code>Data</code> instance of the connection.
+     * @return the server service of the connection.
+     * @throws IOException if the business adapter cannot be created.
+     */
+    private ServerService createService(Data data) throws IOException {
+        BookingBusinessAdapter bookingAdapter 
+                = new BookingBusinessAdapterImp(data, new AsyncData(data));
+        return new BookingServiceImp(bookingAdapter);
+    }
+
+    /**
+     * This private method runs the server in thread per connection mode.  It 
+     * creates a <code>ServerSocket</code> that listens on the stored port 
+     * number and starts a new connection thread running the blocking 
+     * <code>ServerService</code> loop for each client that connects.  Each 
+     * thread is given its own socket, so a later accept cannot change the 
+     * socket an earlier thread works with.
+     * 
+     * @throws IOException when the server socket is closed.
+     */
+    private void acceptConnections() throws IOException {
+        //Creating the ServerSocket.
+        this.serverSocket = new ServerSocket(this.port);
+        
+        while (true) {
+            //the ServerSocket is now waiting for a request.
+            final Socket socket = this.serverSocket.accept();
+            socket.setTcpNoDelay(true);
+            final Data data = new Data();
+            final ServerService service = this.createService(data);
             
-            while (true) {
-                //the ServerSocket is now waiting for a request.
-                this.serviceSocket = this.serverSocket.accept();
-                
-                //This is a Runnable that contains a task which passed on the 
-                //socket to a startService and starts the startService in a new 
-                //thread in the thread pool.
-                Runnable serviceTask = new Runnable() {
+            //Starts the service for the socket on its own thread.
+            this.connectionThreads.newThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    BookingNwServer.this.statistics.threadConnectionOpened();
+                    try {
+                        service.startService(socket);
+                    } finally {
+                        //The client has disconnected so any records it still 
+                        //has locked are released straight away rather than 
+                        //when their lease runs out.
+                        data.close();
+                        BookingNwServer.this.statistics.threadConnectionClosed();
+                    }
+                }
+
+            }).start();
+        }
+    }
+
+    /**
+     * This private method runs the server in selector mode.  It opens a 
+     * non-blocking <code>ServerSocketChannel</code> on the stored port number 
+     * and then loops on the selector, accepting connections, reading requests 
+     * and writing responses as each becomes ready, until the server is shut 
+     * down.
+     * 
+     * @throws IOException if the server socket channel cannot be opened.
+     */
+    private void selectConnections() throws IOException {
+        //Opens the selector and the ServerSocketChannel.
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.socket().bind(new InetSocketAddress(this.port));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        
+        while (this.selector.isOpen()) {
+            //Waits until a channel is ready or a worker thread has queued 
+            //a response.
+            this.selector.select();
+            this.writeQueuedResponses();
+            
+            Iterator<SelectionKey> keys 
+                    = this.selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    this.acceptConnection();
+                } else {
+                    ClientConnection connection 
+                            = (ClientConnection) key.attachment();
+                    if (key.isReadable()) {
+                        this.readRequests(key, connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        this.writeResponses(key, connection);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This private method accepts a new client and registers its channel 
+     * with the selector for reading.
+     * 
+     * @throws IOException if the client cannot be accepted.
+     */
+    private void acceptConnection() throws IOException {
+        SocketChannel channel = this.serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Data data = new Data();
+        ClientConnection connection = new ClientConnection(channel, 
+                this.statistics, data, this.createService(data));
+        this.statistics.connectionOpened(connection);
+        channel.register(this.selector, SelectionKey.OP_READ, connection);
+    }
+
+    /**
+     * This private method reads from a client and passes each request that 
+     * has arrived in full to the worker pool, where requests with ids may be 
+     * carried out at the same time and answered in any order.  Reading stops 
+     * while the connection has as many requests in flight as it may have, so 
+     * one client cannot fill the worker pool, or while it has too many 
+     * response bytes waiting for the client to read them, so one slow client 
+     * cannot make the server hold an unbounded number of responses.
+     * 
+     * @param key the selection key of the connection.
+     * @param connection the connection.
+     */
+    private void readRequests(SelectionKey key, 
+            final ClientConnection connection) {
+        try {
+            while (connection.canAcceptRequest()) {
+                final byte[] request = connection.readRequest();
+                if (request == null) {
+                    break;
+                }
+                connection.requestStarted();
+                this.workers.execute(new Runnable() {
 
                     @Override
                     public void run() {
-                        BookingNwServer.this.startService(
-                                BookingNwServer.this.serviceSocket);
+                        BookingNwServer.this.serviceRequest(
+                                connection, request);
                     }
 
-                };
-                BookingNwServer.exec.execute(serviceTask);
+                });
             }
+            this.updateInterest(key, connection);
         } catch (IOException ex) {
-            ApplicationRunner.handleException("Server has shut down.");
+            //The client has disconnected or sent a corrupt message.
+            connection.close();
+        } catch (RejectedExecutionException ex) {
+            //The server is too busy, so the client is disconnected and may 
+            //try again.
+            connection.close();
         }
     }
 
     /**
-     * This method is used start a startService with a <code>ServerService</code> 
-     * startService passing the <code>Socket</code> to it.
+     * This private method is run by a worker thread to carry out a request, 
+     * queue the response and wake the selector thread to write it.  A 
+     * booking waiting for a record lock leaves the worker thread free, and 
+     * its response is queued by the database I/O thread once it has been 
+     * made.  A request that cannot be answered closes the connection, so 
+     * the client is never left waiting for a response that will not come.
      * 
-     * @param socket 
+     * @param connection the connection the request came from.
+     * @param request the request body.
      */
-    private void startService(Socket socket) {
+    private void serviceRequest(final ClientConnection connection, 
+            byte[] request) {
+        AsyncCallback<byte[]> callback = new AsyncCallback<byte[]>() {
+            
+            @Override
+            public void completed(byte[] response) {
+                connection.queueResponse(response);
+                BookingNwServer.this.writeReady.add(connection);
+                Selector currentSelector = BookingNwServer.this.selector;
+                if (currentSelector != null) {
+                    currentSelector.wakeup();
+                }
+            }
+            
+            @Override
+            public void failed(Exception ex) {
+                //The request was not valid or could not be carried out.
+                connection.close();
+            }
+            
+        };
         try {
-            DBAccess dbAccess = new Data();
-            BookingBusinessAdapter businessLodgic 
-                    = new BookingBusinessAdapterImp(dbAccess);
-            BookingModel serverModel = new BookingModelImp(businessLodgic);
-            ServerService bookingService = new BookingServiceImp(serverModel);
-            bookingService.startService(socket);
-        } catch (FileNotFoundException ex) {
-            ApplicationRunner.handleException(ex.getMessage());
+            connection.getService().serviceRequest(
+                    connection.getSession(), request, callback);
+        } catch (RuntimeException ex) {
+            callback.failed(ex);
+        }
+    }
+
+    /**
+     * This private method writes the responses queued by the worker threads. 
+     * Any connection whose responses cannot all be written now waits for its 
+     * channel to become writable.
+     */
+    private void writeQueuedResponses() {
+        ClientConnection connection = this.writeReady.poll();
+        while (connection != null) {
+            SelectionKey key = connection.getChannel().keyFor(this.selector);
+            if (key != null && key.isValid()) {
+                this.writeResponses(key, connection);
+            }
+            connection = this.writeReady.poll();
+        }
+    }
+
+    /**
+     * This private method writes as many of a connections responses as the 
+     * channel will take.
+     * 
+     * @param key the selection key of the connection.
+     * @param connection the connection.
+     */
+    private void writeResponses(SelectionKey key, ClientConnection connection) {
+        try {
+            connection.writeResponses();
+            this.updateInterest(key, connection);
         } catch (IOException ex) {
-            ApplicationRunner.handleException(ex.getMessage());
+            //The client has disconnected.
+            connection.close();
+        }
+    }
+
+    /**
+     * This private method sets what the selector watches a connection for: 
+     * reading while it may take another request, and writing while it has 
+     * responses that could not all be written.
+     * 
+     * @param key the selection key of the connection.
+     * @param connection the connection.
+     */
+    private void updateInterest(SelectionKey key, ClientConnection connection) {
+        int interestOps = 0;
+        if (connection.canAcceptRequest()) {
+            interestOps |= SelectionKey.OP_READ;
+        }
+        if (connection.hasResponses()) {
+            interestOps |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(interestOps);
+    }
+
+    /**
+     * This private method closes the connection of every client still 
+     * registered with the selector.
+     */
+    private void closeConnections() {
+        Selector currentSelector = this.selector;
+        if (currentSelector == null) {
+            return;
+        }
+        try {
+            for (SelectionKey key : currentSelector.keys()) {
+                if (key.attachment() instanceof ClientConnection) {
+                    ((ClientConnection) key.attachment()).close();
+                }
+            }
+        } catch (ClosedSelectorException ex) {
+            //The selector has been closed and its keys with it.
         }
     }
     
     /**
      * This method shuts down the server by closing the 
-     * <code>ServerSocket</code>.
+     * <code>ServerSocketChannel</code> and the selector, or in thread per 
+     * connection mode the <code>ServerSocket</code>.  Requests already with 
+     * the worker pool are finished before its threads end, and connection 
+     * threads carry on until their clients disconnect.
      */
     public void shutDownServer() {
         try {
@@ -166,15 +541,24 @@ public class BookingNwServer {
             if (this.serverSocket != null) {
                 //Close the ServerSocket.
                 this.serverSocket.close();
-                
+                this.serverSocket = null;
+            }
+            
+            //Check to see if the ServerSocketChannel is not null.
+            if (this.serverChannel != null) {
+                //Close the ServerSocketChannel.
+                this.serverChannel.close();
+            }
+            
+            //Closes the selector, which ends the selector loop.
+            if (this.selector != null) {
+                this.selector.close();
             }
-        } catch (SocketException ex) {
-            ApplicationRunner.handleException(ex.getMessage());
         } catch (IOException ex) {
             ApplicationRunner.handleException(ex.getMessage());
         } finally {
-            //Set the serverSocket to null.
-            this.serverSocket = null;
+            //Set the serverChannel to null.
+            this.serverChannel = null;
         }
     }
     
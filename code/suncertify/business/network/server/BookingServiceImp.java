@@ -1,15 +1,26 @@
 package suncertify.business.network.server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.StreamCorruptedException;
 import java.net.Socket;
 import java.net.SocketException;
+import suncertify.business.BookingBusinessAdapter;
 import suncertify.business.network.commands.Command;
+import suncertify.business.network.protocol.BookingProtocol;
+import suncertify.business.network.protocol.MessageFrames;
+import suncertify.business.network.protocol.ProtocolSession;
+import suncertify.business.network.protocol.ResponseCompression;
+import suncertify.db.AsyncCallback;
 import suncertify.presentation.ApplicationRunner;
-import suncertify.presentation.BookingModel;
 
 /**
  * This class implements the <code>ServerServce</code> interface so it can be 
@@ -21,71 +32,243 @@ import suncertify.presentation.BookingModel;
 public class BookingServiceImp implements ServerService {
     
     /**
-     * Holds the presentation model.
+     * The size in bytes of each of the input and output stream buffers of a 
+     * connection served by <code>startService()</code>.
      */
-    BookingModel model;
+    static final int STREAM_BUFFER_SIZE = 8192;
+    
+    /**
+     * The bytes held in stream buffers by a connection served by 
+     * <code>startService()</code>, which stay the same however long the 
+     * connection is open.
+     */
+    static final int CONNECTION_BUFFER_BYTES 
+            = 2 * BookingServiceImp.STREAM_BUFFER_SIZE;
+    
+    /**
+     * Holds the business adapter of the connection.
+     */
+    BookingBusinessAdapter bookingAdapter;
 
     /**
-     * The constructor for the booking startService.  It takes a 
-     * <code>BookingModel</code> and initializes the mode variable.
+     * The constructor for the booking startService.  It takes the 
+     * <code>BookingBusinessAdapter</code> of the connection and initializes 
+     * the bookingAdapter variable.
      * 
-     * @param model the model to be used.
+     * @param bookingAdapter the business adapter the commands are executed 
+     * against.
      */
-    public BookingServiceImp(BookingModel model) {
-        this.model = model;
+    public BookingServiceImp(BookingBusinessAdapter bookingAdapter) {
+        this.bookingAdapter = bookingAdapter;
     }
 
     /**
      * This method will start the startService that this class offers to what ever 
-     * socket is passed to it.
+     * socket is passed to it.  It reads one framed request at a time, carries 
+     * it out and writes the framed response back, until the client 
+     * disconnects.  Each message is read into and written from its own 
+     * buffer, so no state is carried from one message to the next and the 
+     * connection holds only its fixed size stream buffers between requests.
      * 
      * @param socket the socket to be used.
      */
     @Override
     public void startService(Socket socket) {
+        //Checks that the socket is not null, before the finally block below 
+        //closes it.
+        if (socket == null) {
+            return;
+        }
         try {
-            //Checks that the socket is not null.
-            if (socket == null) {
-                return;
-            }
-            
-            //Create input streams.
-            InputStream inputStream = socket.getInputStream();
-            ObjectInputStream objectInputStream 
-                    = new ObjectInputStream(inputStream);
-            
-            //Creat output streams
-            OutputStream outStream = socket.getOutputStream();
-            ObjectOutputStream objectOutStream 
-                    = new ObjectOutputStream(outStream);
-            objectOutStream.flush();
+            //Create the streams.
+            InputStream inStream = new BufferedInputStream(
+                    socket.getInputStream(), BookingServiceImp.STREAM_BUFFER_SIZE);
+            OutputStream outStream = new BufferedOutputStream(
+                    socket.getOutputStream(), BookingServiceImp.STREAM_BUFFER_SIZE);
             
-            //The while loop will wait to read an incoming command object 
-            //execute it and send it back to the client.  If the client 
-            //disconnects intentionally or unintentionally a SocketException 
-            //will be thrown and the condition in the while loop will become 
-            //false ending the while loop.
-            boolean clientConnected = true;
+            //The while loop will wait to read an incoming request, carry it 
+            //out and send the response back to the client.  If the client 
+            //disconnects intentionally or unintentionally an EOFException or 
+            //SocketException will be thrown ending the while loop.
+            ProtocolSession session = new ProtocolSession();
             try {
-                while (clientConnected) {
-                    //Receive the command object.
-                    Command command = (Command) objectInputStream.readObject();
-                    
-                    //Execute the command object.
-                    command.execute(this.model);
-                    
-                    //Send the command object back.
-                    objectOutStream.writeObject(command);
-                    objectOutStream.flush();
+                while (true) {
+                    byte[] request = MessageFrames.readFrame(
+                            inStream, MessageFrames.MAX_REQUEST_LENGTH);
+                    MessageFrames.writeFrame(
+                            outStream, this.serviceRequest(session, request));
                 } 
+            } catch (EOFException ex) {
+                //The client has disconnected.
             } catch (SocketException ex) {
-                clientConnected = false;
+                //The client has disconnected.
             }
-        } catch (ClassNotFoundException ex) {
-            ApplicationRunner.handleException(ex.getMessage());
         } catch (IOException ex) {
             ApplicationRunner.handleException(ex.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                //The socket is finished with.
+            }
+        }
+    }
+
+    /**
+     * This method carries out a request.  A hello request agrees the protocol 
+     * version of the connection.  Any other request is decoded into its 
+     * command, which is executed against the business adapter, and the 
+     * response holds the request id, if the protocol version has them, and 
+     * the outcome of the command, compressed if it is large and the client 
+     * asked for compression.
+     * 
+     * @param session the session of the connection the request came from.
+     * @param request the body of the request message.
+     * @return the body of the response message.
+     * @throws IOException if the request is not valid or comes before the 
+     * protocol version has been agreed.
+     */
+    @Override
+    public byte[] serviceRequest(ProtocolSession session, byte[] request) 
+            throws IOException {
+        DataInputStream in 
+                = new DataInputStream(new ByteArrayInputStream(request));
+        int opcode = in.readUnsignedByte();
+        if (opcode == BookingProtocol.OP_HELLO) {
+            return this.answerHello(session, in);
+        }
+        int requestId = this.readRequestId(session, in);
+        
+        //Execute the command and send its outcome back.
+        Command command = BookingProtocol.readRequest(opcode, in);
+        command.execute(this.bookingAdapter);
+        return this.writeResponse(session, requestId, command);
+    }
+
+    /**
+     * This method carries out a request like the blocking 
+     * <code>serviceRequest()</code>, except that the command is executed 
+     * with a completion.  A booking that has to wait for a record lock 
+     * therefore returns straight away, and its response is encoded and 
+     * given to the callback by the database I/O thread once the booking has 
+     * been made.
+     * 
+     * @param session the session of the connection the request came from.
+     * @param request the body of the request message.
+     * @param callback the callback given the body of the response message.
+     */
+    @Override
+    public void serviceRequest(final ProtocolSession session, byte[] request, 
+            final AsyncCallback<byte[]> callback) {
+        final int requestId;
+        final Command command;
+        try {
+            DataInputStream in 
+                    = new DataInputStream(new ByteArrayInputStream(request));
+            int opcode = in.readUnsignedByte();
+            if (opcode == BookingProtocol.OP_HELLO) {
+                callback.completed(this.answerHello(session, in));
+                return;
+            }
+            requestId = this.readRequestId(session, in);
+            command = BookingProtocol.readRequest(opcode, in);
+        } catch (IOException ex) {
+            callback.failed(ex);
+            return;
+        }
+        
+        //Execute the command and send its outcome back once it is stored.
+        command.execute(this.bookingAdapter, new Runnable() {
+            
+            @Override
+            public void run() {
+                byte[] response;
+                try {
+                    response = BookingServiceImp.this.writeResponse(
+                            session, requestId, command);
+                } catch (IOException ex) {
+                    callback.failed(ex);
+                    return;
+                } catch (RuntimeException ex) {
+                    callback.failed(ex);
+                    return;
+                }
+                callback.completed(response);
+            }
+            
+        });
+    }
+    
+    /**
+     * This private method answers a hello request, agreeing the protocol 
+     * version of the connection.
+     * 
+     * @param session the session of the connection.
+     * @param in the request, after its opcode.
+     * @return the body of the response message.
+     * @throws IOException if the request is not valid.
+     */
+    private byte[] answerHello(ProtocolSession session, DataInputStream in) 
+            throws IOException {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytesOut);
+        BookingProtocol.answerHello(session, in, out);
+        out.flush();
+        return bytesOut.toByteArray();
+    }
+    
+    /**
+     * This private method reads the request id of a request other than a 
+     * hello request.
+     * 
+     * @param session the session of the connection.
+     * @param in the request, after its opcode.
+     * @return the request id, or 0 if the protocol version has none.
+     * @throws IOException if the request comes before the protocol version 
+     * has been agreed or cannot be read.
+     */
+    private int readRequestId(ProtocolSession session, DataInputStream in) 
+            throws IOException {
+        if (!session.isNegotiated()) {
+            throw new StreamCorruptedException(
+                    "Request sent before the protocol version was agreed.");
+        }
+        if (session.getVersion() >= BookingProtocol.REQUEST_ID_VERSION) {
+            return in.readInt();
+        }
+        return 0;
+    }
+    
+    /**
+     * This private method writes the response to an executed command, 
+     * holding the request id, if the protocol version has them, and the 
+     * outcome of the command, compressed if it is large and the client asked 
+     * for compression.
+     * 
+     * @param session the session of the connection.
+     * @param requestId the request id.
+     * @param command the executed command.
+     * @return the body of the response message.
+     * @throws IOException if the outcome cannot be written.
+     */
+    private byte[] writeResponse(ProtocolSession session, int requestId, 
+            Command command) throws IOException {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytesOut);
+        
+        //Sends the request id back first so the client can match the 
+        //response to its request.
+        if (session.getVersion() >= BookingProtocol.REQUEST_ID_VERSION) {
+            out.writeInt(requestId);
         }
+        ByteArrayOutputStream outcomeBytes = new ByteArrayOutputStream();
+        DataOutputStream outcomeOut = new DataOutputStream(outcomeBytes);
+        command.writeResult(outcomeOut);
+        outcomeOut.flush();
+        ResponseCompression.writeOutcome(
+                session, outcomeBytes.toByteArray(), out);
+        out.flush();
+        return bytesOut.toByteArray();
     }
     
 }
@@ -0,0 +1,345 @@
+package suncertify.business.network.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.Queue;
+import suncertify.business.network.protocol.BookingProtocol;
+import suncertify.business.network.protocol.MessageFrames;
+import suncertify.business.network.protocol.ProtocolSession;
+import suncertify.db.ExtendedDBAccess;
+
+/**
+ * This is the worker class that holds the state of one client connection to
+ * the <code>BookingNwServer</code>.  The socket channel is non-blocking, so a
+ * request may arrive over several reads and a response may take several
+ * writes.  This class gathers the length prefix and body of the request being
+ * read and holds the responses still to be written.<br/><br/>
+ *
+ * Each connection has its own database access and server service.  The 
+ * database access owns the record locks taken for the client, and closing 
+ * the connection releases any it still holds.<br/><br/>
+ *
+ * Reading is only done by the selector thread.  Responses are queued by the
+ * worker threads and written by the selector thread, so the queue and the
+ * count of requests in flight are guarded by this object.<br/><br/>
+ *
+ * The memory a connection holds is bounded however long it stays open: a
+ * request body may be no larger than <code>MAX_REQUEST_LENGTH</code>, each
+ * buffer is let go once its message is complete, and no more requests are
+ * read while the responses waiting to be written pass
+ * <code>MAX_QUEUED_RESPONSE_BYTES</code>.  Note: that since this should only
+ * be used by the BookingNwServer class, the class has been set to have
+ * default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class ClientConnection {
+    
+    /**
+     * The largest number of requests with ids a connection may have in 
+     * flight at once.  Without ids only one request may be in flight, so the 
+     * responses go back in the order the requests came in.
+     */
+    private static final int MAX_REQUESTS_IN_FLIGHT = 16;
+    
+    /**
+     * The number of response bytes waiting to be written at which the
+     * connection stops reading requests, until the client has read enough of
+     * its responses.
+     */
+    static final int MAX_QUEUED_RESPONSE_BYTES = 1024 * 1024;
+    
+    /**
+     * The socket channel of the connection.
+     */
+    private final SocketChannel channel;
+    
+    /**
+     * The statistics the connection reports its closing to.
+     */
+    private final ConnectionStatistics statistics;
+    
+    /**
+     * The database access of the connection, which owns the record locks 
+     * taken for its requests.
+     */
+    private final ExtendedDBAccess dataAccess;
+    
+    /**
+     * The server service that carries out the requests of the connection.
+     */
+    private final ServerService service;
+    
+    /**
+     * Holds what the client and server have agreed for the connection.
+     */
+    private final ProtocolSession session = new ProtocolSession();
+    
+    /**
+     * Holds the length prefix of the request being read.
+     */
+    private final ByteBuffer header
+            = ByteBuffer.allocate(MessageFrames.HEADER_LENGTH);
+    
+    /**
+     * Holds the body of the request being read, or null while the length
+     * prefix is still being read.
+     */
+    private ByteBuffer body;
+    
+    /**
+     * Holds the size of the body buffer of the request being read, for the
+     * statistics to read from another thread.
+     */
+    private volatile int requestBytes = 0;
+    
+    /**
+     * Holds the framed responses waiting to be written, oldest first.
+     */
+    private final Queue<ByteBuffer> responses = new LinkedList<ByteBuffer>();
+    
+    /**
+     * Holds the number of requests read but not yet answered.
+     */
+    private int requestsInFlight = 0;
+    
+    /**
+     * Holds the size in bytes of the responses waiting to be written.
+     */
+    private long queuedResponseBytes = 0;
+    
+    /**
+     * Holds the most bytes the connection has had buffered at once.
+     */
+    private long peakBufferedBytes = 0;
+    
+    /**
+     * The constructor takes the socket channel of the connection, the
+     * statistics to report its closing to and the database access and server 
+     * service of the connection.
+     *
+     * @param channel the socket channel.
+     * @param statistics the connection statistics of the server.
+     * @param dataAccess the database access of the connection.
+     * @param service the server service of the connection.
+     */
+    ClientConnection(SocketChannel channel, ConnectionStatistics statistics, 
+            ExtendedDBAccess dataAccess, ServerService service) {
+        this.channel = channel;
+        this.statistics = statistics;
+        this.dataAccess = dataAccess;
+        this.service = service;
+    }
+    
+    /**
+     * Returns the socket channel of the connection.
+     *
+     * @return the socket channel.
+     */
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+    
+    /**
+     * Returns the server service of the connection.
+     *
+     * @return the server service.
+     */
+    ServerService getService() {
+        return this.service;
+    }
+    
+    /**
+     * Returns the protocol session of the connection.
+     *
+     * @return the protocol session.
+     */
+    ProtocolSession getSession() {
+        return this.session;
+    }
+    
+    /**
+     * This method reads what is available from the channel and returns the
+     * request body once it has arrived in full.
+     *
+     * @return the request body, or null if the request is not complete yet.
+     * @throws IOException if the client has disconnected or sent a length
+     * prefix that is not valid.
+     */
+    byte[] readRequest() throws IOException {
+        //Reads the length prefix first and then the body it describes.
+        if (this.body == null) {
+            if (this.channel.read(this.header) < 0) {
+                throw new EOFException();
+            }
+            if (this.header.hasRemaining()) {
+                return null;
+            }
+            this.header.flip();
+            int length = this.header.getInt();
+            this.header.clear();
+            MessageFrames.checkBodyLength(
+                    length, MessageFrames.MAX_REQUEST_LENGTH);
+            this.body = ByteBuffer.allocate(length);
+            this.requestBytes = length;
+            this.updatePeak();
+        }
+        if (this.body.hasRemaining() && this.channel.read(this.body) < 0) {
+            throw new EOFException();
+        }
+        if (this.body.hasRemaining()) {
+            return null;
+        }
+        
+        //The request is complete so the buffer is handed over and the next
+        //read starts a new length prefix.
+        byte[] request = this.body.array();
+        this.body = null;
+        this.requestBytes = 0;
+        return request;
+    }
+    
+    /**
+     * Returns true if another request may be read from the connection.
+     *
+     * @return true if fewer requests than allowed are in flight and the
+     * responses waiting to be written are below their limit.
+     */
+    synchronized boolean canAcceptRequest() {
+        int maxRequests = 1;
+        if (this.session.getVersion() >= BookingProtocol.REQUEST_ID_VERSION) {
+            maxRequests = ClientConnection.MAX_REQUESTS_IN_FLIGHT;
+        }
+        return this.requestsInFlight < maxRequests && this.queuedResponseBytes
+                < ClientConnection.MAX_QUEUED_RESPONSE_BYTES;
+    }
+    
+    /**
+     * Counts a request that has been read and passed to the worker pool.
+     */
+    synchronized void requestStarted() {
+        this.requestsInFlight++;
+    }
+    
+    /**
+     * Returns true if there are responses waiting to be written.
+     *
+     * @return true if the response queue is not empty.
+     */
+    synchronized boolean hasResponses() {
+        return !this.responses.isEmpty();
+    }
+    
+    /**
+     * This method queues a response to be written by the selector thread, 
+     * which also ends the request it answers.
+     *
+     * @param response the response body.
+     */
+    synchronized void queueResponse(byte[] response) {
+        this.requestsInFlight--;
+        ByteBuffer frame = ByteBuffer.allocate(
+                MessageFrames.HEADER_LENGTH + response.length);
+        frame.putInt(response.length);
+        frame.put(response);
+        frame.flip();
+        this.responses.add(frame);
+        this.queuedResponseBytes += frame.capacity();
+        this.updatePeak();
+    }
+    
+    /**
+     * This method writes as much of the queued responses as the channel will
+     * take without blocking.
+     *
+     * @return true if every queued response has been written.
+     * @throws IOException if the client has disconnected.
+     */
+    synchronized boolean writeResponses() throws IOException {
+        while (!this.responses.isEmpty()) {
+            ByteBuffer frame = this.responses.peek();
+            this.channel.write(frame);
+            if (frame.hasRemaining()) {
+                return false;
+            }
+            
+            //The whole response has been written so its buffer is let go.
+            this.responses.remove();
+            this.queuedResponseBytes -= frame.capacity();
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the number of requests read but not yet answered.
+     *
+     * @return the requests in flight.
+     */
+    synchronized int getRequestsInFlight() {
+        return this.requestsInFlight;
+    }
+    
+    /**
+     * Returns the bytes the connection currently holds in its request and
+     * response buffers.
+     *
+     * @return the buffered bytes.
+     */
+    synchronized long getBufferedBytes() {
+        return MessageFrames.HEADER_LENGTH + this.requestBytes
+                + this.queuedResponseBytes;
+    }
+    
+    /**
+     * Returns the most bytes the connection has had buffered at once.
+     *
+     * @return the peak buffered bytes.
+     */
+    synchronized long getPeakBufferedBytes() {
+        return this.peakBufferedBytes;
+    }
+    
+    /**
+     * Returns the address of the client, for reporting.
+     *
+     * @return the remote address of the connection.
+     */
+    String getRemoteAddress() {
+        return String.valueOf(this.channel.socket().getRemoteSocketAddress());
+    }
+    
+    /**
+     * This private method raises the peak buffered bytes to the bytes
+     * currently buffered, if they are higher.
+     */
+    private synchronized void updatePeak() {
+        this.peakBufferedBytes = Math.max(
+                this.peakBufferedBytes, this.getBufferedBytes());
+    }
+    
+    /**
+     * Closes the socket channel, lets go of the responses still waiting to 
+     * be written and releases the record locks the client still holds.
+     */
+    void close() {
+        this.statistics.connectionClosed(this);
+        synchronized (this) {
+            this.responses.clear();
+            this.queuedResponseBytes = 0;
+        }
+        try {
+            this.channel.close();
+        } catch (IOException ex) {
+            //The connection is finished with.
+        }
+        
+        //The client has disconnected so any records it still has locked are 
+        //released straight away rather than when their lease runs out.
+        this.dataAccess.close();
+    }
+    
+}
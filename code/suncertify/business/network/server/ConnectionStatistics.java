@@ -0,0 +1,177 @@
+package suncertify.business.network.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is the worker class that keeps track of the open client connections of
+ * the <code>BookingNwServer</code> and the memory each holds, so that a long
+ * session can be checked to be running in flat memory.  Selector mode
+ * connections are registered while open and asked for their buffered bytes
+ * when read.  Thread per connection mode connections are only counted, as
+ * each holds the same fixed stream buffers.<br/><br/>
+ *
+ * Every count is held in an atomic variable or concurrent map so that
+ * recording never blocks the selector or connection threads.  Note: that
+ * since this should only be used by the BookingNwServer class, the class has
+ * been set to have default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class ConnectionStatistics implements ConnectionStatisticsMBean {
+    
+    /**
+     * The open selector mode connections.
+     */
+    private final Map<ClientConnection, Boolean> connections
+            = new ConcurrentHashMap<ClientConnection, Boolean>();
+    
+    /**
+     * The number of open thread per connection mode connections.
+     */
+    private final AtomicInteger threadConnections = new AtomicInteger();
+    
+    /**
+     * The number of connections accepted since the server started.
+     */
+    private final AtomicLong acceptedConnections = new AtomicLong();
+    
+    /**
+     * The most bytes any one connection has had buffered, including those
+     * that have since closed.
+     */
+    private final AtomicLong peakBufferedBytes = new AtomicLong();
+    
+    /**
+     * Records that a selector mode connection has been accepted.
+     *
+     * @param connection the connection.
+     */
+    void connectionOpened(ClientConnection connection) {
+        this.acceptedConnections.incrementAndGet();
+        this.connections.put(connection, Boolean.TRUE);
+    }
+    
+    /**
+     * Records that a selector mode connection has been closed, keeping its
+     * peak buffered bytes.  Closing a connection twice is allowed.
+     *
+     * @param connection the connection.
+     */
+    void connectionClosed(ClientConnection connection) {
+        if (this.connections.remove(connection) != null) {
+            this.recordPeak(connection.getPeakBufferedBytes());
+        }
+    }
+    
+    /**
+     * Records that a thread per connection mode connection has been
+     * accepted.
+     */
+    void threadConnectionOpened() {
+        this.acceptedConnections.incrementAndGet();
+        this.threadConnections.incrementAndGet();
+        this.recordPeak(BookingServiceImp.CONNECTION_BUFFER_BYTES);
+    }
+    
+    /**
+     * Records that a thread per connection mode connection has been closed.
+     */
+    void threadConnectionClosed() {
+        this.threadConnections.decrementAndGet();
+    }
+    
+    @Override
+    public int getOpenConnections() {
+        return this.connections.size() + this.threadConnections.get();
+    }
+    
+    @Override
+    public long getAcceptedConnections() {
+        return this.acceptedConnections.get();
+    }
+    
+    @Override
+    public long getBufferedBytes() {
+        long bufferedBytes = (long) this.threadConnections.get()
+                * BookingServiceImp.CONNECTION_BUFFER_BYTES;
+        for (ClientConnection connection : this.connections.keySet()) {
+            bufferedBytes += connection.getBufferedBytes();
+        }
+        return bufferedBytes;
+    }
+    
+    @Override
+    public long getPeakConnectionBufferedBytes() {
+        for (ClientConnection connection : this.connections.keySet()) {
+            this.recordPeak(connection.getPeakBufferedBytes());
+        }
+        return this.peakBufferedBytes.get();
+    }
+    
+    @Override
+    public int getConnectionResponseLimit() {
+        return ClientConnection.MAX_QUEUED_RESPONSE_BYTES;
+    }
+    
+    @Override
+    public String[] getConnectionReport(int count) {
+        //Sorts the open connections, largest buffered bytes first.
+        List<ClientConnection> open = new ArrayList<ClientConnection>(
+                this.connections.keySet());
+        final Map<ClientConnection, Long> bufferedBytes
+                = new ConcurrentHashMap<ClientConnection, Long>();
+        for (ClientConnection connection : open) {
+            bufferedBytes.put(connection, connection.getBufferedBytes());
+        }
+        Collections.sort(open, new Comparator<ClientConnection>() {
+            
+            @Override
+            public int compare(ClientConnection a, ClientConnection b) {
+                long aBytes = bufferedBytes.get(a);
+                long bBytes = bufferedBytes.get(b);
+                return aBytes < bBytes ? 1 : (aBytes == bBytes ? 0 : -1);
+            }
+            
+        });
+        
+        //Writes a line for each of the largest connections.
+        List<String> lines = new ArrayList<String>();
+        int threads = this.threadConnections.get();
+        if (threads > 0) {
+            lines.add(threads + " thread connections: "
+                    + BookingServiceImp.CONNECTION_BUFFER_BYTES
+                    + " buffered bytes each");
+        }
+        for (int i = 0; i < open.size() && i < count; i++) {
+            ClientConnection connection = open.get(i);
+            lines.add(connection.getRemoteAddress() + ": buffered="
+                    + bufferedBytes.get(connection) + " peak="
+                    + connection.getPeakBufferedBytes() + " inFlight="
+                    + connection.getRequestsInFlight());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+    
+    /**
+     * This private method raises the peak buffered bytes of a connection to
+     * the value given, if it is higher.
+     *
+     * @param bytes the buffered bytes of a connection.
+     */
+    private void recordPeak(long bytes) {
+        long peak = this.peakBufferedBytes.get();
+        while (bytes > peak
+                && !this.peakBufferedBytes.compareAndSet(peak, bytes)) {
+            peak = this.peakBufferedBytes.get();
+        }
+    }
+    
+}
@@ -0,0 +1,69 @@
+package suncertify.business.network.server;
+
+/**
+ * This interface is the management interface of the connection statistics of
+ * the <code>BookingNwServer</code>.  It is registered with the platform
+ * <code>MBeanServer</code> under the name
+ * <code>suncertify.business:type=ConnectionStatistics</code> so that the
+ * memory held for each client connection can be watched over a long session
+ * with JConsole or any other JMX client, and it is also returned by
+ * <code>BookingNwServer.getConnectionStatistics()</code> to be read directly.
+ * <br/><br/>
+ *
+ * The buffered bytes of a connection are its partly read request and the
+ * responses waiting to be written.  A connection in thread per connection
+ * mode holds its two fixed size stream buffers instead.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public interface ConnectionStatisticsMBean {
+    
+    /**
+     * Returns the number of client connections currently open.
+     *
+     * @return the number of open connections.
+     */
+    int getOpenConnections();
+    
+    /**
+     * Returns the number of client connections accepted since the server
+     * started.
+     *
+     * @return the number of connections accepted.
+     */
+    long getAcceptedConnections();
+    
+    /**
+     * Returns the bytes currently buffered over all open connections.
+     *
+     * @return the buffered bytes.
+     */
+    long getBufferedBytes();
+    
+    /**
+     * Returns the most bytes any one connection has had buffered at once.
+     *
+     * @return the peak buffered bytes of a connection.
+     */
+    long getPeakConnectionBufferedBytes();
+    
+    /**
+     * Returns the largest number of bytes one connection may have buffered
+     * in responses before the server stops reading its requests.
+     *
+     * @return the response buffer limit of a connection.
+     */
+    int getConnectionResponseLimit();
+    
+    /**
+     * Returns a readable line for each of the open connections holding the
+     * most memory, giving its address, buffered and peak bytes and the
+     * requests it has in flight.
+     *
+     * @param count the largest number of connections to report.
+     * @return one line per connection, largest first.
+     */
+    String[] getConnectionReport(int count);
+    
+}
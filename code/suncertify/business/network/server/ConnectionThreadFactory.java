@@ -0,0 +1,112 @@
+package suncertify.business.network.server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is the worker class that creates the thread each connection runs on
+ * when the <code>BookingNwServer</code> is in thread per connection mode.
+ * Where the Java platform offers virtual threads they are used, so thousands
+ * of idle connections cost a few kilobytes each rather than a platform thread
+ * each.  Otherwise a daemon platform thread with a small stack is used.
+ * <br/><br/>
+ *
+ * Virtual threads are looked up by reflection, so the server still builds and
+ * runs on a platform without them.  Note: that since this should only be used
+ * by the BookingNwServer class, the class has been set to have default
+ * access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class ConnectionThreadFactory implements ThreadFactory {
+    
+    /**
+     * The stack size of a platform connection thread in bytes.  A connection
+     * only needs enough stack to read, carry out and write one request.
+     */
+    private static final long STACK_SIZE = 256 * 1024;
+    
+    /**
+     * The name given to each connection thread, followed by its number.
+     */
+    private static final String THREAD_NAME = "Booking connection ";
+    
+    /**
+     * Holds the platforms virtual thread factory, or null if the platform
+     * does not have virtual threads.
+     */
+    private final ThreadFactory virtualThreadFactory;
+    
+    /**
+     * Holds the number of the last platform thread created.
+     */
+    private final AtomicLong threadCount = new AtomicLong();
+    
+    /**
+     * The constructor looks up the virtual thread factory of the platform.
+     */
+    ConnectionThreadFactory() {
+        this.virtualThreadFactory
+                = ConnectionThreadFactory.findVirtualThreadFactory();
+    }
+    
+    /**
+     * Returns true if connections run on virtual threads.
+     *
+     * @return true if virtual threads are used.
+     */
+    boolean isVirtual() {
+        return this.virtualThreadFactory != null;
+    }
+    
+    /**
+     * Creates the thread for a connection.
+     *
+     * @param task the task that services the connection.
+     * @return the unstarted thread.
+     */
+    @Override
+    public Thread newThread(Runnable task) {
+        if (this.virtualThreadFactory != null) {
+            return this.virtualThreadFactory.newThread(task);
+        }
+        Thread thread = new Thread(null, task, ConnectionThreadFactory
+                .THREAD_NAME + this.threadCount.incrementAndGet(),
+                ConnectionThreadFactory.STACK_SIZE);
+        thread.setDaemon(true);
+        return thread;
+    }
+    
+    /**
+     * This private method calls
+     * <code>Thread.ofVirtual().name(name, 1).factory()</code> by reflection.
+     *
+     * @return the virtual thread factory, or null if the platform does not
+     * have virtual threads or has them switched off.
+     */
+    private static ThreadFactory findVirtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = builderClass.getMethod(
+                    "name", String.class, long.class);
+            builder = name.invoke(builder, ConnectionThreadFactory.THREAD_NAME,
+                    1l);
+            return (ThreadFactory) builderClass.getMethod("factory")
+                    .invoke(builder);
+        } catch (ClassNotFoundException ex) {
+            return null;
+        } catch (NoSuchMethodException ex) {
+            return null;
+        } catch (IllegalAccessException ex) {
+            return null;
+        } catch (InvocationTargetException ex) {
+            //Virtual threads are a preview feature that has not been enabled.
+            return null;
+        }
+    }
+    
+}
@@ -1,6 +1,9 @@
 package suncertify.business.network.server;
 
+import java.io.IOException;
 import java.net.Socket;
+import suncertify.business.network.protocol.ProtocolSession;
+import suncertify.db.AsyncCallback;
 
 /**
  * This interface is to be implemented to server services so that the strategy 
@@ -20,4 +23,33 @@ public interface ServerService {
      */
     void startService(Socket socket);
     
+    /**
+     * This method will carry out a single request that has already been read 
+     * in full, so a server that reads its own sockets can hand just the 
+     * request to the service.
+     * 
+     * @param session the session of the connection the request came from.
+     * @param request the body of the request message.
+     * @return the body of the response message.
+     * @throws IOException if the request cannot be decoded or the response 
+     * cannot be encoded.
+     */
+    byte[] serviceRequest(ProtocolSession session, byte[] request) 
+            throws IOException;
+    
+    /**
+     * This method carries out a single request like the blocking 
+     * <code>serviceRequest()</code>, but does not hold up the calling thread 
+     * while the request waits, e.g. for a record lock.  The callback is given 
+     * the body of the response, or the <code>IOException</code> if the 
+     * request cannot be decoded or the response cannot be encoded, possibly 
+     * on another thread after this method has returned.
+     * 
+     * @param session the session of the connection the request came from.
+     * @param request the body of the request message.
+     * @param callback the callback given the body of the response message.
+     */
+    void serviceRequest(ProtocolSession session, byte[] request, 
+            AsyncCallback<byte[]> callback);
+    
 }
@@ -0,0 +1,34 @@
+package suncertify.db;
+
+/**
+ * This interface is the completion hook of an <code>AsyncResult</code>.  It
+ * is told the outcome of an asynchronous operation once the operation has
+ * finished, so the caller never needs to park a thread in
+ * <code>Future.get()</code> to wait for it.<br/><br/>
+ *
+ * Callbacks are run on the thread given by the source of the result, for
+ * <code>AsyncData</code> the database I/O thread, so they should be short and
+ * must not wait for other asynchronous results.
+ *
+ * @author Robert Black
+ * @version 1.0
+ * @param <V> the type of the result.
+ */
+public interface AsyncCallback<V> {
+    
+    /**
+     * Called once the operation has finished successfully.
+     *
+     * @param result the result of the operation.
+     */
+    void completed(V result);
+    
+    /**
+     * Called once the operation has failed or been cancelled.
+     *
+     * @param ex the exception the matching <code>DBAccess</code> method would
+     * have thrown, or a <code>CancellationException</code>.
+     */
+    void failed(Exception ex);
+    
+}
@@ -0,0 +1,106 @@
+package suncertify.db;
+
+/**
+ * This interface is an asynchronous companion to the <code>DBAccess</code>
+ * interface.  Each method mirrors a <code>DBAccess</code> method but returns
+ * immediately with an <code>AsyncResult</code> instead of blocking the
+ * calling thread.  The caller can either wait for the result with
+ * <code>get()</code> or add an <code>AsyncCallback</code> to be told of it,
+ * which needs no waiting thread at all.<br/><br/>
+ *
+ * Any exception the matching <code>DBAccess</code> method would throw (e.g.
+ * <code>RecordNotFoundException</code> or <code>SecurityException</code>) is
+ * delivered as the cause of the <code>ExecutionException</code> thrown by
+ * <code>get()</code>, and passed to <code>AsyncCallback.failed()</code>.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public interface AsyncDBAccess {
+    
+    /**
+     * Reads a record from the file.  The <code>AsyncResult</code> holds an
+     * array where each element is a record value.
+     *
+     * @param recNo the record number (file position).
+     * @return an <code>AsyncResult</code> holding the records field data.
+     */
+    AsyncResult<String[]> readRecord(long recNo);
+    
+    /**
+     * Modifies the fields of a record. The new value for field n appears in
+     * data[n].
+     *
+     * @param recNo the record number (file position).
+     * @param data the array containing the updated data.
+     * @param lockCookie the cookie obtained from <code>lockRecord()</code>.
+     * @return an <code>AsyncResult</code> that completes when the record is
+     * updated.
+     */
+    AsyncResult<Void> updateRecord(long recNo, String[] data, long lockCookie);
+    
+    /**
+     * Deletes a record, making the record number and associated disk storage
+     * available for reuse.
+     *
+     * @param recNo the record number (file position).
+     * @param lockCookie the cookie obtained from <code>lockRecord()</code>.
+     * @return an <code>AsyncResult</code> that completes when the record is
+     * deleted.
+     */
+    AsyncResult<Void> deleteRecord(long recNo, long lockCookie);
+    
+    /**
+     * Finds the record numbers that match the specified criteria using the
+     * same rules as <code>DBAccess.findByCriteria()</code>.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match.
+     * @return an <code>AsyncResult</code> holding the matching record numbers.
+     */
+    AsyncResult<long[]> findByCriteria(String[] criteria);
+    
+    /**
+     * Creates a new record in the database (possibly reusing a deleted entry).
+     *
+     * @param data an <code>String[]</code> containing the data for a new record.
+     * @return an <code>AsyncResult</code> holding the new record number.
+     */
+    AsyncResult<Long> createRecord(String[] data);
+    
+    /**
+     * Requests a lock on a record.  If the record is already locked the
+     * request is queued and no thread waits for it; the
+     * <code>AsyncResult</code> completes with the cookie once the lock is
+     * handed over.  Cancelling the <code>AsyncResult</code> withdraws a queued
+     * request.
+     *
+     * @param recNo the record number (file position).
+     * @return an <code>AsyncResult</code> holding the lock cookie.
+     */
+    AsyncResult<Long> lockRecord(long recNo);
+    
+    /**
+     * Requests a lock on a record like <code>lockRecord()</code>, but gives
+     * up if the record has not been handed over before the timeout.  The
+     * request is then withdrawn from the queue and the
+     * <code>AsyncResult</code> fails with a
+     * <code>LockTimeoutException</code>.
+     *
+     * @param recNo the record number (file position).
+     * @param timeout the longest time to wait in milliseconds.
+     * @return an <code>AsyncResult</code> holding the lock cookie.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    AsyncResult<Long> lockRecord(long recNo, long timeout);
+    
+    /**
+     * Releases the lock on a record.
+     *
+     * @param recNo the record number (file position).
+     * @param cookie the cookie obtained from <code>lockRecord()</code>.
+     * @return an <code>AsyncResult</code> that completes when the record is
+     * unlocked.
+     */
+    AsyncResult<Void> unlock(long recNo, long cookie);
+    
+}
@@ -0,0 +1,239 @@
+package suncertify.db;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class implements the <code>AsyncDBAccess</code> interface.  It shares
+ * the same <code>DatabaseFileAccess</code> and <code>RecordLockingManager</code>
+ * as every <code>Data</code> instance, so both interfaces can be used against
+ * the same database at the same time.<br/><br/>
+ *
+ * File operations are run on a single dedicated I/O thread, as the database
+ * file is a single <code>RandomAccessFile</code> and its access is serialized
+ * anyway.  Lock requests are queued in the <code>RecordLockingManager</code>
+ * rather than parking a thread, so any number of clients can wait for a
+ * record without tying up the caller's threads.  The callbacks of every
+ * result are run on the I/O thread too.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public class AsyncData implements AsyncDBAccess {
+    
+    /**
+     * Holds the <code>ExecutorService</code> that runs all file operations.
+     */
+    private static final ExecutorService ioExecutor
+            = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        
+        @Override
+        public Thread newThread(Runnable task) {
+            //A daemon thread so that it does not prevent the application from
+            //shutting down.
+            Thread ioThread = new Thread(task, "Database I/O");
+            ioThread.setDaemon(true);
+            return ioThread;
+        }
+        
+    });
+    
+    /**
+     * Holds the <code>Data</code> instance used to carry out the operations.
+     */
+    private final Data data;
+    
+    /**
+     * The default constructor that creates a class which implements the
+     * <code>AsyncDBAccess</code> interface, used to access the database.
+     *
+     * @throws FileNotFoundException if the database file cannot be found.
+     * @throws IOException if the database file cannot be read or written to.
+     */
+    public AsyncData() throws FileNotFoundException, IOException {
+        this.data = new Data();
+    }
+    
+    /**
+     * The constructor that carries out the operations through the given
+     * <code>Data</code> instance, so its locks are owned by the same client
+     * as the locks taken through that instance.
+     *
+     * @param data the <code>Data</code> instance.
+     */
+    public AsyncData(Data data) {
+        this.data = data;
+    }
+    
+    /**
+     * This private method runs a task on the I/O thread.
+     *
+     * @param <V> the type of the result.
+     * @param task the task.
+     * @return the result of the task.
+     */
+    private static <V> AsyncResult<V> submit(Callable<V> task) {
+        CallbackFuture<V> result
+                = new CallbackFuture<V>(task, AsyncData.ioExecutor);
+        AsyncData.ioExecutor.execute(result);
+        return result;
+    }
+    
+    /**
+     * Reads a record from the file on the I/O thread.
+     *
+     * @param recNo the record number (file position).
+     * @return an <code>AsyncResult</code> holding the records field data.
+     */
+    @Override
+    public AsyncResult<String[]> readRecord(final long recNo) {
+        return AsyncData.submit(new Callable<String[]>() {
+            
+            @Override
+            public String[] call() throws RecordNotFoundException {
+                return AsyncData.this.data.readRecord(recNo);
+            }
+            
+        });
+    }
+    
+    /**
+     * Modifies the fields of a record on the I/O thread.
+     *
+     * @param recNo the record number (file position).
+     * @param data the array containing the updated data.
+     * @param lockCookie the cookie obtained from <code>lockRecord()</code>.
+     * @return an <code>AsyncResult</code> that completes when the record is updated.
+     */
+    @Override
+    public AsyncResult<Void> updateRecord(final long recNo, final String[] data,
+            final long lockCookie) {
+        return AsyncData.submit(new Callable<Void>() {
+            
+            @Override
+            public Void call()
+                    throws RecordNotFoundException, SecurityException {
+                AsyncData.this.data.updateRecord(recNo, data, lockCookie);
+                return null;
+            }
+            
+        });
+    }
+    
+    /**
+     * Deletes a record on the I/O thread.
+     *
+     * @param recNo the record number (file position).
+     * @param lockCookie the cookie obtained from <code>lockRecord()</code>.
+     * @return an <code>AsyncResult</code> that completes when the record is deleted.
+     */
+    @Override
+    public AsyncResult<Void> deleteRecord(final long recNo, final long lockCookie) {
+        return AsyncData.submit(new Callable<Void>() {
+            
+            @Override
+            public Void call()
+                    throws RecordNotFoundException, SecurityException {
+                AsyncData.this.data.deleteRecord(recNo, lockCookie);
+                return null;
+            }
+            
+        });
+    }
+    
+    /**
+     * Finds the record numbers that match the specified criteria on the I/O
+     * thread.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match.
+     * @return an <code>AsyncResult</code> holding the matching record numbers.
+     */
+    @Override
+    public AsyncResult<long[]> findByCriteria(final String[] criteria) {
+        return AsyncData.submit(new Callable<long[]>() {
+            
+            @Override
+            public long[] call() {
+                return AsyncData.this.data.findByCriteria(criteria);
+            }
+            
+        });
+    }
+    
+    /**
+     * Creates a new record in the database on the I/O thread.
+     *
+     * @param data an <code>String[]</code> containing the data for a new record.
+     * @return an <code>AsyncResult</code> holding the new record number.
+     */
+    @Override
+    public AsyncResult<Long> createRecord(final String[] data) {
+        return AsyncData.submit(new Callable<Long>() {
+            
+            @Override
+            public Long call() throws DuplicateKeyException {
+                return AsyncData.this.data.createRecord(data);
+            }
+            
+        });
+    }
+    
+    /**
+     * Requests a lock on a record.  The request is queued in the
+     * <code>RecordLockingManager</code> if the record is already locked, so
+     * no thread waits for it.
+     *
+     * @param recNo the record number (file position).
+     * @return an <code>AsyncResult</code> holding the lock cookie.
+     */
+    @Override
+    public AsyncResult<Long> lockRecord(long recNo) {
+        return Data.getRecordLockingManager().lockRecordAsync(recNo,
+                Data.getFileAccess(), this.data, AsyncData.ioExecutor);
+    }
+    
+    /**
+     * Requests a lock on a record, giving up if the record has not been
+     * handed over before the timeout.  No thread waits while the request is
+     * queued.
+     *
+     * @param recNo the record number (file position).
+     * @param timeout the longest time to wait in milliseconds.
+     * @return an <code>AsyncResult</code> holding the lock cookie.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    @Override
+    public AsyncResult<Long> lockRecord(long recNo, long timeout) {
+        return Data.getRecordLockingManager().lockRecordAsync(recNo, timeout,
+                Data.getFileAccess(), this.data, AsyncData.ioExecutor);
+    }
+    
+    /**
+     * Releases the lock on a record.  This does not touch the file so it is
+     * carried out straight away on the calling thread.
+     *
+     * @param recNo the record number (file position).
+     * @param cookie the cookie obtained from <code>lockRecord()</code>.
+     * @return a completed <code>AsyncResult</code>.
+     */
+    @Override
+    public AsyncResult<Void> unlock(final long recNo, final long cookie) {
+        CallbackFuture<Void> task = new CallbackFuture<Void>(
+                new Callable<Void>() {
+            
+            @Override
+            public Void call() throws SecurityException {
+                AsyncData.this.data.unlock(recNo, cookie);
+                return null;
+            }
+            
+        }, AsyncData.ioExecutor);
+        task.run();
+        return task;
+    }
+    
+}
@@ -0,0 +1,26 @@
+package suncertify.db;
+
+import java.util.concurrent.Future;
+
+/**
+ * This interface is the <code>Future</code> returned by the
+ * <code>AsyncDBAccess</code> methods.  As well as being waited for with
+ * <code>get()</code>, it can be given callbacks that are told its outcome
+ * once it completes, so the caller does not need a thread to wait with.
+ *
+ * @author Robert Black
+ * @version 1.0
+ * @param <V> the type of the result.
+ */
+public interface AsyncResult<V> extends Future<V> {
+    
+    /**
+     * Adds a callback to be told the outcome of the operation.  If the
+     * operation has already finished the callback is told straight away,
+     * otherwise it is told when the operation finishes.
+     *
+     * @param callback the callback.
+     */
+    void addCallback(AsyncCallback<? super V> callback);
+    
+}
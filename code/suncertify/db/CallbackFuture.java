@@ -0,0 +1,118 @@
+package suncertify.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * This is the worker class that implements <code>AsyncResult</code> on top of
+ * a <code>FutureTask</code>.  When the task completes, fails or is cancelled
+ * each of its callbacks is handed to the callback executor, so a callback
+ * never runs on a thread that completed the task while holding a lock, e.g.
+ * a thread handing over a record lock.<br/><br/>
+ *
+ * Note: that since this should only be used by the classes of this package,
+ * the class has been set to have default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ * @param <V> the type of the result.
+ */
+class CallbackFuture<V> extends FutureTask<V> implements AsyncResult<V> {
+    
+    /**
+     * Runs the callbacks.
+     */
+    private final Executor callbackExecutor;
+    
+    /**
+     * Holds the callbacks waiting for the task to complete.
+     */
+    private final List<AsyncCallback<? super V>> callbacks
+            = new ArrayList<AsyncCallback<? super V>>();
+    
+    /**
+     * True once the task has completed, guarded by this object.
+     */
+    private boolean completed = false;
+    
+    /**
+     * Creates the future of a task.
+     *
+     * @param task the task.
+     * @param callbackExecutor the executor that runs the callbacks.
+     */
+    CallbackFuture(Callable<V> task, Executor callbackExecutor) {
+        super(task);
+        this.callbackExecutor = callbackExecutor;
+    }
+    
+    @Override
+    public void addCallback(AsyncCallback<? super V> callback) {
+        synchronized (this) {
+            if (!this.completed) {
+                this.callbacks.add(callback);
+                return;
+            }
+        }
+        this.notifyCallback(callback);
+    }
+    
+    /**
+     * Hands every waiting callback to the callback executor once the task
+     * has completed.
+     */
+    @Override
+    protected void done() {
+        List<AsyncCallback<? super V>> waiting;
+        synchronized (this) {
+            this.completed = true;
+            waiting = new ArrayList<AsyncCallback<? super V>>(this.callbacks);
+            this.callbacks.clear();
+        }
+        for (AsyncCallback<? super V> callback : waiting) {
+            this.notifyCallback(callback);
+        }
+    }
+    
+    /**
+     * This private method tells a callback the outcome of the completed task
+     * on the callback executor.
+     *
+     * @param callback the callback.
+     */
+    private void notifyCallback(final AsyncCallback<? super V> callback) {
+        this.callbackExecutor.execute(new Runnable() {
+            
+            @Override
+            public void run() {
+                V result;
+                try {
+                    result = CallbackFuture.this.get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) {
+                        callback.failed((Exception) ex.getCause());
+                    } else {
+                        callback.failed(ex);
+                    }
+                    return;
+                } catch (CancellationException ex) {
+                    callback.failed(ex);
+                    return;
+                } catch (InterruptedException ex) {
+                    //The task has completed so get() does not wait.
+                    Thread.currentThread().interrupt();
+                    callback.failed(ex);
+                    return;
+                }
+                callback.completed(result);
+            }
+            
+        });
+    }
+    
+}
@@ -1,6 +1,8 @@
 package suncertify.db;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 /**
  * This class is used to represent a database contractor record.  I can hold all
@@ -69,6 +71,42 @@ public class Contractor implements Serializable {
             + RATE_FIELD_SIZE 
             + OWNER_FIELD_SIZE;
     
+    /**
+     * The position of the Name field in a record.
+     */
+    public static final int NAME_FIELD_INDEX = 0;
+    
+    /**
+     * The position of the Location field in a record.
+     */
+    public static final int LOCATION_FIELD_INDEX = 1;
+    
+    /**
+     * The position of the Specialities field in a record.
+     */
+    public static final int SPECIALTIES_FIELD_INDEX = 2;
+    
+    /**
+     * The position of the Size field in a record.
+     */
+    public static final int SIZE_FIELD_INDEX = 3;
+    
+    /**
+     * The position of the Rate field in a record.
+     */
+    public static final int RATE_FIELD_INDEX = 4;
+    
+    /**
+     * The position of the Owner field in a record.
+     */
+    public static final int OWNER_FIELD_INDEX = 5;
+    
+    /**
+     * The value returned by <code>parseSize()</code> and 
+     * <code>parseRateInCents()</code> when a field holds no number.
+     */
+    public static final long NO_VALUE = Long.MIN_VALUE;
+    
     /**
      * Stores the flag field of the contractor record.
      */
@@ -295,6 +333,58 @@ public class Contractor implements Serializable {
         this.owner = owner;
     }
     
+    /**
+     * Converts the text of a Size field (e.g. "6") into the number of staff.
+     * 
+     * @param size the Size field.
+     * @return the number of staff or <code>NO_VALUE</code> if the field is 
+     * empty or not a whole number.
+     */
+    public static long parseSize(String size) {
+        if (size == null || size.trim().equals("")) {
+            return Contractor.NO_VALUE;
+        }
+        try {
+            return Integer.parseInt(size.trim());
+        } catch (NumberFormatException ex) {
+            return Contractor.NO_VALUE;
+        }
+    }
+    
+    /**
+     * Converts the text of a Rate field (e.g. "$85.00") into a whole number of 
+     * cents, ignoring the leading currency symbol.
+     * 
+     * @param rate the Rate field.
+     * @return the rate in cents or <code>NO_VALUE</code> if the field is empty 
+     * or not a number.
+     */
+    public static long parseRateInCents(String rate) {
+        if (rate == null) {
+            return Contractor.NO_VALUE;
+        }
+        
+        //Skips the currency symbol and any other leading characters that are 
+        //not part of the number.
+        String amount = rate.trim();
+        int start = 0;
+        while (start < amount.length() 
+                && !Character.isDigit(amount.charAt(start)) 
+                && amount.charAt(start) != '.') {
+            start++;
+        }
+        amount = amount.substring(start);
+        if (amount.equals("")) {
+            return Contractor.NO_VALUE;
+        }
+        try {
+            return new BigDecimal(amount).movePointRight(2)
+                    .setScale(0, RoundingMode.HALF_UP).longValue();
+        } catch (NumberFormatException ex) {
+            return Contractor.NO_VALUE;
+        }
+    }
+    
     /**
      * This method returns a <code>String[]</code> which contains the fields of 
      * the contractor record that this object represents.
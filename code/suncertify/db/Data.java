@@ -4,10 +4,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Properties;
 
 /**
- * This class implements the required DBAccess interface and is used by the 
+ * This class implements the required DBAccess interface, through the 
+ * ExtendedDBAccess interface, and is used by the 
  * BookingBusinessLodgicImp class and possibly other applications to preform 
  * their database operations.<br/>
  * 
@@ -18,7 +20,7 @@ import java.util.Properties;
  * @author Robert Black
  * @version 1.0
  */
-public class Data implements DBAccess {
+public class Data implements ExtendedDBAccess {
     
     /**
      * Holds the <code>DatabaseFileAccess</code> worker class.
@@ -30,6 +32,12 @@ public class Data implements DBAccess {
      */
     private static RecordLockingManager recordLockingManager;
     
+    /**
+     * The lease time of a record lock in milliseconds, used when the
+     * properties file does not set <code>dataFile.lockLeaseTime</code>.
+     */
+    public static final long DEFAULT_LOCK_LEASE_TIME = 60000l;
+    
     /**
      * Holds the path to the database file.
      */
@@ -42,7 +50,8 @@ public class Data implements DBAccess {
      * <code>DatabaseFileAccess</code> and <code>RecordLockingManager</code>.
      * 
      * @throws FileNotFoundException if the database file cannot be found.
-     * @throws IOException if the database file cannot be read or written to.
+     * @throws IOException if the database file cannot be read or written to, 
+     * or the lock lease time in the properties file is not valid.
      */
     public Data() throws FileNotFoundException, IOException {
         //Ckecks to see if an intance of fileAccess exists.
@@ -59,13 +68,28 @@ public class Data implements DBAccess {
             propertiesIn.close();
 
             this.filePath = applicationProperties.getProperty("dataFile.file");
+            
+            //The lock lease time is optional.
+            String leaseTime = applicationProperties.getProperty(
+                    "dataFile.lockLeaseTime");
+            long lockLeaseTime = Data.DEFAULT_LOCK_LEASE_TIME;
+            if (leaseTime != null) {
+                try {
+                    lockLeaseTime = Long.parseLong(leaseTime.trim());
+                } catch (NumberFormatException ex) {
+                    throw new IOException("The lock lease time in the "
+                            + "properties file is not a number: " + leaseTime);
+                }
+                if (lockLeaseTime <= 0l) {
+                    throw new IOException("The lock lease time in the "
+                            + "properties file must be positive: " 
+                            + leaseTime);
+                }
+            }
 
             Data.fileAccess = new DatabaseFileAccess(filePath);
-        }
-        
-        //Ckecks to see if an intance of fileAccess exists.
-        if (Data.recordLockingManager == null) {
-            Data.recordLockingManager = new RecordLockingManager();
+            Data.recordLockingManager
+                    = new RecordLockingManager(lockLeaseTime);
         }
     }
 
@@ -144,6 +168,158 @@ public class Data implements DBAccess {
         return Data.fileAccess.findByCriteria(criteria);
     }
 
+    /**
+     * Reads several records in one consistent pass.  Returns an array holding 
+     * the fields of each record, or null for a record that is deleted or 
+     * doesn't exist.
+     * 
+     * @param recNos the record numbers (file positions).
+     * @return a <code>String[][]</code> with the field data of each record in 
+     * the order of the record numbers.
+     */
+    @Override
+    public String[][] readRecords(long[] recNos) {
+        return Data.fileAccess.readRecords(recNos);
+    }
+
+    /**
+     * Finds the records matching the criteria, like 
+     * <code>findByCriteria()</code>, and reads them in the same pass.
+     * 
+     * @param criteria an <code>String[]</code> containing the data to match.
+     * @return the field data of the matching records keyed by record number, 
+     * in ascending order starting with the field titles record 0.
+     */
+    @Override
+    public Map<Long, String[]> readByCriteria(String[] criteria) {
+        return Data.fileAccess.readByCriteria(criteria);
+    }
+
+    /**
+     * Returns the numbers of the valid records whose numeric fields (Size and 
+     * Rate in cents) lie within the given bounds and whose other fields match 
+     * the criteria, in ascending order of rate, cheapest first.
+     * 
+     * @param criteria an <code>String[]</code> containing the data to match, 
+     * or null.
+     * @param minimums the lowest value of each field.
+     * @param maximums the highest value of each field.
+     * @return an <code>long[]</code> with matching record numbers 
+     * (file positions).
+     */
+    @Override
+    public long[] findByRange(String[] criteria, long[] minimums, 
+            long[] maximums) {
+        return Data.fileAccess.findByRange(criteria, minimums, maximums);
+    }
+
+    /**
+     * Returns the numbers of the valid records offering the given types of 
+     * work, whose other fields match the criteria.
+     * 
+     * @param criteria an <code>String[]</code> containing the data to match, 
+     * or null.
+     * @param specialties the types of work to look for.
+     * @param matchAll true if a record must offer every type of work, false if 
+     * offering any one of them is enough.
+     * @return an <code>long[]</code> with matching record numbers 
+     * (file positions).
+     */
+    @Override
+    public long[] findBySpecialties(String[] criteria, String[] specialties, 
+            boolean matchAll) {
+        return Data.fileAccess.findBySpecialties(
+                criteria, specialties, matchAll);
+    }
+
+    /**
+     * Returns the numbers of the valid records booked by a customer.
+     * 
+     * @param owner the 8 digit customer id.
+     * @return an <code>long[]</code> with matching record numbers 
+     * (file positions).
+     */
+    @Override
+    public long[] findByOwner(String owner) {
+        return Data.fileAccess.findByOwner(owner);
+    }
+
+    /**
+     * Returns the numbers of the valid records that are not booked and whose 
+     * other fields match the criteria.
+     * 
+     * @param criteria an <code>String[]</code> containing the data to match, 
+     * or null.
+     * @return an <code>long[]</code> with matching record numbers 
+     * (file positions).
+     */
+    @Override
+    public long[] findAvailable(String[] criteria) {
+        return Data.fileAccess.findAvailable(criteria);
+    }
+
+    /**
+     * Checks whether a record is booked without reading the record.
+     * 
+     * @param recNo the record number (file position).
+     * @return true if the record is booked, false if it is available.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public boolean isBooked(long recNo) throws RecordNotFoundException {
+        return Data.fileAccess.isBooked(recNo);
+    }
+
+    /**
+     * Returns the numbers of at most <code>limit</code> valid records whose 
+     * fields match the criteria, in ascending order of a sort field.
+     * 
+     * @param criteria an <code>String[]</code> containing the data to match, 
+     * or null.
+     * @param sortField the Name, Size or Rate field position.
+     * @param limit the largest number of records to return.
+     * @return an <code>long[]</code> with matching record numbers 
+     * (file positions).
+     */
+    @Override
+    public long[] findTop(String[] criteria, int sortField, int limit) {
+        return Data.fileAccess.findTop(criteria, false, sortField, limit);
+    }
+
+    /**
+     * Returns the numbers of at most <code>limit</code> valid records whose 
+     * fields begin with, or exactly match, the criteria, in ascending order of 
+     * a sort field.
+     * 
+     * @param criteria an <code>String[]</code> containing the data to match, 
+     * or null.
+     * @param exactMatch true if the fields must equal the criteria.
+     * @param sortField the Name, Size or Rate field position.
+     * @param limit the largest number of records to return.
+     * @return an <code>long[]</code> with matching record numbers 
+     * (file positions).
+     */
+    @Override
+    public long[] findTop(String[] criteria, boolean exactMatch, 
+            int sortField, int limit) {
+        return Data.fileAccess.findTop(criteria, exactMatch, sortField, limit);
+    }
+
+    /**
+     * Returns the numbers of the valid records whose fields equal the 
+     * criteria, ignoring case and surrounding white space.
+     * 
+     * @param criteria an <code>String[]</code> containing the data to match, 
+     * or null.
+     * @return an <code>long[]</code> with matching record numbers 
+     * (file positions) in ascending order.
+     */
+    @Override
+    public long[] findExact(String[] criteria) {
+        return Data.fileAccess.findExact(criteria);
+    }
+
     /**
      * Creates a new record in the database (reusing a deleted entry). 
      * Inserts the given data, and returns the record number of the new record.
@@ -171,7 +347,49 @@ public class Data implements DBAccess {
      */
     @Override
     public long lockRecord(long recNo) throws RecordNotFoundException {
-        return Data.recordLockingManager.lockRecord(recNo, Data.fileAccess);
+        return Data.recordLockingManager.lockRecord(
+                recNo, Data.fileAccess, this);
+    }
+
+    /**
+     * Locks a record so that it can only be updated or deleted by this client, 
+     * waiting no longer than the timeout for a different client to release 
+     * it.
+     * 
+     * @param recNo the record number (file position).
+     * @param timeout the longest time to wait in milliseconds.
+     * @return is a cookie that must be used when the record is unlocked, 
+     * updated, or deleted.
+     * @throws RecordNotFoundException if the record is deleted or doesn't exist.
+     * @throws LockTimeoutException if the record is still locked by another 
+     * client when the timeout runs out.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    @Override
+    public long tryLockRecord(long recNo, long timeout) 
+            throws RecordNotFoundException, LockTimeoutException {
+        return Data.recordLockingManager.tryLockRecord(
+                recNo, timeout, Data.fileAccess, this);
+    }
+
+    /**
+     * Returns the number of lock requests that have timed out.
+     * 
+     * @return the number of lock timeouts.
+     */
+    @Override
+    public long getLockTimeoutCount() {
+        return Data.recordLockingManager.getLockTimeoutCount();
+    }
+
+    /**
+     * Returns the lock statistics shared by every client of the database.
+     * 
+     * @return the lock statistics.
+     */
+    @Override
+    public LockStatisticsMBean getLockStatistics() {
+        return Data.recordLockingManager.getLockStatistics();
     }
 
     /**
@@ -188,5 +406,127 @@ public class Data implements DBAccess {
     public void unlock(long recNo, long cookie) throws SecurityException {
         Data.recordLockingManager.unlock(recNo, cookie);
     }
+
+    /**
+     * Sets the Owner field of a record only if it currently holds the expected 
+     * owner, checking and updating in one step without a lock cookie.
+     * 
+     * @param recNo the record number (file position).
+     * @param expectedOwner the owner the record must hold, "" if unbooked.
+     * @param newOwner the owner to be set.
+     * @return true if the owner was set, false if the record held a different 
+     * owner.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     * @throws SecurityException if the record is locked by a client.
+     * @throws IllegalArgumentException if the new owner is null or longer 
+     * than the Owner field.
+     */
+    @Override
+    public boolean compareAndSetOwner(long recNo, String expectedOwner, 
+            String newOwner) throws RecordNotFoundException, SecurityException {
+        return Data.recordLockingManager.compareAndSetOwner(
+                recNo, expectedOwner, newOwner, Data.fileAccess);
+    }
+
+    /**
+     * Locks a group of records under one composite cookie, in ascending record 
+     * number order so that overlapping groups cannot deadlock.
+     * 
+     * @param recNos the record numbers (file positions).
+     * @return a composite cookie that must be used when the records are 
+     * unlocked, updated, or deleted.
+     * @throws RecordNotFoundException if any record is deleted or doesn't 
+     * exist.
+     * @throws IllegalArgumentException if this client already holds any of 
+     * the records.
+     */
+    @Override
+    public long lockRecords(long[] recNos) throws RecordNotFoundException {
+        return Data.recordLockingManager.lockRecords(
+                recNos, Data.fileAccess, this);
+    }
+
+    /**
+     * Locks a group of records like <code>lockRecords()</code>, but gives up 
+     * and locks none of them if the whole group is not locked before the 
+     * timeout.
+     * 
+     * @param recNos the record numbers (file positions).
+     * @param timeout the longest time to wait for the whole group in 
+     * milliseconds.
+     * @return a composite cookie that must be used when the records are 
+     * unlocked, updated, or deleted.
+     * @throws RecordNotFoundException if any record is deleted or doesn't 
+     * exist.
+     * @throws LockTimeoutException if any record is still locked by another 
+     * client when the timeout runs out.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    @Override
+    public long tryLockRecords(long[] recNos, long timeout) 
+            throws RecordNotFoundException, LockTimeoutException {
+        return Data.recordLockingManager.tryLockRecords(
+                recNos, timeout, Data.fileAccess, this);
+    }
+
+    /**
+     * Releases the locks on a group of records.  Cookie must be the composite 
+     * cookie returned when the records were locked.
+     * 
+     * @param recNos the record numbers (file positions).
+     * @param cookie the composite cookie obtained from 
+     * <code>lockRecords()</code>.
+     * @throws SecurityException if any record is locked with a cookie other 
+     * than cookie, in which case none are unlocked.
+     */
+    @Override
+    public void unlockRecords(long[] recNos, long cookie) 
+            throws SecurityException {
+        Data.recordLockingManager.unlockRecords(recNos, cookie);
+    }
+
+    /**
+     * Renews the lease on a locked record so that it is not released when the
+     * lease time runs out.
+     * 
+     * @param recNo the record number (file position).
+     * @param cookie the cookie obtained from locking the record.
+     * @throws SecurityException if the record is not locked with the cookie, 
+     * e.g. because its lease has already run out.
+     */
+    @Override
+    public void renewLock(long recNo, long cookie) throws SecurityException {
+        Data.recordLockingManager.renewLock(recNo, cookie);
+    }
+
+    /**
+     * Releases every lock held through this instance.  The database file 
+     * itself stays open for the other instances.
+     */
+    @Override
+    public void close() {
+        Data.recordLockingManager.releaseLocks(this);
+    }
+    
+    /**
+     * Returns the shared <code>DatabaseFileAccess</code> worker class so that 
+     * other data access classes in this package can use it.
+     * 
+     * @return the shared <code>DatabaseFileAccess</code>.
+     */
+    static DatabaseFileAccess getFileAccess() {
+        return Data.fileAccess;
+    }
+    
+    /**
+     * Returns the shared <code>RecordLockingManager</code> worker class so 
+     * that other data access classes in this package can use it.
+     * 
+     * @return the shared <code>RecordLockingManager</code>.
+     */
+    static RecordLockingManager getRecordLockingManager() {
+        return Data.recordLockingManager;
+    }
     
 }
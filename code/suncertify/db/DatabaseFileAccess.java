@@ -5,16 +5,19 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import suncertify.presentation.ApplicationRunner;
 
 /**
@@ -66,12 +69,6 @@ class DatabaseFileAccess {
      */
     private static final long START_SCHEMA_FILE_POS = 10l;
     
-    /**
-     * The length in bytes of the deleted / valid flag at the beginning of each
-     * record.
-     */
-    private static final long LENGTH_OF_FLAG_BYTES = 2;
-    
     /**
      * The flag that implies deleted.
      */
@@ -116,6 +113,57 @@ class DatabaseFileAccess {
     private static final Map<Long, Contractor> recordCache 
             = new HashMap<Long, Contractor>();
     
+    /**
+     * The Size field of every valid record as a number of staff, with a sorted 
+     * index for range queries.
+     */
+    private static final SortedColumnIndex sizeIndex = new SortedColumnIndex();
+    
+    /**
+     * The Rate field of every valid record in cents, with a sorted index for 
+     * range queries.
+     */
+    private static final SortedColumnIndex rateIndex = new SortedColumnIndex();
+    
+    /**
+     * An inverted index from each type of work in the Specialties field to 
+     * the valid records offering it.
+     */
+    private static final SpecialtyIndex specialtyIndex = new SpecialtyIndex();
+    
+    /**
+     * The dictionary encoded Location field of every valid record.  The 
+     * cached records share its canonical location <code>Strings</code>.
+     */
+    private static final FieldDictionary locationDictionary 
+            = new FieldDictionary();
+    
+    /**
+     * The dictionary encoded Specialties field of every valid record.  The 
+     * cached records share its canonical specialties <code>Strings</code>.
+     */
+    private static final FieldDictionary specialtiesDictionary 
+            = new FieldDictionary();
+    
+    /**
+     * A secondary index from each customer id in the Owner field to the valid 
+     * records that customer has booked.
+     */
+    private static final Map<String, Set<Long>> ownerIndex 
+            = new HashMap<String, Set<Long>>();
+    
+    /**
+     * A bitmap of the valid records that are not booked, i.e. whose Owner 
+     * field is empty, indexed by record number.
+     */
+    private static final BitSet availableRecords = new BitSet();
+    
+    /**
+     * The results of recent <code>findByCriteria()</code> searches, patched 
+     * as records change.
+     */
+    private static final QueryResultCache queryCache = new QueryResultCache();
+    
     /**
      * A <code>ReentrantReadWrite</code> Ensures that many users can read the 
      * cached <code>Hash Map</code> collection as long as nobody is updating it 
@@ -124,28 +172,28 @@ class DatabaseFileAccess {
     private static ReadWriteLock databaseLock = new ReentrantReadWriteLock();
     
     /**
-     * A <code>String</code> which will be the same size as a Contractor record
-     * and filled with nulls. Having this pre-built will save time and improve 
-     * efficiency when writing to disk.
+     * The <code>RecordCodec</code> built from the schema description, used to 
+     * convert records to and from their on disk form.
      */
-    private static String emptyContractorRecord;;
+    private static RecordCodec recordCodec;
     
     /**
-     * The location where the database file is stored.
+     * A <code>byte[]</code> the size of a record slot that is reused for every 
+     * record written to disk.  Only used while holding the write lock.
      */
-    private static String databasePath;
+    private static byte[] writeBuffer;
     
     /**
-     * Initializes the <code>emptyContractorRecord String</code>.
+     * The location where the database file is stored.
      */
-    static {
-        DatabaseFileAccess.emptyContractorRecord 
-                = new String(new byte[Contractor.RECORD_LENGTH]);
-    }
+    private static String databasePath;
 
     /**
      * Default constructor that accepts the database path as a parameter.<br/>
-     * All instances of this class share the same data file.
+     * All instances of this class share the same data file.  The records are 
+     * read into the cache once when the file is opened, after that every 
+     * change is written to both the file and the cache, as this application 
+     * is the only program accessing the file.
      * 
      * @param dbFilePath the path to the database file directory
      * @throws FileNotFoundException if the database file cannot be found.
@@ -160,21 +208,23 @@ class DatabaseFileAccess {
         if (DatabaseFileAccess.dataFile == null) {
             DatabaseFileAccess.dataFile = new RandomAccessFile(dbFilePath, "rw");
             DatabaseFileAccess.databasePath = dbFilePath;
+            this.loadCache();
         }
     }
     
     /**
-     * This is a private method used to update the record cache that in turn 
-     * will be used and manipulated before updating the file on disk .
+     * This is a private method used to load the record cache and the column 
+     * indexes that in turn will be used and manipulated before updating the 
+     * file on disk.
      * 
      * @throws IOException throws an exception if any problems occur with disk 
      * access.
      */
-    private void updateCache() throws IOException {
+    private void loadCache() throws IOException {
         try {
-            //Read only lock prevents any writing to the cache or file while the 
-            //file is being read, but does allow concurrent reading.
-            DatabaseFileAccess.databaseLock.readLock().lock();
+            //Write lock prevents any reading of the cache while it is being 
+            //loaded.
+            DatabaseFileAccess.databaseLock.writeLock().lock();
             
             //initailises the record file position to be included in the cache 
             //recordCache.
@@ -201,36 +251,118 @@ class DatabaseFileAccess {
                 //This for loop reads all the records in the database file and 
                 //populates the recordCache including records marked deleted
                 //which will be used later so they can be replaced with newly
-                //created records saving disk space.
+                //created records saving disk space.  Each record slot is read 
+                //into the same buffer with a single read and decoded straight 
+                //out of it.
+                int slotLength = DatabaseFileAccess.recordCodec.getSlotLength();
+                byte[] slot = new byte[slotLength];
                 DatabaseFileAccess.dataFile.seek(startOfRecordZero);
                 for (long i = DatabaseFileAccess.startOfRecordZero; 
-                        i < DatabaseFileAccess.dataFile.length(); 
-                        i += (DatabaseFileAccess.LENGTH_OF_FLAG_BYTES 
-                                + Contractor.RECORD_LENGTH)) {
+                        i + slotLength <= DatabaseFileAccess.dataFile.length(); 
+                        i += slotLength) {
+                    DatabaseFileAccess.dataFile.readFully(slot);
 
-                    //Reads the record deleted / vailid flag.
-                    int flag = DatabaseFileAccess.dataFile.readUnsignedShort();
-                    
-                    //This for loop reads each record field and stores it into a
-                    //String array to be used to create a Contractor object.
-                    String[] fieldStrigs = 
-                            new String[DatabaseFileAccess.numberOfFields];
-                    for (int j = 0; j < DatabaseFileAccess.numberOfFields; j++) {
-                        byte[] field = new byte[DatabaseFileAccess.fieldLengths[j]];
-                        DatabaseFileAccess.dataFile.read(field);
-                        fieldStrigs[j] = new String(field, CHAR_SET).trim();
-                    }
-
-                    //The Contractor object is created and put into the record 
+                    //The Contractor object is created from the record 
+                    //deleted / vailid flag and fields and put into the record 
                     //cache.
-                    Contractor contractor = new Contractor(flag, fieldStrigs);
-                    DatabaseFileAccess.recordCache.put(recordNumber, contractor);
+                    Contractor contractor = new Contractor(
+                            DatabaseFileAccess.recordCodec.decodeFlag(slot), 
+                            DatabaseFileAccess.recordCodec.decode(slot));
+                    this.cacheRecord(recordNumber, contractor);
                     recordNumber++;
                 }
             }
         } finally {
             //Releases the lock as the operation has finished.
-            DatabaseFileAccess.databaseLock.readLock().unlock();
+            DatabaseFileAccess.databaseLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * This private method puts a record into the cache and brings the column 
+     * indexes and dictionaries up to date with it.  It must be called while 
+     * holding the write lock.
+     * 
+     * @param recNo the record number (file position).
+     * @param contractor the record as it now is on disk.
+     */
+    private void cacheRecord(long recNo, Contractor contractor) {
+        Contractor oldContractor 
+                = DatabaseFileAccess.recordCache.put(recNo, contractor);
+        DatabaseFileAccess.queryCache.recordChanged(recNo, contractor);
+        
+        //The types of work and customer the record was indexed under are 
+        //removed first.
+        if (oldContractor != null 
+                && oldContractor.getFlag() != DatabaseFileAccess.DELETED_FLAG) {
+            DatabaseFileAccess.specialtyIndex.remove(recNo, 
+                    oldContractor.getSpecialties());
+            this.unindexOwner(recNo, oldContractor.getOwner());
+        }
+        
+        //Deleted records are removed from the indexes, valid records have 
+        //their numeric fields decoded once and indexed along with their types 
+        //of work.  The repetitive fields of valid records are dictionary 
+        //encoded and the record is given the shared canonical Strings in 
+        //place of its own copies.
+        if (contractor.getFlag() == DatabaseFileAccess.DELETED_FLAG) {
+            DatabaseFileAccess.availableRecords.clear((int) recNo);
+            DatabaseFileAccess.sizeIndex.remove(recNo);
+            DatabaseFileAccess.rateIndex.remove(recNo);
+            DatabaseFileAccess.locationDictionary.remove(recNo);
+            DatabaseFileAccess.specialtiesDictionary.remove(recNo);
+        } else {
+            contractor.setLocation(DatabaseFileAccess.locationDictionary
+                    .put(recNo, contractor.getLocation()));
+            contractor.setSpecialties(DatabaseFileAccess.specialtiesDictionary
+                    .put(recNo, contractor.getSpecialties()));
+            DatabaseFileAccess.sizeIndex.put(recNo, 
+                    Contractor.parseSize(contractor.getSize()));
+            DatabaseFileAccess.rateIndex.put(recNo, 
+                    Contractor.parseRateInCents(contractor.getRate()));
+            DatabaseFileAccess.specialtyIndex.add(recNo, 
+                    contractor.getSpecialties());
+            this.indexOwner(recNo, contractor.getOwner());
+            DatabaseFileAccess.availableRecords.set((int) recNo, 
+                    contractor.getOwner().trim().equals(""));
+        }
+    }
+    
+    /**
+     * This private method adds a booked record to the owner index.  Records 
+     * that are not booked have an empty Owner field and are not indexed.
+     * 
+     * @param recNo the record number (file position).
+     * @param owner the Owner field.
+     */
+    private void indexOwner(long recNo, String owner) {
+        if (owner == null || owner.trim().equals("")) {
+            return;
+        }
+        Set<Long> recNos = DatabaseFileAccess.ownerIndex.get(owner.trim());
+        if (recNos == null) {
+            recNos = new TreeSet<Long>();
+            DatabaseFileAccess.ownerIndex.put(owner.trim(), recNos);
+        }
+        recNos.add(recNo);
+    }
+    
+    /**
+     * This private method removes a record from the owner index.
+     * 
+     * @param recNo the record number (file position).
+     * @param owner the Owner field the record was indexed with.
+     */
+    private void unindexOwner(long recNo, String owner) {
+        if (owner == null || owner.trim().equals("")) {
+            return;
+        }
+        Set<Long> recNos = DatabaseFileAccess.ownerIndex.get(owner.trim());
+        if (recNos != null) {
+            recNos.remove(recNo);
+            if (recNos.isEmpty()) {
+                DatabaseFileAccess.ownerIndex.remove(owner.trim());
+            }
         }
     }
     
@@ -301,6 +433,23 @@ class DatabaseFileAccess {
             DatabaseFileAccess.fieldLengths[i] 
                     = DatabaseFileAccess.dataFile.readShort();
         }
+        
+        //Builds the codec for the schema and the buffer it writes into.
+        DatabaseFileAccess.recordCodec 
+                = new RecordCodec(DatabaseFileAccess.fieldLengths);
+        DatabaseFileAccess.writeBuffer 
+                = new byte[DatabaseFileAccess.recordCodec.getSlotLength()];
+    }
+    
+    /**
+     * This private method returns the file position of a record slot.
+     * 
+     * @param recNo the record number (file position).
+     * @return the file position in bytes of the start of the record slot.
+     */
+    private long slotPosition(long recNo) {
+        return DatabaseFileAccess.startOfRecordZero 
+                + (DatabaseFileAccess.recordCodec.getSlotLength() * (recNo - 1));
     }
     
     /**
@@ -321,7 +470,7 @@ class DatabaseFileAccess {
             DatabaseFileAccess.databaseLock.readLock().lock();
             
             //This if statment checks to see if the record is still valid or 
-            //deleted or exists at all and updates the cache. If not it throws a 
+            //deleted or exists at all. If not it throws a 
             //RecordNotFoundException.
             if (!(this.recordExists(recNo))) {
                 throw new RecordNotFoundException(
@@ -339,6 +488,75 @@ class DatabaseFileAccess {
         }
     }
     
+    /**
+     * This public method is used to return the information of several records 
+     * in one pass under a single read lock, so that every record is read from 
+     * the same state of the database.
+     * 
+     * @param recNos the file position record numbers.
+     * @return a String array with the record information of each record, in 
+     * the same order as the record numbers, or null for a record that does 
+     * not exist or is deleted.
+     */
+    public String[][] readRecords(long[] recNos) {
+        String[][] records = new String[recNos.length][];
+        try {
+            //Read only lock prevents any writing to the cache or file while 
+            //the records are being read, but does allow concurrent reading.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            for (int i = 0; i < recNos.length; i++) {
+                Contractor contractor 
+                        = DatabaseFileAccess.recordCache.get(recNos[i]);
+                if (contractor != null 
+                        && contractor.getFlag() 
+                        != DatabaseFileAccess.DELETED_FLAG) {
+                    records[i] = contractor.getStringArrayData();
+                }
+            }
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+        return records;
+    }
+    
+    /**
+     * This public method finds the records matching the criteria, as 
+     * <code>findByCriteria()</code> does, and reads them under the same read 
+     * lock, so a search costs one pass whatever the number of matches.  
+     * Deleted records are left out.
+     * 
+     * @param criteria The string array containing the name or location or both.
+     * @return the record information keyed by record number (file position) 
+     * in ascending order, starting with the field titles record 0, or an 
+     * empty map if the criteria have more than six fields.
+     */
+    public Map<Long, String[]> readByCriteria(String[] criteria) {
+        Map<Long, String[]> records = new LinkedHashMap<Long, String[]>();
+        try {
+            //Read only lock keeps the search and the reads consistent.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            //Criteria that are not valid match nothing, rather than giving 
+            //the caller a null to trip over.
+            long[] recNos = this.findByCriteria(criteria);
+            if (recNos == null) {
+                return records;
+            }
+            String[][] recordData = this.readRecords(recNos);
+            for (int i = 0; i < recNos.length; i++) {
+                if (recordData[i] != null) {
+                    records.put(recNos[i], recordData[i]);
+                }
+            }
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+        return records;
+    }
+    
     /**
      * This public method is used to update a records information using a String
      * array and the file position record number.
@@ -356,7 +574,7 @@ class DatabaseFileAccess {
             DatabaseFileAccess.databaseLock.writeLock().lock();
             
             //This if statment checks to see if the record is still valid or 
-            //deleted or exists at all and updates the cache. If not it throws a 
+            //deleted or exists at all. If not it throws a 
             //RecordNotFoundException.
             if ((!(this.recordExists(recNo))) || (recNo < 1)) {
                 throw new RecordNotFoundException(
@@ -381,6 +599,7 @@ class DatabaseFileAccess {
                 //the private saveRecord() method.
                 Contractor newContractor = new Contractor(contractorData);
                 this.saveRecord(recNo, newContractor);
+                this.cacheRecord(recNo, newContractor);
             }
         } finally {
             //Releases the lock as the operation has finished.
@@ -388,6 +607,64 @@ class DatabaseFileAccess {
         }
     }
     
+    /**
+     * This public method sets the Owner field of a record, but only if it
+     * still holds the expected owner.  The check and the update are made in
+     * one critical section under the write lock, so no other write can come
+     * between them.
+     * 
+     * @param recNo a long used to locate the record.
+     * @param expectedOwner the owner the record must hold, "" if it must not
+     * be booked.
+     * @param newOwner the owner to be set, "" to clear the booking.
+     * @return true if the owner was set, false if the record held a different
+     * owner and was left unchanged.
+     * @throws RecordNotFoundException if the record does not exist or deleted.
+     * @throws IllegalArgumentException if the new owner is null or longer 
+     * than the Owner field.
+     */
+    public boolean compareAndSetOwner(long recNo, String expectedOwner, 
+            String newOwner) throws RecordNotFoundException {
+        //The new owner is checked before anything is written, as a null 
+        //owner cannot be cached and a longer one would be cut short.
+        int ownerLength 
+                = DatabaseFileAccess.fieldLengths[Contractor.OWNER_FIELD_INDEX];
+        if (newOwner == null || newOwner.length() > ownerLength) {
+            throw new IllegalArgumentException(
+                    "The new owner is not valid: " + newOwner);
+        }
+        try {
+            //Write lock prevents any writing or reading to the cache or 
+            //file while the record is being checked and updated.
+            DatabaseFileAccess.databaseLock.writeLock().lock();
+            
+            //This if statment checks to see if the record is still valid or 
+            //deleted or exists at all. If not it throws a 
+            //RecordNotFoundException.
+            if ((!(this.recordExists(recNo))) || (recNo < 1)) {
+                throw new RecordNotFoundException(
+                        "The record you are trying to update does not exist or "
+                        + "is deleted.");
+            }
+            Contractor oldContractor 
+                    = DatabaseFileAccess.recordCache.get(recNo);
+            if (!oldContractor.getOwner().equals(expectedOwner)) {
+                return false;
+            }
+            
+            //Only the owner field changes, the rest of the record is copied.
+            String[] contractorData = oldContractor.getStringArrayData();
+            contractorData[Contractor.OWNER_FIELD_INDEX] = newOwner;
+            Contractor newContractor = new Contractor(contractorData);
+            this.saveRecord(recNo, newContractor);
+            this.cacheRecord(recNo, newContractor);
+            return true;
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.writeLock().unlock();
+        }
+    }
+    
     /**
      * This public method is used to delete a record using a long to locate the
      * file position.
@@ -402,8 +679,8 @@ class DatabaseFileAccess {
             DatabaseFileAccess.databaseLock.writeLock().lock();
             
             //This if statment checks to see if the record is still valid or 
-            //deleted or even exists at all and updates the cache. If not it
-            //throws a RecordNotFoundException.
+            //deleted or even exists at all. If not it throws a 
+            //RecordNotFoundException.
             try {
                 if ((!(this.recordExists(recNo))) || (recNo < 1)) {
                     throw new RecordNotFoundException(
@@ -412,11 +689,16 @@ class DatabaseFileAccess {
                 } else {
                     //This overwirtes the deleted / valid flag as deleted leaving 
                     //this space available to be replaced with a new record.
-                    DatabaseFileAccess.dataFile.seek(DatabaseFileAccess.startOfRecordZero 
-                            + ((DatabaseFileAccess.LENGTH_OF_FLAG_BYTES 
-                            + Contractor.RECORD_LENGTH) * (recNo - 1)));
+                    DatabaseFileAccess.dataFile.seek(this.slotPosition(recNo));
                     DatabaseFileAccess.dataFile.writeShort(
                             DatabaseFileAccess.DELETED_FLAG);
+                    
+                    //Marks the cached copy of the record deleted as well.
+                    Contractor deletedContractor = new Contractor(
+                            DatabaseFileAccess.DELETED_FLAG, 
+                            DatabaseFileAccess.recordCache.get(recNo)
+                            .getStringArrayData());
+                    this.cacheRecord(recNo, deletedContractor);
                 }
             } catch (IOException ex) {
                 ApplicationRunner.handleException("File access unsuccessful.");
@@ -442,13 +724,6 @@ class DatabaseFileAccess {
             //record is being read, but does allow concurrent reading.
             DatabaseFileAccess.databaseLock.readLock().lock();
             
-            //This statement updates the cache so that the information is 
-            //current at this particular time.
-            try {
-                this.updateCache();
-            } catch (IOException ex) {
-                ApplicationRunner.handleException("File access unsuccessful.");
-            }
             contractor = DatabaseFileAccess.recordCache.get(recNo);
             if (contractor == null 
                     || contractor.getFlag() == DatabaseFileAccess.DELETED_FLAG) {
@@ -468,7 +743,8 @@ class DatabaseFileAccess {
      * Field n in the database file is described by criteria[n]. A null value 
      * in criteria[n] matches any field value. A non-null value in criteria[n] 
      * matches any field value that begins with criteria[n]. (For example, 
-     * "Fred" matches "Fred" or "Freddy").
+     * "Fred" matches "Fred" or "Freddy").  Results are kept in the query 
+     * result cache, so repeating a search does not scan the records again.
      * 
      * @param criteria The string array containing the name or location or both.
      * @return the record numbers (file positions) as a long array.
@@ -485,30 +761,13 @@ class DatabaseFileAccess {
                 return null;
             }
             
-            //This statement updates the cache so that the information is 
-            //current at this particular time.
-            try {
-                this.updateCache();
-            } catch (IOException ex) {
-                ApplicationRunner.handleException("File access unsuccessful.");
-            }
-            
-            //Creates an array with 6 element slots used to compare the record 
-            //fields for matches.
-            String[] criteriaCompareArray = new String[6];
-            
-            //Creates an ArrayList used to check only the fields that are not 
-            //null by recording the field positions in the record that need to 
-            //matched.
-            List<Integer> fieldPositions = new ArrayList<Integer>();
-            
-            //Populates the criteriaCompareArray and add the field position 
-            //number to the fieldPositions List.
-            for (int i = 0; i < criteria.length; i++) {
-                if (criteria[i] != null) {
-                    fieldPositions.add(i);
-                    criteriaCompareArray[i] = criteria[i];
-                }
+            //Pads the criteria to 6 elements and returns the cached result if 
+            //the same search has already been run at this write version.
+            String[] criteriaCompareArray = QueryResultCache.normalise(criteria);
+            long version = DatabaseFileAccess.queryCache.getWriteVersion();
+            recNums = DatabaseFileAccess.queryCache.get(criteriaCompareArray);
+            if (recNums != null) {
+                return recNums;
             }
             
             //A Set is created to collect the record file position numbers that
@@ -521,52 +780,593 @@ class DatabaseFileAccess {
             //Creates an entrySet to traverse the recordChache extracting the
             //record numbers (keys) and Contractor objects (values) as required.
             for (Map.Entry<Long, Contractor> entry : DatabaseFileAccess.recordCache.entrySet()) {
-                Contractor contractor = entry.getValue();
-                String[] contractorData = contractor.getStringArrayData();
-                
-                //All records start as a match until it is found that they don't
-                //natch.
-                boolean matches = true;
-                
-                //Tries to match the fields being searched for.
-                for (int fieldPos : fieldPositions) {
-                    //Creates a pattern for each field to compare the criteria 
-                    //with.
-                    Pattern fieldPattern 
-                            = Pattern.compile(criteriaCompareArray[fieldPos], 
-                            Pattern.CASE_INSENSITIVE);
-                    Matcher fieldMatcher 
-                            = fieldPattern.matcher(contractorData[fieldPos].trim());
+                //If the record does match then it is added to the recordNumbers
+                //Set.
+                if (DatabaseFileAccess.matchesCriteria(
+                        entry.getValue(), criteriaCompareArray)) {
+                    recordNumbers.add(entry.getKey());
+                }
+            }
+            
+            //Convert the recordNumbers Set to a long[].
+            recNums = new long[recordNumbers.size()];
+            Iterator recNoIterator = recordNumbers.iterator();
+            int recNumsIndex = 0;
+            while (recNoIterator.hasNext()) {
+                recNums[recNumsIndex] = (Long) recNoIterator.next();
+                recNumsIndex++;
+            }
+            
+            //Caches the result for the next time the same search is run.
+            DatabaseFileAccess.queryCache.put(
+                    criteriaCompareArray, recNums, version);
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+        return recNums;
+    }
+    
+    /**
+     * This method checks a record against the criteria using the 
+     * <code>findByCriteria()</code> rules.  A field matches if it begins with 
+     * the criteria.  Records marked deleted are always treated as matching.
+     * 
+     * @param contractor the record to check.
+     * @param criteria the criteria padded to 6 elements.
+     * @return true if the record matches.
+     */
+    static boolean matchesCriteria(Contractor contractor, String[] criteria) {
+        //Deleted records never fail to match.
+        if (contractor.getFlag() != DatabaseFileAccess.VALID_FLAG) {
+            return true;
+        }
+        
+        //Tries to match the fields being searched for.  If any of the 
+        //compared fields do not match the begining of the field the record 
+        //does not match.
+        String[] contractorData = contractor.getStringArrayData();
+        for (int fieldPos = 0; fieldPos < criteria.length; fieldPos++) {
+            if (criteria[fieldPos] != null && !DatabaseFileAccess.startsWith(
+                    contractorData[fieldPos], criteria[fieldPos])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * This method checks whether a field begins with the criteria, ignoring 
+     * case.  The criteria are compared literally, so "Bali Hai." or "$85.00" 
+     * mean just what they say.  Every search that matches the beginning of a 
+     * field uses it, so they all agree on which records match.
+     * 
+     * @param field the field value.
+     * @param criteria the data to match.
+     * @return true if the field begins with the criteria.
+     */
+    static boolean startsWith(String field, String criteria) {
+        return field.regionMatches(true, 0, criteria, 0, criteria.length());
+    }
+    
+    /**
+     * Returns the numbers of the valid records whose numeric fields lie within 
+     * the given bounds and whose other fields begin with the criteria.  A 
+     * bounded field is walked through its sorted index, so only records in 
+     * its range are visited, and a record without a value in a bounded field 
+     * never matches.  The records are returned in ascending order of rate, 
+     * then record number, with any records without a rate last.
+     * 
+     * @param criteria the string array containing the data to match, or null.
+     * @param minimums the lowest value of each field.
+     * @param maximums the highest value of each field.
+     * @return the record numbers (file positions) as a long array.
+     */
+    public long[] findByRange(String[] criteria, long[] minimums, 
+            long[] maximums) {
+        try {
+            //Read only lock prevents any writing to the cache or file while 
+            //the records are being read, but does allow concurrent reading.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            //Collects the bounds of the two numeric fields.
+            long minSize = this.bound(minimums, Contractor.SIZE_FIELD_INDEX, 
+                    Long.MIN_VALUE);
+            long maxSize = this.bound(maximums, Contractor.SIZE_FIELD_INDEX, 
+                    Long.MAX_VALUE);
+            long minRate = this.bound(minimums, Contractor.RATE_FIELD_INDEX, 
+                    Long.MIN_VALUE);
+            long maxRate = this.bound(maximums, Contractor.RATE_FIELD_INDEX, 
+                    Long.MAX_VALUE);
+            boolean sizeBounded 
+                    = minSize != Long.MIN_VALUE || maxSize != Long.MAX_VALUE;
+            boolean rateBounded 
+                    = minRate != Long.MIN_VALUE || maxRate != Long.MAX_VALUE;
+            
+            //Walks the rate index if the rate is bounded, as its records are 
+            //already in rate order, otherwise the size index, and only the 
+            //valid records if neither is bounded.
+            List<Long> candidates;
+            if (rateBounded) {
+                candidates = DatabaseFileAccess.rateIndex.findRange(
+                        minRate, maxRate);
+            } else if (sizeBounded) {
+                candidates = DatabaseFileAccess.sizeIndex.findRange(
+                        minSize, maxSize);
+            } else {
+                candidates = new ArrayList<Long>();
+                for (Map.Entry<Long, Contractor> entry 
+                        : DatabaseFileAccess.recordCache.entrySet()) {
+                    if (entry.getKey() >= 1 && entry.getValue().getFlag() 
+                            != DatabaseFileAccess.DELETED_FLAG) {
+                        candidates.add(entry.getKey());
+                    }
+                }
+            }
+            
+            //Checks the size bound against its column, as the candidates may 
+            //have come from the rate index.
+            BitSet[] codeMatches = this.findCodes(criteria, false);
+            List<Long> matches = new ArrayList<Long>();
+            for (Long recNo : candidates) {
+                long size = DatabaseFileAccess.sizeIndex.get(recNo);
+                if (sizeBounded && (size == Contractor.NO_VALUE 
+                        || size < minSize || size > maxSize)) {
+                    continue;
+                }
+                if (this.fieldsMatch(recNo, criteria, codeMatches, false)) {
+                    matches.add(recNo);
+                }
+            }
+            
+            //The rate index already gives the rate order, otherwise the 
+            //matches are sorted on their rate.
+            if (!rateBounded) {
+                Collections.sort(matches, new Comparator<Long>() {
                     
-                    //If any of the compared fields do not match the begining of 
-                    //the field the boolean matches becomes false.
-                    if (!(fieldMatcher.lookingAt()) 
-                            && contractor.getFlag() 
-                            == DatabaseFileAccess.VALID_FLAG) {
-                        matches = false;
+                    @Override
+                    public int compare(Long recNo1, Long recNo2) {
+                        long rate1 = DatabaseFileAccess.rateIndex.get(recNo1);
+                        long rate2 = DatabaseFileAccess.rateIndex.get(recNo2);
+                        if (rate1 == rate2) {
+                            return recNo1.compareTo(recNo2);
+                        } else if (rate1 == Contractor.NO_VALUE) {
+                            return 1;
+                        } else if (rate2 == Contractor.NO_VALUE) {
+                            return -1;
+                        }
+                        return (rate1 < rate2) ? -1 : 1;
                     }
+                    
+                });
+            }
+            
+            //Converts the matches to a long[].
+            long[] recNums = new long[matches.size()];
+            for (int i = 0; i < recNums.length; i++) {
+                recNums[i] = matches.get(i);
+            }
+            return recNums;
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns the numbers of the valid records offering the given types of 
+     * work, looked up in the Specialties inverted index, whose other fields 
+     * begin with the criteria.
+     * 
+     * @param criteria the string array containing the data to match, or null.
+     * @param specialties the types of work to look for.
+     * @param matchAll true if a record must offer every type of work, false if 
+     * offering any one of them is enough.
+     * @return the record numbers (file positions) in ascending order.
+     */
+    public long[] findBySpecialties(String[] criteria, String[] specialties, 
+            boolean matchAll) {
+        try {
+            //Read only lock prevents any writing to the cache or file while 
+            //the records are being read, but does allow concurrent reading.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            //Looks the types of work up in the index, then checks the other 
+            //criteria against the matching records only.
+            BitSet candidates 
+                    = DatabaseFileAccess.specialtyIndex.find(specialties, matchAll);
+            BitSet[] codeMatches = this.findCodes(criteria, false);
+            List<Long> matches = new ArrayList<Long>();
+            for (int recNo = candidates.nextSetBit(0); recNo >= 0; 
+                    recNo = candidates.nextSetBit(recNo + 1)) {
+                if (this.fieldsMatch(recNo, criteria, codeMatches, false)) {
+                    matches.add((long) recNo);
                 }
+            }
+            
+            //Converts the matches to a long[].
+            long[] recNums = new long[matches.size()];
+            for (int i = 0; i < recNums.length; i++) {
+                recNums[i] = matches.get(i);
+            }
+            return recNums;
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns the numbers of the valid records booked by a customer, looked up 
+     * in the owner index.
+     * 
+     * @param owner the 8 digit customer id.
+     * @return the record numbers (file positions) in ascending order.
+     */
+    public long[] findByOwner(String owner) {
+        try {
+            //Read only lock prevents any writing to the cache or file while 
+            //the index is being read, but does allow concurrent reading.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            Set<Long> recNos = (owner == null) ? null 
+                    : DatabaseFileAccess.ownerIndex.get(owner.trim());
+            if (recNos == null) {
+                return new long[0];
+            }
+            
+            //Converts the matches to a long[].
+            long[] recNums = new long[recNos.size()];
+            int i = 0;
+            for (Long recNo : recNos) {
+                recNums[i++] = recNo;
+            }
+            return recNums;
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns the numbers of the valid records whose fields equal the 
+     * criteria, ignoring case and surrounding white space, rather than begin 
+     * with them.  The Location and Specialties fields are matched through 
+     * their dictionaries, the others by comparing the cached record.  The 
+     * field titles record 0 is not included.
+     * 
+     * @param criteria the string array containing the data to match, or null.
+     * @return the record numbers (file positions) in ascending order.
+     */
+    public long[] findExact(String[] criteria) {
+        try {
+            //Read only lock prevents any writing to the cache or file while 
+            //the records are being read, but does allow concurrent reading.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            BitSet[] codeMatches = this.findCodes(criteria, true);
+            List<Long> matches = new ArrayList<Long>();
+            for (Map.Entry<Long, Contractor> entry 
+                    : DatabaseFileAccess.recordCache.entrySet()) {
+                Long recNo = entry.getKey();
+                if (recNo >= 1 && entry.getValue().getFlag() 
+                        != DatabaseFileAccess.DELETED_FLAG 
+                        && this.fieldsMatch(recNo, criteria, codeMatches, true)) {
+                    matches.add(recNo);
+                }
+            }
+            Collections.sort(matches);
+            
+            //Converts the matches to a long[].
+            long[] recNums = new long[matches.size()];
+            for (int i = 0; i < recNums.length; i++) {
+                recNums[i] = matches.get(i);
+            }
+            return recNums;
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns the numbers of the valid records that are not booked, taken from 
+     * the availability bitmap, whose other fields begin with the criteria.
+     * 
+     * @param criteria the string array containing the data to match, or null.
+     * @return the record numbers (file positions) in ascending order.
+     */
+    public long[] findAvailable(String[] criteria) {
+        try {
+            //Read only lock prevents any writing to the cache or file while 
+            //the records are being read, but does allow concurrent reading.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            //Checks the criteria against the available records only.
+            BitSet candidates = DatabaseFileAccess.availableRecords;
+            BitSet[] codeMatches = this.findCodes(criteria, false);
+            List<Long> matches = new ArrayList<Long>();
+            for (int recNo = candidates.nextSetBit(0); recNo >= 0; 
+                    recNo = candidates.nextSetBit(recNo + 1)) {
+                if (this.fieldsMatch(recNo, criteria, codeMatches, false)) {
+                    matches.add((long) recNo);
+                }
+            }
+            
+            //Converts the matches to a long[].
+            long[] recNums = new long[matches.size()];
+            for (int i = 0; i < recNums.length; i++) {
+                recNums[i] = matches.get(i);
+            }
+            return recNums;
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * This public method checks whether a record is booked using the 
+     * availability bitmap rather than reading the record.
+     * 
+     * @param recNo a long used to locate the record.
+     * @return true if the record is booked, false if it is available.
+     * @throws RecordNotFoundException if the record does not exist or deleted.
+     */
+    public boolean isBooked(long recNo) throws RecordNotFoundException {
+        try {
+            //Read only lock prevents any writing to the cache or file while 
+            //the record is being checked, but does allow concurrent reading.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            //This if statment checks to see if the record is still valid or 
+            //deleted or exists at all. If not it throws a 
+            //RecordNotFoundException.
+            if (!(this.recordExists(recNo)) || (recNo < 1)) {
+                throw new RecordNotFoundException(
+                        "The record does not exist or is deleted.");
+            }
+            return !DatabaseFileAccess.availableRecords.get((int) recNo);
+        } finally {
+            //Releases the lock as the operation has finished.
+            DatabaseFileAccess.databaseLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns the numbers of at most <code>limit</code> valid records whose 
+     * fields begin with, or exactly match, the criteria, in ascending order 
+     * of the sort field.  
+     * The Size and Rate fields are walked through their sorted index, stopping 
+     * as soon as enough records match, and records without a value in the 
+     * field come last.  The Name field has no index, so the 
+     * matching records pass through a heap holding only the best 
+     * <code>limit</code> names seen so far.
+     * 
+     * @param criteria the string array containing the data to match, or null.
+     * @param exactMatch true if the fields must equal the criteria, ignoring 
+     * case and surrounding white space, rather than begin with them.
+     * @param sortField the Name, Size or Rate field position.
+     * @param limit the largest number of records to return.
+     * @return the record numbers (file positions) in sorted order.
+     * @throws IllegalArgumentException if the field cannot be sorted on or 
+     * the limit is negative.
+     */
+    public long[] findTop(String[] criteria, boolean exactMatch, 
+            int sortField, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("The limit cannot be negative.");
+        }
+        try {
+            //Read only lock prevents any writing to the cache or file while 
+            //the records are being read, but does allow concurrent reading.
+            DatabaseFileAccess.databaseLock.readLock().lock();
+            
+            BitSet[] codeMatches = this.findCodes(criteria, exactMatch);
+            List<Long> matches = new ArrayList<Long>();
+            if (sortField == Contractor.SIZE_FIELD_INDEX 
+                    || sortField == Contractor.RATE_FIELD_INDEX) {
+                SortedColumnIndex column 
+                        = (sortField == Contractor.SIZE_FIELD_INDEX) 
+                        ? DatabaseFileAccess.sizeIndex 
+                        : DatabaseFileAccess.rateIndex;
                 
-                //If the record does match then it is added to the recordNumbers
-                //Set.
-                if (matches) {
-                    recordNumbers.add(entry.getKey());
+                //Walks the records in order of value until the limit is 
+                //reached.
+                search:
+                for (Set<Long> recNos : column.valuesInOrder()) {
+                    for (Long recNo : recNos) {
+                        if (matches.size() == limit) {
+                            break search;
+                        }
+                        if (this.fieldsMatch(
+                                recNo, criteria, codeMatches, exactMatch)) {
+                            matches.add(recNo);
+                        }
+                    }
                 }
                 
-                //Convert the recordNumbers Set to a long[].
-                recNums = new long[recordNumbers.size()];
-                Iterator recNoIterator = recordNumbers.iterator();
-                int recNumsIndex = 0;
-                while (recNoIterator.hasNext()) {
-                    recNums[recNumsIndex] = (Long) recNoIterator.next();
-                    recNumsIndex++;
+                //Records whose field has no value are not in the index, so 
+                //they follow the indexed records in record number order, as 
+                //findByCriteria() would return them.
+                if (matches.size() < limit) {
+                    List<Long> unindexed = new ArrayList<Long>();
+                    for (Map.Entry<Long, Contractor> entry 
+                            : DatabaseFileAccess.recordCache.entrySet()) {
+                        Long recNo = entry.getKey();
+                        if (recNo >= 1 && entry.getValue().getFlag() 
+                                != DatabaseFileAccess.DELETED_FLAG 
+                                && column.get(recNo) == Contractor.NO_VALUE 
+                                && this.fieldsMatch(
+                                recNo, criteria, codeMatches, exactMatch)) {
+                            unindexed.add(recNo);
+                        }
+                    }
+                    Collections.sort(unindexed);
+                    matches.addAll(unindexed.subList(0, Math.min(
+                            unindexed.size(), limit - matches.size())));
+                }
+            } else if (sortField == Contractor.NAME_FIELD_INDEX) {
+                //The heap is ordered worst name first, so once it is full the 
+                //worst name can be dropped as each better one arrives.
+                Comparator<Long> byName = new Comparator<Long>() {
+                    
+                    @Override
+                    public int compare(Long recNo1, Long recNo2) {
+                        int order = DatabaseFileAccess.recordCache.get(recNo1)
+                                .getName().compareToIgnoreCase(
+                                DatabaseFileAccess.recordCache.get(recNo2)
+                                .getName());
+                        return (order != 0) ? order : recNo1.compareTo(recNo2);
+                    }
+                };
+                PriorityQueue<Long> heap = new PriorityQueue<Long>(
+                        Math.max(limit, 1), Collections.reverseOrder(byName));
+                for (Map.Entry<Long, Contractor> entry 
+                        : DatabaseFileAccess.recordCache.entrySet()) {
+                    Long recNo = entry.getKey();
+                    if (limit == 0 || recNo < 1 || entry.getValue().getFlag() 
+                            == DatabaseFileAccess.DELETED_FLAG 
+                            || !this.fieldsMatch(
+                            recNo, criteria, codeMatches, exactMatch)) {
+                        continue;
+                    }
+                    if (heap.size() < limit) {
+                        heap.add(recNo);
+                    } else if (byName.compare(recNo, heap.peek()) < 0) {
+                        heap.poll();
+                        heap.add(recNo);
+                    }
                 }
+                matches.addAll(heap);
+                Collections.sort(matches, byName);
+            } else {
+                throw new IllegalArgumentException(
+                        "Records cannot be sorted on field " + sortField + ".");
             }
+            
+            //Converts the matches to a long[].
+            long[] recNums = new long[matches.size()];
+            for (int i = 0; i < recNums.length; i++) {
+                recNums[i] = matches.get(i);
+            }
+            return recNums;
         } finally {
             //Releases the lock as the operation has finished.
             DatabaseFileAccess.databaseLock.readLock().unlock();
         }
-        return recNums;
+    }
+    
+    /**
+     * This private method returns the bound of a field, or the default bound 
+     * if none was given.
+     * 
+     * @param bounds the bounds of each field, or null.
+     * @param field the field position.
+     * @param unbounded the value meaning the field is unbounded.
+     * @return the bound.
+     */
+    private long bound(long[] bounds, int field, long unbounded) {
+        if (bounds == null || bounds.length <= field) {
+            return unbounded;
+        }
+        return bounds[field];
+    }
+    
+    /**
+     * This private method matches the criteria of the dictionary encoded 
+     * fields against their dictionaries, so that each record can then be 
+     * checked by its codes alone.
+     * 
+     * @param criteria the string array containing the data to match, or null.
+     * @param exactMatch true to find the values equal to the criteria, false 
+     * to find the values beginning with them.
+     * @return the matching codes of each dictionary encoded field, or null 
+     * for the fields that have no criteria or are not dictionary encoded.
+     */
+    private BitSet[] findCodes(String[] criteria, boolean exactMatch) {
+        BitSet[] codeMatches = new BitSet[Contractor.OWNER_FIELD_INDEX + 1];
+        if (criteria == null) {
+            return codeMatches;
+        }
+        if (criteria.length > Contractor.LOCATION_FIELD_INDEX 
+                && criteria[Contractor.LOCATION_FIELD_INDEX] != null) {
+            codeMatches[Contractor.LOCATION_FIELD_INDEX] = this.findCodes(
+                    DatabaseFileAccess.locationDictionary, 
+                    criteria[Contractor.LOCATION_FIELD_INDEX], exactMatch);
+        }
+        if (criteria.length > Contractor.SPECIALTIES_FIELD_INDEX 
+                && criteria[Contractor.SPECIALTIES_FIELD_INDEX] != null) {
+            codeMatches[Contractor.SPECIALTIES_FIELD_INDEX] = this.findCodes(
+                    DatabaseFileAccess.specialtiesDictionary, 
+                    criteria[Contractor.SPECIALTIES_FIELD_INDEX], exactMatch);
+        }
+        return codeMatches;
+    }
+    
+    /**
+     * This private method matches a single criteria against a dictionary.
+     * 
+     * @param dictionary the dictionary of the field.
+     * @param criteria the data to match.
+     * @param exactMatch true to find the values equal to the criteria, false 
+     * to find the values beginning with it.
+     * @return the matching codes.
+     */
+    private BitSet findCodes(FieldDictionary dictionary, String criteria, 
+            boolean exactMatch) {
+        return exactMatch ? dictionary.findCodesEqualTo(criteria) 
+                : dictionary.findCodesStartingWith(criteria);
+    }
+    
+    /**
+     * This private method checks whether every non-null criteria field is the 
+     * start of the matching field of a valid record, ignoring case, or in an 
+     * exact match search equals the field, ignoring case and surrounding white 
+     * space.  The dictionary encoded fields are checked by code.
+     * 
+     * @param recNo the record number (file position) of the record to check.
+     * @param criteria the string array containing the data to match, or null.
+     * @param codeMatches the matching codes from <code>findCodes()</code>.
+     * @param exactMatch true if the fields must equal the criteria.
+     * @return true if the record matches.
+     */
+    private boolean fieldsMatch(long recNo, String[] criteria, 
+            BitSet[] codeMatches, boolean exactMatch) {
+        if (criteria == null) {
+            return true;
+        }
+        
+        //The dictionary encoded fields are an integer lookup.
+        BitSet locations = codeMatches[Contractor.LOCATION_FIELD_INDEX];
+        if (locations != null && !locations.get(
+                DatabaseFileAccess.locationDictionary.getCode(recNo))) {
+            return false;
+        }
+        BitSet specialties = codeMatches[Contractor.SPECIALTIES_FIELD_INDEX];
+        if (specialties != null && !specialties.get(
+                DatabaseFileAccess.specialtiesDictionary.getCode(recNo))) {
+            return false;
+        }
+        
+        //The remaining fields are compared with the cached record.
+        String[] contractorData 
+                = DatabaseFileAccess.recordCache.get(recNo).getStringArrayData();
+        for (int i = 0; i < criteria.length && i < contractorData.length; i++) {
+            if (criteria[i] == null || codeMatches[i] != null) {
+                continue;
+            }
+            if (exactMatch) {
+                if (!contractorData[i].trim().equalsIgnoreCase(
+                        criteria[i].trim())) {
+                    return false;
+                }
+            } else if (!DatabaseFileAccess.startsWith(
+                    contractorData[i], criteria[i])) {
+                return false;
+            }
+        }
+        return true;
     }
     
     /**
@@ -587,14 +1387,6 @@ class DatabaseFileAccess {
             //file while a record is being created.
             DatabaseFileAccess.databaseLock.writeLock().lock();
             
-            //This statement updates the cache so that the information is 
-            //current at this particular time.
-            try {
-                this.updateCache();
-            } catch (IOException ex) {
-                ApplicationRunner.handleException("File access unsuccessful.");
-            }
-            
             //Creates a new Contractor object to hopfully enter into the 
             //database.
             Contractor createdContractor = new Contractor(data);
@@ -628,6 +1420,7 @@ class DatabaseFileAccess {
                 
                 //Saves the record to file and returns the record number.
                 this.saveRecord(recordNumber, createdContractor);
+                this.cacheRecord(recordNumber, createdContractor);
                 return recordNumber;
                 
             //Else if there are available slots.
@@ -637,6 +1430,7 @@ class DatabaseFileAccess {
                 
                 //Saves the record to file and returns the record number.
                 this.saveRecord(recordNumber, createdContractor);
+                this.cacheRecord(recordNumber, createdContractor);
                 return recordNumber;
             }
         } finally {
@@ -653,51 +1447,15 @@ class DatabaseFileAccess {
      * @param contractor a Contractor object to be saved.
      */
     private void saveRecord(long recNo, Contractor contractor) {
-        //A StringBuilder is created to reduce disk writing operations.
-        final StringBuilder out 
-                = new StringBuilder(DatabaseFileAccess.emptyContractorRecord);
-        
-        //Assists in converting Strings to a byte[].
-        class RecordFieldWriter {
-            
-            //Current position in byte[].
-            private int currentPosition = 0;
-            
-            /**
-            * Converts a String of specified length to byte[]
-            *
-            * @param data the String to be converted into part of the byte[].
-            * @param length the maximum size of the String
-            */
-            void write(String data, int length) {
-                if (!(data == null)) {
-                    out.replace(this.currentPosition, 
-                            this.currentPosition + data.length(),
-                            data);
-                }
-                this.currentPosition += length;
-            }
-            
-        }
-        
-        //A new RecordFieldWriter to populate the StringBuilder out.
-        RecordFieldWriter writeRecord = new RecordFieldWriter();
-        
-        //Populates the StringBuilder out with the relevent fields.
-        writeRecord.write(contractor.getName(), Contractor.NAME_FIELD_LENGTH);
-        writeRecord.write(contractor.getLocation(), Contractor.LOCATION_FIELD_SIZE);
-        writeRecord.write(contractor.getSpecialties(), Contractor.SPECIALITIES_FIELD_SIZE);
-        writeRecord.write(contractor.getSize(), Contractor.SIZE_FIELD_SIZE);
-        writeRecord.write(contractor.getRate(), Contractor.RATE_FIELD_SIZE);
-        writeRecord.write(contractor.getOwner(), Contractor.OWNER_FIELD_SIZE);
+        //Encodes the flag and fields straight into the reusable buffer so the 
+        //whole slot is written to disk with a single write.
+        DatabaseFileAccess.recordCodec.encode(contractor.getFlag(), 
+                contractor.getStringArrayData(), DatabaseFileAccess.writeBuffer);
         
         //Writes the deleted / valid flag and the contractor record to disk.
         try {
-            DatabaseFileAccess.dataFile.seek(startOfRecordZero 
-                    + ((LENGTH_OF_FLAG_BYTES 
-                    + Contractor.RECORD_LENGTH) * (recNo - 1)));
-            DatabaseFileAccess.dataFile.writeShort(contractor.getFlag());
-            DatabaseFileAccess.dataFile.write(out.toString().getBytes(CHAR_SET));
+            DatabaseFileAccess.dataFile.seek(this.slotPosition(recNo));
+            DatabaseFileAccess.dataFile.write(DatabaseFileAccess.writeBuffer);
         } catch (IOException ex) {
             ApplicationRunner.handleException("File access unsuccessful.");
         }
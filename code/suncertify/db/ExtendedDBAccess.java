@@ -0,0 +1,305 @@
+package suncertify.db;
+
+import java.util.Map;
+
+/**
+ * This interface extends the required <code>DBAccess</code> interface with the
+ * additional queries the booking application needs, leaving
+ * <code>DBAccess</code> exactly as it was specified.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public interface ExtendedDBAccess extends DBAccess {
+    
+    /**
+     * Reads several records in one pass, all from the same state of the
+     * database, instead of one <code>readRecord()</code> call per record.
+     *
+     * @param recNos the record numbers (file positions).
+     * @return an array holding the fields of each record in the order of the
+     * record numbers, or null for a record that is deleted or doesn't exist.
+     */
+    String[][] readRecords(long[] recNos);
+    
+    /**
+     * Finds the records matching the criteria, following the same rules as
+     * <code>findByCriteria()</code>, and reads them in the same pass, so a
+     * search costs one pass whatever the number of matches.  Deleted records
+     * are left out.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match.
+     * @return the fields of the matching records keyed by record number, in
+     * ascending order starting with the field titles record 0, or an empty
+     * map if the criteria have more than six fields.
+     */
+    Map<Long, String[]> readByCriteria(String[] criteria);
+    
+    /**
+     * Returns the numbers of the valid records whose numeric fields lie within
+     * the given bounds and whose other fields match the criteria.  Only the
+     * Size (number of staff) and Rate (in cents) fields are numeric.
+     * minimums[n] and maximums[n] bound field n inclusively, use
+     * <code>Long.MIN_VALUE</code> and <code>Long.MAX_VALUE</code> to leave a
+     * field unbounded.  The criteria follow the same rules as
+     * <code>findByCriteria()</code>, and may be null to match every record.
+     * <br/><br/>
+     * The records are returned in ascending order of rate, cheapest first,
+     * then of record number, with any records without a rate last.  A record
+     * without a value in a bounded field never matches.  The field titles
+     * record 0 is not included.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match,
+     * or null.
+     * @param minimums the lowest value of each field.
+     * @param maximums the highest value of each field.
+     * @return an <code>long[]</code> with matching record numbers.
+     */
+    long[] findByRange(String[] criteria, long[] minimums, long[] maximums);
+    
+    /**
+     * Returns the numbers of the valid records offering the given types of
+     * work, whose other fields match the criteria.  Each type of work is
+     * matched against every entry of the comma separated Specialties field,
+     * ignoring case, so "Electrical" finds "Roofing, Electrical, Painting".
+     * The criteria follow the same rules as <code>findByCriteria()</code>, and
+     * may be null to match every record.  The field titles record 0 is not
+     * included.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match,
+     * or null.
+     * @param specialties the types of work to look for.
+     * @param matchAll true if a record must offer every type of work (AND),
+     * false if offering any one of them is enough (OR).
+     * @return an <code>long[]</code> with matching record numbers in ascending
+     * order.
+     */
+    long[] findBySpecialties(String[] criteria, String[] specialties,
+            boolean matchAll);
+    
+    /**
+     * Returns the numbers of the valid records booked by a customer, that is 
+     * whose Owner field holds the given customer id.
+     *
+     * @param owner the 8 digit customer id.
+     * @return an <code>long[]</code> with matching record numbers in ascending
+     * order, empty if the customer has no bookings.
+     */
+    long[] findByOwner(String owner);
+    
+    /**
+     * Returns the numbers of the valid records that are not booked, that is 
+     * whose Owner field is empty, and whose other fields match the criteria.
+     * The criteria follow the same rules as <code>findByCriteria()</code>, and
+     * may be null to match every record.  The field titles record 0 is not
+     * included.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match,
+     * or null.
+     * @return an <code>long[]</code> with matching record numbers in ascending
+     * order.
+     */
+    long[] findAvailable(String[] criteria);
+    
+    /**
+     * Checks whether a record is booked, that is whether its Owner field holds
+     * a customer id, without reading the record.
+     *
+     * @param recNo the record number (file position).
+     * @return true if the record is booked, false if it is available.
+     * @throws RecordNotFoundException if the record is deleted or doesn't
+     * exist.
+     */
+    boolean isBooked(long recNo) throws RecordNotFoundException;
+    
+    /**
+     * Returns the numbers of at most <code>limit</code> valid records whose
+     * fields match the criteria, in ascending order of a sort field.  Only the
+     * Name, Size and Rate fields can be sorted on; records without a numeric
+     * value come last, in record number order, when sorting on Size or Rate.
+     * The criteria follow the same rules as <code>findByCriteria()</code>,
+     * and may be null to match every record.  The field titles record 0 is
+     * not included.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match,
+     * or null.
+     * @param sortField the field to sort on, one of
+     * <code>Contractor.NAME_FIELD_INDEX</code>,
+     * <code>Contractor.SIZE_FIELD_INDEX</code> or
+     * <code>Contractor.RATE_FIELD_INDEX</code>.
+     * @param limit the largest number of records to return.
+     * @return an <code>long[]</code> with matching record numbers in sorted
+     * order.
+     * @throws IllegalArgumentException if the field cannot be sorted on or
+     * the limit is negative.
+     */
+    long[] findTop(String[] criteria, int sortField, int limit);
+    
+    /**
+     * Returns the numbers of at most <code>limit</code> valid records matching
+     * the criteria in ascending order of a sort field, like
+     * <code>findTop()</code>, but can match the criteria exactly as
+     * <code>findExact()</code> does, so the limit counts only exact matches.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match,
+     * or null.
+     * @param exactMatch true if the fields must equal the criteria, false if
+     * they must begin with them.
+     * @param sortField the field to sort on, one of
+     * <code>Contractor.NAME_FIELD_INDEX</code>,
+     * <code>Contractor.SIZE_FIELD_INDEX</code> or
+     * <code>Contractor.RATE_FIELD_INDEX</code>.
+     * @param limit the largest number of records to return.
+     * @return an <code>long[]</code> with matching record numbers in sorted
+     * order.
+     * @throws IllegalArgumentException if the field cannot be sorted on or
+     * the limit is negative.
+     */
+    long[] findTop(String[] criteria, boolean exactMatch, int sortField,
+            int limit);
+    
+    /**
+     * Returns the numbers of the valid records whose fields equal the
+     * criteria, rather than begin with them as in <code>findByCriteria()</code>.
+     * Fields are compared ignoring case and surrounding white space, so
+     * "smith" finds "Smith" but not "Smithson".  A null value in criteria[n]
+     * matches any field value, and criteria may be null to match every record.
+     * The field titles record 0 is not included.
+     *
+     * @param criteria an <code>String[]</code> containing the data to match,
+     * or null.
+     * @return an <code>long[]</code> with matching record numbers in ascending
+     * order.
+     */
+    long[] findExact(String[] criteria);
+    
+    /**
+     * Locks a record so that it can only be updated or deleted by this client,
+     * like <code>lockRecord()</code>, but waits no longer than the timeout for
+     * a different client to release it.
+     *
+     * @param recNo the record number (file position).
+     * @param timeout the longest time to wait in milliseconds.
+     * @return a cookie that must be used when the record is unlocked,
+     * updated, or deleted.
+     * @throws RecordNotFoundException if the record is deleted or doesn't
+     * exist.
+     * @throws LockTimeoutException if the record is still locked by another
+     * client when the timeout runs out.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    long tryLockRecord(long recNo, long timeout)
+            throws RecordNotFoundException, LockTimeoutException;
+    
+    /**
+     * Returns the number of <code>tryLockRecord()</code> calls that have timed
+     * out since the application started, so that lock contention can be
+     * watched.
+     *
+     * @return the number of lock timeouts.
+     */
+    long getLockTimeoutCount();
+    
+    /**
+     * Returns the statistics of the record locks: wait and hold time
+     * histograms over all records and for each record, current queue depths,
+     * timeout counts and the most contended records.  The same statistics
+     * are published through JMX as
+     * <code>suncertify.db:type=LockStatistics</code>.
+     *
+     * @return the lock statistics.
+     */
+    LockStatisticsMBean getLockStatistics();
+    
+    /**
+     * Sets the Owner field of a record only if it currently holds the expected
+     * owner, e.g. books a record only if it is not booked already.  The check
+     * and the update are made atomically in one call, without locking the
+     * record and without a cookie.  Records locked by a client are refused, as
+     * the lock holder may be about to update them.
+     *
+     * @param recNo the record number (file position).
+     * @param expectedOwner the owner the record must hold, "" if it must not
+     * be booked.
+     * @param newOwner the owner to be set, "" to clear the booking.
+     * @return true if the owner was set, false if the record held a different
+     * owner and was left unchanged.
+     * @throws RecordNotFoundException if the record is deleted or doesn't
+     * exist.
+     * @throws SecurityException if the record is locked by a client.
+     * @throws IllegalArgumentException if the new owner is null or longer
+     * than the Owner field.
+     */
+    boolean compareAndSetOwner(long recNo, String expectedOwner,
+            String newOwner) throws RecordNotFoundException, SecurityException;
+    
+    /**
+     * Locks a group of records, e.g. a crew of contractors for one job, so
+     * that they can only be updated or deleted by this client.  The records
+     * are locked in ascending record number order whatever order they are
+     * given in, so two clients locking overlapping groups cannot deadlock.
+     * Every record is locked with the same composite cookie, which can also be
+     * used to update, delete or unlock each record on its own.
+     *
+     * @param recNos the record numbers (file positions).
+     * @return a composite cookie that must be used when the records are
+     * unlocked, updated, or deleted.
+     * @throws RecordNotFoundException if any record is deleted or doesn't
+     * exist, in which case none are locked.
+     * @throws IllegalArgumentException if no records are given, or this
+     * client already holds any of them.
+     */
+    long lockRecords(long[] recNos) throws RecordNotFoundException;
+    
+    /**
+     * Locks a group of records like <code>lockRecords()</code>, but gives up
+     * if the whole group has not been locked before the timeout, which
+     * covers the whole group rather than each record.  Either every record
+     * is locked or, if an exception is thrown, none of them is.
+     *
+     * @param recNos the record numbers (file positions).
+     * @param timeout the longest time to wait in milliseconds.
+     * @return a composite cookie that must be used when the records are
+     * unlocked, updated, or deleted.
+     * @throws RecordNotFoundException if any record is deleted or doesn't
+     * exist.
+     * @throws LockTimeoutException if any record is still locked by another
+     * client when the timeout runs out.
+     * @throws IllegalArgumentException if no records are given, or the
+     * timeout is negative.
+     */
+    long tryLockRecords(long[] recNos, long timeout)
+            throws RecordNotFoundException, LockTimeoutException;
+    
+    /**
+     * Releases the locks on a group of records locked by
+     * <code>lockRecords()</code>.
+     *
+     * @param recNos the record numbers (file positions).
+     * @param cookie the composite cookie obtained from
+     * <code>lockRecords()</code>.
+     * @throws SecurityException if any record is not locked with the cookie,
+     * in which case none are unlocked.
+     */
+    void unlockRecords(long[] recNos, long cookie) throws SecurityException;
+    
+    /**
+     * Renews the lease on a locked record.  Locks are leases that are released
+     * automatically once the lease time runs out, so a client needing a record
+     * for longer must renew its lock.
+     *
+     * @param recNo the record number (file position).
+     * @param cookie the cookie obtained from locking the record.
+     * @throws SecurityException if the record is not locked with the cookie,
+     * e.g. because its lease has already run out.
+     */
+    void renewLock(long recNo, long cookie) throws SecurityException;
+    
+    /**
+     * Releases every lock held by this client.  It must be called when the
+     * client is finished with the database, e.g. when its connection closes,
+     * so its records are freed straight away.
+     */
+    void close();
+    
+}
@@ -0,0 +1,152 @@
+package suncertify.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the worker class that dictionary encodes a field whose values repeat
+ * across many records, such as Location or Specialties.  Each distinct value is
+ * held once in the dictionary and given a small <code>int</code> code, and the
+ * field of every record is held as a code in a column indexed by record
+ * number.<br/><br/>
+ *
+ * The cached records share the single canonical <code>String</code> of each
+ * value, and criteria are matched against the few dictionary entries once per
+ * search so that each record is then checked with an integer lookup.  Codes
+ * are never reused, as the number of distinct values is small.<br/><br/>
+ *
+ * This class is not thread safe, it is guarded by the
+ * <code>DatabaseFileAccess</code> read / write lock.  Note: that since this
+ * should only be used by the DatabaseFileAccess class, the class has been set
+ * to have default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class FieldDictionary {
+    
+    /**
+     * The code held by records without a value in the column.
+     */
+    static final int NO_CODE = -1;
+    
+    /**
+     * The initial number of record slots in the column.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    
+    /**
+     * The distinct values, indexed by code.
+     */
+    private final List<String> values = new ArrayList<String>();
+    
+    /**
+     * A <code>HashMap</code> from each distinct value to its code.
+     */
+    private final Map<String, Integer> codes = new HashMap<String, Integer>();
+    
+    /**
+     * The code of every record, indexed by record number.
+     */
+    private int[] column = new int[FieldDictionary.INITIAL_CAPACITY];
+    
+    /**
+     * Creates an empty dictionary.
+     */
+    FieldDictionary() {
+        Arrays.fill(this.column, FieldDictionary.NO_CODE);
+    }
+    
+    /**
+     * Stores the value of a record, adding it to the dictionary if it is new.
+     *
+     * @param recNo the record number (file position).
+     * @param value the field value.
+     * @return the canonical <code>String</code> equal to the value, to be held
+     * by the cached record in place of its own copy.
+     */
+    String put(long recNo, String value) {
+        Integer code = this.codes.get(value);
+        if (code == null) {
+            code = this.values.size();
+            this.values.add(value);
+            this.codes.put(value, code);
+        }
+        
+        //Grows the column to fit the record number if needed.
+        if (recNo >= this.column.length) {
+            int oldLength = this.column.length;
+            this.column = Arrays.copyOf(this.column,
+                    (int) Math.max(recNo + 1, oldLength * 2));
+            Arrays.fill(this.column, oldLength, this.column.length,
+                    FieldDictionary.NO_CODE);
+        }
+        this.column[(int) recNo] = code;
+        return this.values.get(code);
+    }
+    
+    /**
+     * Removes a record from the column.  The value stays in the dictionary.
+     *
+     * @param recNo the record number (file position).
+     */
+    void remove(long recNo) {
+        if (recNo >= 0 && recNo < this.column.length) {
+            this.column[(int) recNo] = FieldDictionary.NO_CODE;
+        }
+    }
+    
+    /**
+     * Returns the code of a record.
+     *
+     * @param recNo the record number (file position).
+     * @return the code or <code>NO_CODE</code> if the record has no value.
+     */
+    int getCode(long recNo) {
+        if (recNo < 0 || recNo >= this.column.length) {
+            return FieldDictionary.NO_CODE;
+        }
+        return this.column[(int) recNo];
+    }
+    
+    /**
+     * Returns the codes of the values that begin with the criteria, ignoring
+     * case, so each record can then be matched by its code alone.
+     *
+     * @param criteria the start of the value to match.
+     * @return a new <code>BitSet</code> of the matching codes.
+     */
+    BitSet findCodesStartingWith(String criteria) {
+        BitSet matches = new BitSet(this.values.size());
+        for (int code = 0; code < this.values.size(); code++) {
+            if (DatabaseFileAccess.startsWith(this.values.get(code), criteria)) {
+                matches.set(code);
+            }
+        }
+        return matches;
+    }
+    
+    /**
+     * Returns the codes of the values that equal the criteria, ignoring case
+     * and surrounding white space, for an exact match search.
+     *
+     * @param criteria the value to match.
+     * @return a new <code>BitSet</code> of the matching codes.
+     */
+    BitSet findCodesEqualTo(String criteria) {
+        String trimmedCriteria = criteria.trim();
+        BitSet matches = new BitSet(this.values.size());
+        for (int code = 0; code < this.values.size(); code++) {
+            if (this.values.get(code).trim().equalsIgnoreCase(
+                    trimmedCriteria)) {
+                matches.set(code);
+            }
+        }
+        return matches;
+    }
+    
+}
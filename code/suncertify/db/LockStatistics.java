@@ -0,0 +1,342 @@
+package suncertify.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This is the worker class that records how the record locks are used, so
+ * that slow bookings can be traced to contention on particular records.  The
+ * <code>RecordLockingManager</code> reports every wait, grant, release and
+ * timeout to it, and it keeps wait and hold time histograms, queue depths and
+ * totals both over all records and for each record.<br/><br/>
+ *
+ * Every count is held in an atomic variable so recording never blocks the
+ * locking threads, and a reading may be a moment out of step with another.
+ * Note: that since this should only be used by the RecordLockingManager
+ * class, the class has been set to have default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class LockStatistics implements LockStatisticsMBean {
+    
+    /**
+     * The number of histogram buckets.  Bucket n holds the times below
+     * 2<sup>n</sup> milliseconds that do not fit an earlier bucket, and the
+     * last bucket holds every longer time.
+     */
+    private static final int NUMBER_OF_BUCKETS = 16;
+    
+    /**
+     * The wait time, hold time and queue depth over all records.
+     */
+    private final RecordStatistics allRecords = new RecordStatistics();
+    
+    /**
+     * The statistics of each record that has been locked, keyed by record
+     * number.
+     */
+    private final ConcurrentMap<Long, RecordStatistics> records
+            = new ConcurrentHashMap<Long, RecordStatistics>();
+    
+    /**
+     * Records that a client has started waiting for a locked record.
+     *
+     * @param recNo the record number.
+     */
+    void waitStarted(long recNo) {
+        this.allRecords.queueDepth.incrementAndGet();
+        this.getRecordStatistics(recNo).queueDepth.incrementAndGet();
+    }
+    
+    /**
+     * Records that a client has stopped waiting for a record, whether it was
+     * granted the lock, timed out or gave up.
+     *
+     * @param recNo the record number.
+     */
+    void waitEnded(long recNo) {
+        this.allRecords.queueDepth.decrementAndGet();
+        this.getRecordStatistics(recNo).queueDepth.decrementAndGet();
+    }
+    
+    /**
+     * Records that a lock has been granted after the given wait.
+     *
+     * @param recNo the record number.
+     * @param waitNanos the time the client waited in nanoseconds.
+     */
+    void lockGranted(long recNo, long waitNanos) {
+        this.allRecords.lockGranted(waitNanos);
+        this.getRecordStatistics(recNo).lockGranted(waitNanos);
+    }
+    
+    /**
+     * Records that a lock has been released after being held for the given
+     * time.
+     *
+     * @param recNo the record number.
+     * @param holdNanos the time the lock was held in nanoseconds.
+     */
+    void lockReleased(long recNo, long holdNanos) {
+        this.allRecords.holdTimes.add(holdNanos);
+        this.getRecordStatistics(recNo).holdTimes.add(holdNanos);
+    }
+    
+    /**
+     * Records that a <code>tryLockRecord()</code> call has timed out.
+     *
+     * @param recNo the record number.
+     */
+    void lockTimedOut(long recNo) {
+        this.allRecords.timeouts.incrementAndGet();
+        this.getRecordStatistics(recNo).timeouts.incrementAndGet();
+    }
+    
+    @Override
+    public long[] getHistogramBucketLimits() {
+        long[] limits = new long[LockStatistics.NUMBER_OF_BUCKETS];
+        for (int bucket = 0; bucket < limits.length - 1; bucket++) {
+            limits[bucket] = 1l << bucket;
+        }
+        limits[limits.length - 1] = Long.MAX_VALUE;
+        return limits;
+    }
+    
+    @Override
+    public long getLockCount() {
+        return this.allRecords.lockCount.get();
+    }
+    
+    @Override
+    public long getLockTimeoutCount() {
+        return this.allRecords.timeouts.get();
+    }
+    
+    @Override
+    public int getQueueDepth() {
+        return this.allRecords.queueDepth.get();
+    }
+    
+    @Override
+    public long[] getWaitTimeHistogram() {
+        return this.allRecords.waitTimes.toArray();
+    }
+    
+    @Override
+    public long[] getHoldTimeHistogram() {
+        return this.allRecords.holdTimes.toArray();
+    }
+    
+    @Override
+    public int getRecordQueueDepth(long recNo) {
+        RecordStatistics statistics = this.records.get(recNo);
+        return statistics == null ? 0 : statistics.queueDepth.get();
+    }
+    
+    @Override
+    public long[] getRecordWaitTimeHistogram(long recNo) {
+        RecordStatistics statistics = this.records.get(recNo);
+        return statistics == null ? new long[LockStatistics.NUMBER_OF_BUCKETS]
+                : statistics.waitTimes.toArray();
+    }
+    
+    @Override
+    public long[] getRecordHoldTimeHistogram(long recNo) {
+        RecordStatistics statistics = this.records.get(recNo);
+        return statistics == null ? new long[LockStatistics.NUMBER_OF_BUCKETS]
+                : statistics.holdTimes.toArray();
+    }
+    
+    @Override
+    public long[] getHottestRecords(int count) {
+        List<Map.Entry<Long, RecordStatistics>> hottest
+                = this.findHottestRecords(count);
+        long[] recNos = new long[hottest.size()];
+        for (int i = 0; i < recNos.length; i++) {
+            recNos[i] = hottest.get(i).getKey();
+        }
+        return recNos;
+    }
+    
+    @Override
+    public String[] getHotRecordReport(int count) {
+        List<Map.Entry<Long, RecordStatistics>> hottest
+                = this.findHottestRecords(count);
+        String[] report = new String[hottest.size()];
+        for (int i = 0; i < report.length; i++) {
+            RecordStatistics statistics = hottest.get(i).getValue();
+            report[i] = "Record " + hottest.get(i).getKey()
+                    + ": locks=" + statistics.lockCount.get()
+                    + ", totalWaitMs=" + TimeUnit.NANOSECONDS.toMillis(
+                            statistics.totalWaitNanos.get())
+                    + ", maxWaitMs=" + TimeUnit.NANOSECONDS.toMillis(
+                            statistics.maxWaitNanos.get())
+                    + ", timeouts=" + statistics.timeouts.get()
+                    + ", queued=" + statistics.queueDepth.get();
+        }
+        return report;
+    }
+    
+    /**
+     * This private method returns the statistics of a record, creating them
+     * the first time the record is seen.
+     *
+     * @param recNo the record number.
+     * @return the records statistics.
+     */
+    private RecordStatistics getRecordStatistics(long recNo) {
+        RecordStatistics statistics = this.records.get(recNo);
+        if (statistics == null) {
+            //Another thread may create the statistics at the same time, in
+            //which case its statistics are used.
+            RecordStatistics newStatistics = new RecordStatistics();
+            statistics = this.records.putIfAbsent(recNo, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+    
+    /**
+     * This private method sorts the records by the total time clients have
+     * waited for them, then by the number of locks granted.
+     *
+     * @param count the largest number of records to return.
+     * @return the hottest records with their statistics, hottest first.
+     */
+    private List<Map.Entry<Long, RecordStatistics>> findHottestRecords(
+            int count) {
+        List<Map.Entry<Long, RecordStatistics>> hottest
+                = new ArrayList<Map.Entry<Long, RecordStatistics>>(
+                this.records.entrySet());
+        Collections.sort(hottest,
+                new Comparator<Map.Entry<Long, RecordStatistics>>() {
+            
+            @Override
+            public int compare(Map.Entry<Long, RecordStatistics> entry1,
+                    Map.Entry<Long, RecordStatistics> entry2) {
+                long wait1 = entry1.getValue().totalWaitNanos.get();
+                long wait2 = entry2.getValue().totalWaitNanos.get();
+                if (wait1 != wait2) {
+                    return wait1 > wait2 ? -1 : 1;
+                }
+                long locks1 = entry1.getValue().lockCount.get();
+                long locks2 = entry2.getValue().lockCount.get();
+                if (locks1 != locks2) {
+                    return locks1 > locks2 ? -1 : 1;
+                }
+                return entry1.getKey().compareTo(entry2.getKey());
+            }
+            
+        });
+        return hottest.subList(0, Math.max(0, Math.min(count, hottest.size())));
+    }
+    
+    /**
+     * The lock statistics of a single record, or of all records together.
+     */
+    private static class RecordStatistics {
+        
+        /**
+         * The time clients waited for the lock.
+         */
+        private final Histogram waitTimes = new Histogram();
+        
+        /**
+         * The time the lock was held.
+         */
+        private final Histogram holdTimes = new Histogram();
+        
+        /**
+         * The number of clients currently waiting for the lock.
+         */
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        
+        /**
+         * The number of locks granted.
+         */
+        private final AtomicLong lockCount = new AtomicLong();
+        
+        /**
+         * The number of lock requests that timed out.
+         */
+        private final AtomicLong timeouts = new AtomicLong();
+        
+        /**
+         * The total time clients waited for the lock in nanoseconds.
+         */
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        
+        /**
+         * The longest time a client waited for the lock in nanoseconds.
+         */
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        
+        /**
+         * Counts a granted lock and the time waited for it.
+         *
+         * @param waitNanos the time waited in nanoseconds.
+         */
+        void lockGranted(long waitNanos) {
+            this.lockCount.incrementAndGet();
+            this.waitTimes.add(waitNanos);
+            this.totalWaitNanos.addAndGet(waitNanos);
+            long maxWait = this.maxWaitNanos.get();
+            while (waitNanos > maxWait
+                    && !this.maxWaitNanos.compareAndSet(maxWait, waitNanos)) {
+                maxWait = this.maxWaitNanos.get();
+            }
+        }
+        
+    }
+    
+    /**
+     * A histogram of times in power of two millisecond buckets.
+     */
+    private static class Histogram {
+        
+        /**
+         * The count of each bucket.
+         */
+        private final AtomicLongArray buckets
+                = new AtomicLongArray(LockStatistics.NUMBER_OF_BUCKETS);
+        
+        /**
+         * Counts a time in its bucket.
+         *
+         * @param nanos the time in nanoseconds.
+         */
+        void add(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(nanos, 0l));
+            int bucket = 64 - Long.numberOfLeadingZeros(millis);
+            this.buckets.incrementAndGet(Math.min(bucket,
+                    LockStatistics.NUMBER_OF_BUCKETS - 1));
+        }
+        
+        /**
+         * Returns a copy of the bucket counts.
+         *
+         * @return the count of each bucket.
+         */
+        long[] toArray() {
+            long[] counts = new long[this.buckets.length()];
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                counts[bucket] = this.buckets.get(bucket);
+            }
+            return counts;
+        }
+        
+    }
+    
+}
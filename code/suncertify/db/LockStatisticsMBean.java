@@ -0,0 +1,109 @@
+package suncertify.db;
+
+/**
+ * This interface is the management interface of the record lock statistics.
+ * It is registered with the platform <code>MBeanServer</code> under the name
+ * <code>suncertify.db:type=LockStatistics</code> so that lock contention can
+ * be watched with JConsole or any other JMX client, and it is also returned by
+ * <code>ExtendedDBAccess.getLockStatistics()</code> to be read directly.<br/>
+ * <br/>
+ *
+ * Wait and hold times are counted in histograms whose buckets are given by
+ * <code>getHistogramBucketLimits()</code>.  The wait time runs from a client
+ * asking for a lock until it is granted, the hold time from the lock being
+ * granted until it is released, unlocked, reaped or dropped on disconnect.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+public interface LockStatisticsMBean {
+    
+    /**
+     * Returns the exclusive upper limit of each histogram bucket in
+     * milliseconds.  The last bucket holds every longer time.
+     *
+     * @return the bucket limits, one per bucket.
+     */
+    long[] getHistogramBucketLimits();
+    
+    /**
+     * Returns the number of locks granted over all records.
+     *
+     * @return the number of locks granted.
+     */
+    long getLockCount();
+    
+    /**
+     * Returns the number of <code>tryLockRecord()</code> calls that have
+     * timed out.
+     *
+     * @return the number of lock timeouts.
+     */
+    long getLockTimeoutCount();
+    
+    /**
+     * Returns the number of clients currently waiting for a record, over all
+     * records.
+     *
+     * @return the current queue depth.
+     */
+    int getQueueDepth();
+    
+    /**
+     * Returns the wait time histogram over all records.
+     *
+     * @return the number of lock waits in each bucket.
+     */
+    long[] getWaitTimeHistogram();
+    
+    /**
+     * Returns the hold time histogram over all records.
+     *
+     * @return the number of locks held in each bucket.
+     */
+    long[] getHoldTimeHistogram();
+    
+    /**
+     * Returns the number of clients currently waiting for a record.
+     *
+     * @param recNo the record number.
+     * @return the current queue depth of the record.
+     */
+    int getRecordQueueDepth(long recNo);
+    
+    /**
+     * Returns the wait time histogram of a record.
+     *
+     * @param recNo the record number.
+     * @return the number of lock waits in each bucket.
+     */
+    long[] getRecordWaitTimeHistogram(long recNo);
+    
+    /**
+     * Returns the hold time histogram of a record.
+     *
+     * @param recNo the record number.
+     * @return the number of locks held in each bucket.
+     */
+    long[] getRecordHoldTimeHistogram(long recNo);
+    
+    /**
+     * Returns the most contended records, that is those whose clients have
+     * spent the longest time waiting for them in total, hottest first.
+     *
+     * @param count the largest number of records to return.
+     * @return the record numbers.
+     */
+    long[] getHottestRecords(int count);
+    
+    /**
+     * Returns a readable line for each of the most contended records, giving
+     * its lock count, total and longest wait time, timeouts and current
+     * queue depth.
+     *
+     * @param count the largest number of records to report.
+     * @return one line per record, hottest first.
+     */
+    String[] getHotRecordReport(int count);
+    
+}
@@ -0,0 +1,35 @@
+package suncertify.db;
+
+/**
+ * This Exception thrown when a lock on a record could not be obtained before 
+ * the deadline given to <code>tryLockRecord()</code>, because another client 
+ * held the record for the whole time.
+ * 
+ * @author Robert Black
+ * @version 1.0
+ */
+public class LockTimeoutException extends Exception {
+    
+    /**
+     * A version number for this class so that serialization can occur without 
+     * worrying about the underlying class changing between serialization and 
+     * de-serialization.
+     */
+    private static final long serialVersionUID = -3851409657279384127L;
+    
+    /**
+     * Default constructor.
+     */
+    public LockTimeoutException() {
+    }
+    
+    /**
+     * This constructor takes the exception message.
+     * 
+     * @param message the message.
+     */
+    public LockTimeoutException(String message) {
+        super(message);
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,228 @@
+package suncertify.db;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This is the worker class that caches the results of
+ * <code>findByCriteria()</code>, so that a search that is run again (e.g. the
+ * last search rerun to refresh the display after a booking) costs a hash
+ * lookup rather than a scan of every record.<br/><br/>
+ *
+ * Results are keyed by the criteria padded to one entry per field, and are
+ * tagged with the write version of the database they were found at.  Every
+ * change to a record moves the database on to a new write version and patches
+ * each cached result in place, adding or removing the changed record
+ * according to whether it now matches.  A result with any other version is
+ * never returned.  The least recently used result is dropped once the cache
+ * is full.<br/><br/>
+ *
+ * Lookups and new results happen under the <code>DatabaseFileAccess</code>
+ * read lock, so the cache is guarded by its own <code>ReentrantLock</code>
+ * rather than a monitor, which a virtual thread can wait on without pinning
+ * its carrier; changes happen under the write lock.  Note: that since this
+ * should only be used by the DatabaseFileAccess class, the class has been set
+ * to have default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class QueryResultCache {
+    
+    /**
+     * The largest number of results held in the cache.
+     */
+    private static final int MAXIMUM_ENTRIES = 64;
+    
+    /**
+     * The number of fields in a record, and so in a normalised criteria.
+     */
+    private static final int NUMBER_OF_FIELDS = 6;
+    
+    /**
+     * The cached results keyed by normalised criteria, in least recently used
+     * order.
+     */
+    private final Map<List<String>, CachedResult> results
+            = new LinkedHashMap<List<String>, CachedResult>(16, 0.75f, true) {
+        
+        /**
+         * A version number for this class so that serialization can occur
+         * without worrying about the underlying class changing between
+         * serialization and de-serialization.
+         */
+        private static final long serialVersionUID = 6130794824576135829L;
+        
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<List<String>, CachedResult> eldest) {
+            return this.size() > QueryResultCache.MAXIMUM_ENTRIES;
+        }
+    };
+    
+    /**
+     * The current write version of the database.
+     */
+    private long writeVersion = 0l;
+    
+    /**
+     * Guards the cached results and the write version.
+     */
+    private final Lock cacheLock = new ReentrantLock();
+    
+    /**
+     * Pads the criteria to one entry per field so that criteria matching the
+     * same records share a cache entry, e.g. {"Fred"} and
+     * {"Fred", null, null}.
+     *
+     * @param criteria the criteria passed to <code>findByCriteria()</code>.
+     * @return the normalised criteria, one entry per field.
+     */
+    static String[] normalise(String[] criteria) {
+        String[] normalised = new String[QueryResultCache.NUMBER_OF_FIELDS];
+        System.arraycopy(criteria, 0, normalised, 0,
+                Math.min(criteria.length, normalised.length));
+        return normalised;
+    }
+    
+    /**
+     * Returns the current write version of the database.
+     *
+     * @return the write version.
+     */
+    long getWriteVersion() {
+        this.cacheLock.lock();
+        try {
+            return this.writeVersion;
+        } finally {
+            this.cacheLock.unlock();
+        }
+    }
+    
+    /**
+     * Returns a copy of the cached result for the criteria, if there is one
+     * for the current write version.
+     *
+     * @param criteria the normalised criteria.
+     * @return the matching record numbers, or null if none are cached.
+     */
+    long[] get(String[] criteria) {
+        this.cacheLock.lock();
+        try {
+            CachedResult result = this.results.get(Arrays.asList(criteria));
+            if (result == null || result.version != this.writeVersion) {
+                return null;
+            }
+            return result.recNos.clone();
+        } finally {
+            this.cacheLock.unlock();
+        }
+    }
+    
+    /**
+     * Caches the result of a search.  The result is dropped if the database
+     * has been changed since the search started.
+     *
+     * @param criteria the normalised criteria.
+     * @param recNos the matching record numbers in ascending order.
+     * @param version the write version the search was run at.
+     */
+    void put(String[] criteria, long[] recNos, long version) {
+        this.cacheLock.lock();
+        try {
+            if (version == this.writeVersion) {
+                this.results.put(Arrays.asList(criteria),
+                        new CachedResult(criteria, recNos.clone(), version));
+            }
+        } finally {
+            this.cacheLock.unlock();
+        }
+    }
+    
+    /**
+     * Moves the database on to a new write version after a record has
+     * changed, and patches every cached result with the record.
+     *
+     * @param recNo the record number (file position) of the changed record.
+     * @param contractor the record as it now is.
+     */
+    void recordChanged(long recNo, Contractor contractor) {
+        this.cacheLock.lock();
+        try {
+            this.writeVersion++;
+            for (CachedResult result : this.results.values()) {
+                result.patch(recNo, DatabaseFileAccess.matchesCriteria(
+                        contractor, result.criteria));
+                result.version = this.writeVersion;
+            }
+        } finally {
+            this.cacheLock.unlock();
+        }
+    }
+    
+    /**
+     * A cached search result.
+     */
+    private static class CachedResult {
+        
+        /**
+         * The normalised criteria of the search, one per field.
+         */
+        private final String[] criteria;
+        
+        /**
+         * The matching record numbers in ascending order.
+         */
+        private long[] recNos;
+        
+        /**
+         * The write version the result is correct for.
+         */
+        private long version;
+        
+        /**
+         * Creates a cached result.
+         *
+         * @param criteria the normalised criteria of the search.
+         * @param recNos the matching record numbers in ascending order.
+         * @param version the write version the result is correct for.
+         */
+        CachedResult(String[] criteria, long[] recNos, long version) {
+            this.criteria = criteria;
+            this.recNos = recNos;
+            this.version = version;
+        }
+        
+        /**
+         * Adds a record to, or removes it from, the result keeping the record
+         * numbers in ascending order.  The field titles record 0 is never
+         * changed.
+         *
+         * @param recNo the record number (file position).
+         * @param matches true if the record now matches the criteria.
+         */
+        void patch(long recNo, boolean matches) {
+            int position = Arrays.binarySearch(this.recNos, recNo);
+            if (matches && position < 0) {
+                int insertAt = -(position + 1);
+                long[] patched = new long[this.recNos.length + 1];
+                System.arraycopy(this.recNos, 0, patched, 0, insertAt);
+                patched[insertAt] = recNo;
+                System.arraycopy(this.recNos, insertAt, patched, insertAt + 1,
+                        this.recNos.length - insertAt);
+                this.recNos = patched;
+            } else if (!matches && position >= 0 && recNo != 0l) {
+                long[] patched = new long[this.recNos.length - 1];
+                System.arraycopy(this.recNos, 0, patched, 0, position);
+                System.arraycopy(this.recNos, position + 1, patched, position,
+                        patched.length - position);
+                this.recNos = patched;
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,178 @@
+package suncertify.db;
+
+import java.nio.charset.Charset;
+
+/**
+ * This is the worker class that converts a record between its on disk form
+ * and a <code>String[]</code> of field values.  It is built from the schema
+ * read from the database file header, so the offset of every field within a
+ * record slot is worked out once rather than on every read and write.<br/><br/>
+ *
+ * A record slot is the two byte deleted / valid flag followed by the fields in
+ * schema order.  Fields are 8 bit US ASCII, null padded to the field length.
+ * The codec encodes straight into, and decodes straight out of, a caller
+ * supplied <code>byte[]</code> so no intermediate <code>String</code> or
+ * <code>StringBuilder</code> is needed.<br/><br/>
+ *
+ * Note: that since this should only be used by the DatabaseFileAccess class,
+ * the class has been set to have default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class RecordCodec {
+    
+    /**
+     * The Character Set used to decode the fields.
+     */
+    private static final Charset CHAR_SET = Charset.forName("US-ASCII");
+    
+    /**
+     * The length in bytes of the deleted / valid flag at the start of a slot.
+     */
+    private static final int FLAG_LENGTH = 2;
+    
+    /**
+     * The byte written in place of any character that is not US ASCII.
+     */
+    private static final byte UNMAPPABLE_CHARACTER = '?';
+    
+    /**
+     * An array of respective field offsets from the start of the slot.
+     */
+    private final int[] fieldOffsets;
+    
+    /**
+     * An array of respective field lengths.
+     */
+    private final int[] fieldLengths;
+    
+    /**
+     * The length in bytes of a complete slot, flag included.
+     */
+    private final int slotLength;
+    
+    /**
+     * The constructor takes the field lengths read from the schema description
+     * and works out the offset of each field.
+     *
+     * @param fieldLengths the length in bytes of each field in schema order.
+     */
+    RecordCodec(int[] fieldLengths) {
+        this.fieldLengths = fieldLengths.clone();
+        this.fieldOffsets = new int[fieldLengths.length];
+        
+        //Each field starts where the previous field ends, the first one
+        //starts straight after the flag.
+        int offset = RecordCodec.FLAG_LENGTH;
+        for (int i = 0; i < fieldLengths.length; i++) {
+            this.fieldOffsets[i] = offset;
+            offset += fieldLengths[i];
+        }
+        this.slotLength = offset;
+    }
+    
+    /**
+     * Returns the number of fields in a record.
+     *
+     * @return the number of fields.
+     */
+    int getNumberOfFields() {
+        return this.fieldLengths.length;
+    }
+    
+    /**
+     * Returns the length in bytes of a complete slot, flag included.
+     *
+     * @return the slot length.
+     */
+    int getSlotLength() {
+        return this.slotLength;
+    }
+    
+    /**
+     * Encodes a flag and record fields into a slot.  A null field or a field
+     * missing from the end of the array is written as an empty field, and a
+     * field longer than its schema length is truncated.
+     *
+     * @param flag the deleted / valid flag.
+     * @param fields the field values in schema order.
+     * @param slot the <code>byte[]</code> to be written, at least
+     * <code>getSlotLength()</code> long.
+     */
+    void encode(int flag, String[] fields, byte[] slot) {
+        //Writes the flag as an unsigned short the same way as
+        //RandomAccessFile.writeShort() does.
+        slot[0] = (byte) (flag >>> 8);
+        slot[1] = (byte) flag;
+        
+        for (int i = 0; i < this.fieldLengths.length; i++) {
+            int offset = this.fieldOffsets[i];
+            int end = offset + this.fieldLengths[i];
+            String field = (i < fields.length) ? fields[i] : null;
+            
+            //Copies each character straight into the slot, as US ASCII maps
+            //one character to one byte.
+            if (field != null) {
+                int length = Math.min(field.length(), this.fieldLengths[i]);
+                for (int j = 0; j < length; j++) {
+                    char character = field.charAt(j);
+                    slot[offset++] = (character < 0x80)
+                            ? (byte) character : RecordCodec.UNMAPPABLE_CHARACTER;
+                }
+            }
+            
+            //Null pads the rest of the field.
+            while (offset < end) {
+                slot[offset++] = 0;
+            }
+        }
+    }
+    
+    /**
+     * Decodes the deleted / valid flag from a slot.
+     *
+     * @param slot the <code>byte[]</code> holding the slot.
+     * @return the flag.
+     */
+    int decodeFlag(byte[] slot) {
+        return ((slot[0] & 0xFF) << 8) | (slot[1] & 0xFF);
+    }
+    
+    /**
+     * Decodes the record fields from a slot.  Each field ends at its first
+     * null byte and is trimmed of surrounding white space.
+     *
+     * @param slot the <code>byte[]</code> holding the slot.
+     * @return the field values in schema order.
+     */
+    String[] decode(byte[] slot) {
+        String[] fields = new String[this.fieldLengths.length];
+        for (int i = 0; i < this.fieldLengths.length; i++) {
+            int start = this.fieldOffsets[i];
+            int end = start + this.fieldLengths[i];
+            
+            //Finds the null terminator if the field is shorter than its
+            //maximum length.
+            for (int j = start; j < end; j++) {
+                if (slot[j] == 0) {
+                    end = j;
+                    break;
+                }
+            }
+            
+            //Skips surrounding white space so the String is only created once.
+            while (start < end && (slot[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (slot[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+            
+            fields[i] = new String(slot, start, end - start,
+                    RecordCodec.CHAR_SET);
+        }
+        return fields;
+    }
+    
+}
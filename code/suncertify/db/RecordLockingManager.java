@@ -1,13 +1,45 @@
 package suncertify.db;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
- * This is the worker class that handles <b>logically</b> reserving and 
+ * This is the worker class that handles <b>logically</b> reserving and
  * releasing a contractor record. <br /><br />
- * 
+ *
+ * Each record has its own <code>RecordLock</code> entry, held in a
+ * <code>ConcurrentHashMap</code>, with its own lock and wait queue.  Threads
+ * waiting for one record are never woken by another record being released,
+ * so locking different records never contends on a shared monitor.  Threads
+ * and asynchronous requests wait in the same queue, and a released record is
+ * handed straight to the oldest of them, so no client is overtaken by a later
+ * one however it asked for the record.  An entry
+ * is created the first time its record is locked and then kept, as there is
+ * at most one per record.<br /><br />
+ *
+ * Locks are leases.  Each lock is owned by the <code>Data</code> instance it
+ * was taken through, which the network server creates for each connection,
+ * and lasts for the lease time unless it is renewed.  A background reaper releases locks whose lease
+ * has run out, and <code>releaseLocks()</code> releases every lock of an owner
+ * straight away when its connection closes, so a client that dies while
+ * holding a record cannot keep it from everyone else.<br /><br />
+ *
  * Note: that since this should only be used by the DBAccessImp class, the class
  * has been set to have default access.
  *
@@ -16,110 +48,1076 @@ import java.util.Random;
  */
 class RecordLockingManager {
     
-     /**
-     * A <code>HashMap</code> that contains a <code>Long</code> key that holds 
-     * a the record number and a <code>Long</code> that holds the currently 
-     * reserved contractor client cookie.
+    /**
+     * A <code>ConcurrentHashMap</code> that contains a <code>Long</code> key
+     * that holds the record number and the <code>RecordLock</code> entry that
+     * holds the currently reserved contractor client cookie and the clients
+     * waiting for the record.
+     */
+    private static final ConcurrentMap<Long, RecordLock> recordLocks
+            = new ConcurrentHashMap<Long, RecordLock>();
+    
+    /**
+     * Creates the random client cookies.  <code>Random</code> is thread safe.
+     */
+    private static final Random cookieGenerator = new Random();
+    
+    /**
+     * Records the wait and hold times, queue depths and timeouts of the locks.
+     */
+    private static final LockStatistics statistics = new LockStatistics();
+    
+    /**
+     * The timeout given to <code>awaitLock()</code> and 
+     * <code>requestLock()</code> to wait until the record is handed over, 
+     * however long that takes.  Timeouts given by clients are checked by 
+     * <code>checkTimeout()</code>, so they can never be taken for it.
+     */
+    private static final long WAIT_FOREVER = -1l;
+    
+    /**
+     * The length of a lock lease in nanoseconds.
+     */
+    private final long leaseNanos;
+    
+    /**
+     * Runs the reaper that releases locks whose lease has run out.
+     */
+    private final ScheduledExecutorService reaper;
+    
+    /**
+     * The constructor takes the lease time of a lock and starts the reaper,
+     * which checks for expired leases four times per lease time.
+     *
+     * @param leaseTime the length of a lock lease in milliseconds.
+     */
+    RecordLockingManager(long leaseTime) {
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseTime);
+        
+        //The reaper thread is a daemon so it does not stop the application
+        //from closing.
+        this.reaper = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+            
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread reaperThread = new Thread(task, "Record lock reaper");
+                reaperThread.setDaemon(true);
+                return reaperThread;
+            }
+            
+        });
+        long period = Math.max(leaseTime / 4, 1l);
+        this.reaper.scheduleWithFixedDelay(new Runnable() {
+            
+            @Override
+            public void run() {
+                RecordLockingManager.this.reapExpiredLocks();
+            }
+            
+        }, period, period, TimeUnit.MILLISECONDS);
+        
+        //Publishes the lock statistics through JMX.  If they cannot be 
+        //registered, e.g. because an earlier manager already has, they can 
+        //still be read through getLockStatistics().
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    RecordLockingManager.statistics, 
+                    new ObjectName("suncertify.db:type=LockStatistics"));
+        } catch (JMException ex) {
+            //The statistics are still kept.
+        }
+    }
+    
+    /**
+     * This method locks a record if it is not locked already.  If the record
+     * is locked, the current <code>Thread</code> will wait on the records own
+     * queue, giving up the CPU cycles until the record is released to it.  The
+     * existence of the record is checked before any lock is taken.<br/><br/>
+     *
+     * As <code>DBAccess.lockRecord()</code> has no way to report an interrupt
+     * the thread carries on waiting, and its interrupted status is still set
+     * when the lock is returned.  Use <code>tryLockRecord()</code> to bound
+     * the wait.
+     *
+     * @param recNo the contractor record to be reserved.
+     * @param fileAccess the fileAcces object used to check if the record exists.
+     * @param owner the <code>Data</code> instance the lock is taken through.
+     * @return the clients cookie to be used to unlock the record later.
+     * @throws RecordNotFoundException if the record is deleted or doesn't exist.
      */
-    private static final Map<Long, Long> lockedRecords = new HashMap<Long, Long>();
+    public long lockRecord(long recNo, DatabaseFileAccess fileAccess,
+            Object owner) throws RecordNotFoundException {
+        //Thows a RecordNotFoundException exception if the record is marked
+        //deleted or does not exist.
+        if (!fileAccess.recordExists(recNo)) {
+            throw new RecordNotFoundException(
+                    "The record you are trying to lock does not exist");
+        }
+        
+        RecordLock recordLock = this.getRecordLock(recNo);
+        recordLock.guard.lock();
+        try {
+            //Locks the record, waiting in the records queue until it is 
+            //handed over if it is already locked, and returns the cookie so 
+            //it can be used to unlock the record later.
+            long cookie = RecordLockingManager.cookieGenerator.nextLong();
+            this.awaitLock(recordLock, owner, cookie, 
+                    RecordLockingManager.WAIT_FOREVER);
+            return cookie;
+        } finally {
+            recordLock.guard.unlock();
+        }
+    }
     
     /**
-     * This method locks a record if it is not locked already which is indicated
-     * by checking the lockedRecords <code>HashMap</code> for the presents of 
-     * the record number in question.  If the record number is locked, the the 
-     * current <code>Thread</code> will go into wait state giving up the CPU 
-     * cycles until it is notified of the record release.
+     * This method locks a record like <code>lockRecord()</code>, but gives up 
+     * if the record has not been released to this client before the timeout.
      * 
      * @param recNo the contractor record to be reserved.
+     * @param timeout the longest time to wait in milliseconds.
      * @param fileAccess the fileAcces object used to check if the record exists.
+     * @param owner the <code>Data</code> instance the lock is taken through.
      * @return the clients cookie to be used to unlock the record later.
      * @throws RecordNotFoundException if the record is deleted or doesn't exist.
+     * @throws LockTimeoutException if the record is still locked by another 
+     * client when the timeout runs out, or the thread is interrupted while 
+     * waiting.
+     * @throws IllegalArgumentException if the timeout is negative.
      */
-    public long lockRecord(long recNo, DatabaseFileAccess fileAccess) 
-            throws RecordNotFoundException {
-        //Synchonized so only one thread can access this block at one time.
-        synchronized(RecordLockingManager.lockedRecords) {
-            //Returns a boolean to confirm existance of the record.
-            boolean fileExists = fileAccess.recordExists(recNo);
-            
-            //Thows a RecordNotFoundException exception if the record is marked 
-            //deleted or does not exist.
-            if (!fileExists) {
-                throw new RecordNotFoundException(
-                        "The record you are trying to lock does not exist");
+    public long tryLockRecord(long recNo, long timeout, 
+            DatabaseFileAccess fileAccess, Object owner) 
+            throws RecordNotFoundException, LockTimeoutException {
+        RecordLockingManager.checkTimeout(timeout);
+        
+        //Thows a RecordNotFoundException exception if the record is marked
+        //deleted or does not exist.
+        if (!fileAccess.recordExists(recNo)) {
+            throw new RecordNotFoundException(
+                    "The record you are trying to lock does not exist");
+        }
+        
+        RecordLock recordLock = this.getRecordLock(recNo);
+        recordLock.guard.lock();
+        try {
+            //Waits in the records queue until the record is handed over or 
+            //the time left before the deadline runs out.
+            long cookie = RecordLockingManager.cookieGenerator.nextLong();
+            if (!this.awaitLock(recordLock, owner, cookie, timeout)) {
+                RecordLockingManager.throwLockTimeout(recordLock);
             }
             
-            //The while loop will check if the record is already locked and if 
-            //it is locked indicated by its presents in the HashMap, it will 
-            //cause the current thread to go into waiting state untill notified.
-            while (RecordLockingManager.lockedRecords.containsKey(recNo)) {
+            //Returns the cookie so it can be used to unlock the record later.
+            return cookie;
+        } finally {
+            recordLock.guard.unlock();
+        }
+    }
+    
+    /**
+     * This private method locks a record with the given cookie, straight away 
+     * if it is free and nobody is queued for it, otherwise once it has been 
+     * handed over by <code>releaseLock()</code> to this thread.  The thread 
+     * waits on a condition of its own, so it is only woken when the record 
+     * is its own or its timeout runs out.  It must be called while holding 
+     * the entries guard.
+     * 
+     * @param recordLock the entry of the record.
+     * @param owner the <code>Data</code> instance the lock is taken through.
+     * @param clientCookie the cookie to lock the record with.
+     * @param timeout the longest time to wait in milliseconds, or 
+     * <code>WAIT_FOREVER</code> to wait without a timeout, carrying on if the 
+     * thread is interrupted.
+     * @return true if the record has been locked, false if the timeout ran 
+     * out or the thread was interrupted first, in which case the thread has 
+     * left the queue and its interrupted status is set.
+     */
+    private boolean awaitLock(RecordLock recordLock, Object owner, 
+            long clientCookie, long timeout) {
+        if (recordLock.cookie == null && recordLock.waiters.isEmpty()) {
+            this.grantLock(recordLock, owner, clientCookie, System.nanoTime());
+            return true;
+        }
+        
+        //Joins the end of the records queue.
+        PendingLock request = new PendingLock(owner, clientCookie, 
+                recordLock.guard.newCondition(), null);
+        recordLock.waiters.add(request);
+        RecordLockingManager.statistics.waitStarted(recordLock.recNo);
+        long nanosLeft = TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!request.isDone()) {
+            if (timeout == RecordLockingManager.WAIT_FOREVER) {
+                request.handedOver.awaitUninterruptibly();
+            } else if (nanosLeft <= 0l) {
+                this.withdrawRequest(recordLock, request);
+                return false;
+            } else {
                 try {
-                    RecordLockingManager.lockedRecords.wait();
+                    nanosLeft = request.handedOver.awaitNanos(nanosLeft);
                 } catch (InterruptedException ex) {
-                    //if the thread is interrupted it returns a long of -1.
-                    return -1l;
+                    //Keeps the interrupted status, and keeps the record if it 
+                    //was handed over just before the interrupt.
+                    Thread.currentThread().interrupt();
+                    if (!request.isDone()) {
+                        this.withdrawRequest(recordLock, request);
+                        return false;
+                    }
                 }
             }
-
-            //Creates a random cookie
-            Random cookieGenerator = new Random();
-            long clientCookie = cookieGenerator.nextLong();
-            
-            //Locks the record by putting it into the lockedRecords HashMap.
-            RecordLockingManager.lockedRecords.put(recNo, clientCookie);
+        }
+        return true;
+    }
+    
+    /**
+     * This private method takes a request that has given up out of the 
+     * records queue.  It must be called while holding the entries guard.
+     * 
+     * @param recordLock the entry of the record.
+     * @param request the request.
+     */
+    private void withdrawRequest(RecordLock recordLock, PendingLock request) {
+        if (recordLock.waiters.remove(request)) {
+            RecordLockingManager.statistics.waitEnded(recordLock.recNo);
+        }
+    }
+    
+    /**
+     * This private method throws the exception of a lock request that has 
+     * given up waiting, counting it as a timeout unless the thread was 
+     * interrupted.
+     * 
+     * @param recordLock the entry of the record.
+     * @throws LockTimeoutException always.
+     */
+    private static void throwLockTimeout(RecordLock recordLock) 
+            throws LockTimeoutException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new LockTimeoutException(
+                    "Interrupted while waiting for the record lock.");
+        }
+        RecordLockingManager.statistics.lockTimedOut(recordLock.recNo);
+        throw new LockTimeoutException("The record is locked by "
+                + "another client, please try again later.");
+    }
+    
+    /**
+     * Returns the number of <code>tryLockRecord()</code> calls that have 
+     * timed out since the application started.
+     * 
+     * @return the number of lock timeouts.
+     */
+    public long getLockTimeoutCount() {
+        return RecordLockingManager.statistics.getLockTimeoutCount();
+    }
+    
+    /**
+     * Returns the lock statistics, the wait and hold time histograms, queue 
+     * depths, timeouts and hottest records.
+     * 
+     * @return the lock statistics.
+     */
+    public LockStatisticsMBean getLockStatistics() {
+        return RecordLockingManager.statistics;
+    }
+    
+    /**
+     * This method requests a lock on a record without blocking the current
+     * <code>Thread</code>.  If the record is free and nobody is queued for it, 
+     * it is locked straight away, otherwise the request joins the end of the 
+     * records queue and the returned
+     * <code>AsyncResult</code> is completed with the cookie when the record is
+     * handed over by <code>unlock()</code>, however long that takes.  No 
+     * thread is parked while the request is queued.
+     *
+     * @param recNo the contractor record to be reserved.
+     * @param fileAccess the fileAcces object used to check if the record exists.
+     * @param owner the <code>Data</code> instance the lock is taken through.
+     * @param callbackExecutor the executor that runs the callbacks of the 
+     * result.
+     * @return an <code>AsyncResult</code> holding the clients cookie.
+     */
+    public AsyncResult<Long> lockRecordAsync(long recNo, 
+            DatabaseFileAccess fileAccess, Object owner, 
+            Executor callbackExecutor) {
+        return this.requestLock(recNo, RecordLockingManager.WAIT_FOREVER, 
+                fileAccess, owner, callbackExecutor);
+    }
+    
+    /**
+     * This method requests a lock on a record without blocking the current
+     * <code>Thread</code>.  If the record is free and nobody is queued for it, 
+     * it is locked straight away, otherwise the request joins the end of the 
+     * records queue and the returned
+     * <code>AsyncResult</code> is completed with the cookie when the record is
+     * handed over by <code>unlock()</code>.  No thread is parked while the
+     * request is queued; the reaper withdraws it if the timeout runs out 
+     * first and completes it with a <code>LockTimeoutException</code>.
+     *
+     * @param recNo the contractor record to be reserved.
+     * @param timeout the longest time to wait in milliseconds.
+     * @param fileAccess the fileAcces object used to check if the record exists.
+     * @param owner the <code>Data</code> instance the lock is taken through.
+     * @param callbackExecutor the executor that runs the callbacks of the 
+     * result.
+     * @return an <code>AsyncResult</code> holding the clients cookie.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    public AsyncResult<Long> lockRecordAsync(long recNo, long timeout,
+            DatabaseFileAccess fileAccess, Object owner, 
+            Executor callbackExecutor) {
+        RecordLockingManager.checkTimeout(timeout);
+        return this.requestLock(
+                recNo, timeout, fileAccess, owner, callbackExecutor);
+    }
+    
+    /**
+     * This private method queues a lock request for 
+     * <code>lockRecordAsync()</code>, having the reaper withdraw it if it is 
+     * still queued when the timeout runs out.
+     *
+     * @param recNo the contractor record to be reserved.
+     * @param timeout the longest time to wait in milliseconds, or 
+     * <code>WAIT_FOREVER</code> to wait without a timeout.
+     * @param fileAccess the fileAcces object used to check if the record exists.
+     * @param owner the <code>Data</code> instance the lock is taken through.
+     * @param callbackExecutor the executor that runs the callbacks of the 
+     * result.
+     * @return an <code>AsyncResult</code> holding the clients cookie.
+     */
+    private AsyncResult<Long> requestLock(long recNo, long timeout,
+            DatabaseFileAccess fileAccess, Object owner, 
+            Executor callbackExecutor) {
+        final PendingLock request = new PendingLock(owner,
+                RecordLockingManager.cookieGenerator.nextLong(), null, 
+                callbackExecutor);
+        
+        //Completes the request with a RecordNotFoundException if the record
+        //is marked deleted or does not exist.
+        if (!fileAccess.recordExists(recNo)) {
+            request.fail(new RecordNotFoundException(
+                    "The record you are trying to lock does not exist"));
+            return request;
+        }
+        
+        final RecordLock recordLock = this.getRecordLock(recNo);
+        recordLock.guard.lock();
+        try {
+            //Locks the record straight away if it is free, otherwise queues
+            //the request behind the clients already waiting.
+            if (recordLock.cookie == null && recordLock.waiters.isEmpty()) {
+                request.grant(request.cookie);
+                this.grantLock(recordLock, owner, request.cookie, 
+                        request.requestedAt);
+                return request;
+            }
+            recordLock.waiters.add(request);
+            RecordLockingManager.statistics.waitStarted(recNo);
+        } finally {
+            recordLock.guard.unlock();
+        }
+        
+        //Has the reaper withdraw the request if it is still queued when the 
+        //timeout runs out.
+        if (timeout != RecordLockingManager.WAIT_FOREVER) {
+            this.reaper.schedule(new Runnable() {
+                
+                @Override
+                public void run() {
+                    recordLock.guard.lock();
+                    try {
+                        if (recordLock.waiters.remove(request)) {
+                            RecordLockingManager.statistics.waitEnded(
+                                    recordLock.recNo);
+                            RecordLockingManager.statistics.lockTimedOut(
+                                    recordLock.recNo);
+                            request.fail(new LockTimeoutException("The record "
+                                    + "is locked by another client, please "
+                                    + "try again later."));
+                        }
+                    } finally {
+                        recordLock.guard.unlock();
+                    }
+                }
+                
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        return request;
+    }
+    
+    /**
+     * This method locks a group of records, e.g. a crew of contractors for one
+     * job, under a single composite cookie.  The records are always locked in
+     * ascending record number order, so two clients locking overlapping groups
+     * wait for each other rather than deadlock.  Each record waits like
+     * <code>lockRecord()</code>, and every record in the group holds the same
+     * cookie so it can be updated, deleted or unlocked on its own too.  The
+     * existence of every record is checked before any lock is taken, and so is
+     * that the owner does not already hold any of them, as it would otherwise
+     * wait for itself forever.  The leases of the records all start once the
+     * whole group is held, so a long wait for the last record cannot let the
+     * first ones run out.
+     *
+     * @param recNos the contractor records to be reserved.
+     * @param fileAccess the fileAcces object used to check if the records
+     * exist.
+     * @param owner the <code>Data</code> instance the locks are taken through.
+     * @return the composite cookie to be used to unlock the records later.
+     * @throws RecordNotFoundException if any record is deleted or doesn't
+     * exist.
+     * @throws IllegalArgumentException if the owner already holds any of the
+     * records.
+     */
+    public long lockRecords(long[] recNos, DatabaseFileAccess fileAccess,
+            Object owner) throws RecordNotFoundException {
+        long[] sortedRecNos = this.checkGroup(recNos, fileAccess);
+        for (long recNo : sortedRecNos) {
+            RecordLock recordLock = RecordLockingManager.recordLocks.get(recNo);
+            if (recordLock == null) {
+                continue;
+            }
+            recordLock.guard.lock();
+            try {
+                if (recordLock.cookie != null && recordLock.owner == owner) {
+                    throw new IllegalArgumentException("The record " + recNo
+                            + " is already locked by this client.");
+                }
+            } finally {
+                recordLock.guard.unlock();
+            }
+        }
+        
+        long compositeCookie = RecordLockingManager.cookieGenerator.nextLong();
+        for (long recNo : sortedRecNos) {
+            RecordLock recordLock = this.getRecordLock(recNo);
+            recordLock.guard.lock();
+            try {
+                this.awaitLock(recordLock, owner, compositeCookie, 
+                        RecordLockingManager.WAIT_FOREVER);
+                recordLock.leasePending = true;
+            } finally {
+                recordLock.guard.unlock();
+            }
+        }
+        this.startLeases(sortedRecNos, compositeCookie);
+        return compositeCookie;
+    }
+    
+    /**
+     * This method locks a group of records like <code>lockRecords()</code>, 
+     * but gives up if the whole group has not been locked before the 
+     * timeout, which covers the group rather than each record.  The records 
+     * locked so far are then released again, so either the whole group is 
+     * locked or none of it is.  As it cannot wait forever, the owner may 
+     * already hold some of the records, in which case it times out.
+     *
+     * @param recNos the contractor records to be reserved.
+     * @param timeout the longest time to wait for the whole group in 
+     * milliseconds.
+     * @param fileAccess the fileAcces object used to check if the records
+     * exist.
+     * @param owner the <code>Data</code> instance the locks are taken through.
+     * @return the composite cookie to be used to unlock the records later.
+     * @throws RecordNotFoundException if any record is deleted or doesn't
+     * exist.
+     * @throws LockTimeoutException if any record is still locked by another 
+     * client when the timeout runs out, or the thread is interrupted while 
+     * waiting.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    public long tryLockRecords(long[] recNos, long timeout, 
+            DatabaseFileAccess fileAccess, Object owner) 
+            throws RecordNotFoundException, LockTimeoutException {
+        RecordLockingManager.checkTimeout(timeout);
+        long[] sortedRecNos = this.checkGroup(recNos, fileAccess);
+        long deadline = System.nanoTime() 
+                + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long compositeCookie = RecordLockingManager.cookieGenerator.nextLong();
+        for (int i = 0; i < sortedRecNos.length; i++) {
+            RecordLock recordLock = this.getRecordLock(sortedRecNos[i]);
+            boolean locked;
+            recordLock.guard.lock();
+            try {
+                //Waits only for the time left before the groups deadline.
+                long millisLeft = TimeUnit.NANOSECONDS.toMillis(
+                        Math.max(deadline - System.nanoTime(), 0l));
+                locked = this.awaitLock(
+                        recordLock, owner, compositeCookie, millisLeft);
+                if (locked) {
+                    recordLock.leasePending = true;
+                }
+            } finally {
+                recordLock.guard.unlock();
+            }
             
-            //Returns the cookie so it can be used to unlock the record later.
-            return clientCookie;
-        } 
+            //Releases the records locked so far before giving up.
+            if (!locked) {
+                this.releaseGroup(sortedRecNos, i, compositeCookie);
+                RecordLockingManager.throwLockTimeout(recordLock);
+            }
+        }
+        this.startLeases(sortedRecNos, compositeCookie);
+        return compositeCookie;
+    }
+    
+    /**
+     * This private method sorts a group of records and checks that each one 
+     * exists, before anything is locked.
+     *
+     * @param recNos the record numbers of the group.
+     * @param fileAccess the fileAcces object used to check if the records
+     * exist.
+     * @return the distinct record numbers in ascending order.
+     * @throws RecordNotFoundException if any record is deleted or doesn't
+     * exist.
+     */
+    private long[] checkGroup(long[] recNos, DatabaseFileAccess fileAccess) 
+            throws RecordNotFoundException {
+        //Sorts the records into the canonical order, dropping duplicates.
+        long[] sortedRecNos = RecordLockingManager.sortedGroup(recNos);
+        
+        //Thows a RecordNotFoundException exception if any record is marked
+        //deleted or does not exist, before anything is locked.
+        for (long recNo : sortedRecNos) {
+            if (!fileAccess.recordExists(recNo)) {
+                throw new RecordNotFoundException("The record " + recNo
+                        + " you are trying to lock does not exist");
+            }
+        }
+        return sortedRecNos;
+    }
+        
+    /**
+     * This private method starts the leases of a group of records once the 
+     * whole group is held.
+     *
+     * @param sortedRecNos the record numbers of the group.
+     * @param cookie the composite cookie of the group.
+     */
+    private void startLeases(long[] sortedRecNos, long cookie) {
+        long expiresAt = System.nanoTime() + this.leaseNanos;
+        for (long recNo : sortedRecNos) {
+            RecordLock recordLock = this.getRecordLock(recNo);
+            recordLock.guard.lock();
+            try {
+                if (recordLock.cookie != null && recordLock.cookie == cookie) {
+                    recordLock.leasePending = false;
+                    recordLock.expiresAt = expiresAt;
+                }
+            } finally {
+                recordLock.guard.unlock();
+            }
+        }
+    }
+    
+    /**
+     * This private method releases the first records of a group that could 
+     * not be locked in full.
+     *
+     * @param sortedRecNos the record numbers of the group.
+     * @param count the number of records that were locked.
+     * @param cookie the composite cookie of the group.
+     */
+    private void releaseGroup(long[] sortedRecNos, int count, long cookie) {
+        for (int i = 0; i < count; i++) {
+            RecordLock recordLock = this.getRecordLock(sortedRecNos[i]);
+            recordLock.guard.lock();
+            try {
+                if (recordLock.cookie != null && recordLock.cookie == cookie) {
+                    this.releaseLock(recordLock);
+                }
+            } finally {
+                recordLock.guard.unlock();
+            }
+        }
+    }
+    
+    /**
+     * This method unlocks a group of records locked by
+     * <code>lockRecords()</code>.  Every record is checked before any is
+     * released, so either the whole group is unlocked or none of it is.
+     *
+     * @param recNos the record numbers to be unlocked.
+     * @param cookie the composite cookie obtained from locking the records.
+     * @throws SecurityException thrown if any record is not locked with the
+     * composite cookie.
+     */
+    public void unlockRecords(long[] recNos, long cookie)
+            throws SecurityException {
+        long[] sortedRecNos = RecordLockingManager.sortedGroup(recNos);
+        for (long recNo : sortedRecNos) {
+            if (!this.isCorrectClient(recNo, cookie)) {
+                throw new SecurityException("The record " + recNo
+                        + " you are trying to unlock has been locked "
+                        + "by another client.");
+            }
+        }
+        for (long recNo : sortedRecNos) {
+            this.unlock(recNo, cookie);
+        }
+    }
+    
+    /**
+     * This private method checks a timeout given by a client, which must 
+     * not be negative.
+     *
+     * @param timeout the timeout in milliseconds.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    private static void checkTimeout(long timeout) {
+        if (timeout < 0l) {
+            throw new IllegalArgumentException(
+                    "The lock timeout cannot be negative: " + timeout);
+        }
+    }
+    
+    /**
+     * This private method returns a sorted copy of a group of record numbers
+     * without duplicates.
+     *
+     * @param recNos the record numbers of the group.
+     * @return the distinct record numbers in ascending order.
+     * @throws IllegalArgumentException if the group is empty.
+     */
+    private static long[] sortedGroup(long[] recNos) {
+        if (recNos.length == 0) {
+            throw new IllegalArgumentException("No records to lock.");
+        }
+        long[] sortedRecNos = recNos.clone();
+        Arrays.sort(sortedRecNos);
+        int distinct = 1;
+        for (int i = 1; i < sortedRecNos.length; i++) {
+            if (sortedRecNos[i] != sortedRecNos[distinct - 1]) {
+                sortedRecNos[distinct++] = sortedRecNos[i];
+            }
+        }
+        return Arrays.copyOf(sortedRecNos, distinct);
+    }
+    
+    /**
+     * This private method returns the <code>RecordLock</code> entry of a
+     * record, creating it if the record has never been locked.
+     *
+     * @param recNo the record number.
+     * @return the records entry.
+     */
+    private RecordLock getRecordLock(long recNo) {
+        RecordLock recordLock = RecordLockingManager.recordLocks.get(recNo);
+        if (recordLock == null) {
+            //Another thread may create the entry at the same time, in which
+            //case its entry is used.
+            RecordLock newRecordLock = new RecordLock(recNo);
+            recordLock = RecordLockingManager.recordLocks.putIfAbsent(
+                    recNo, newRecordLock);
+            if (recordLock == null) {
+                recordLock = newRecordLock;
+            }
+        }
+        return recordLock;
+    }
+    
+    /**
+     * This private method locks the record with a given cookie and a new
+     * lease.  It must be called while holding the entries guard.
+     *
+     * @param recordLock the entry of the contractor record to be reserved.
+     * @param owner the <code>Data</code> instance the lock is taken through.
+     * @param clientCookie the cookie to lock the record with.
+     * @param waitStart the <code>System.nanoTime()</code> the lock was asked
+     * for.
+     * @return the clients cookie.
+     */
+    private long grantLock(RecordLock recordLock, Object owner,
+            long clientCookie, long waitStart) {
+        long now = System.nanoTime();
+        recordLock.cookie = clientCookie;
+        recordLock.owner = owner;
+        recordLock.grantedAt = now;
+        recordLock.expiresAt = now + this.leaseNanos;
+        RecordLockingManager.statistics.lockGranted(
+                recordLock.recNo, now - waitStart);
+        return clientCookie;
     }
     
     /**
-     * This method unlocks the record if the client is the same client that had 
+     * This private method releases a record and hands it over to the oldest
+     * request in its queue, whether a waiting thread or an asynchronous
+     * request.  It must be called while holding the entries guard.
+     *
+     * @param recordLock the entry of the record to be released.
+     */
+    private void releaseLock(RecordLock recordLock) {
+        RecordLockingManager.statistics.lockReleased(recordLock.recNo,
+                System.nanoTime() - recordLock.grantedAt);
+        recordLock.cookie = null;
+        recordLock.owner = null;
+        recordLock.leasePending = false;
+        this.handOverLock(recordLock);
+    }
+    
+    /**
+     * This private method hands a just released record over to the oldest
+     * request in its queue that has not been cancelled.  A cancelled request 
+     * is dropped before anything is granted to it, so it is never counted as 
+     * a lock.  It must be called while holding the entries guard.
+     *
+     * @param recordLock the entry of the record that has just been released.
+     */
+    private void handOverLock(RecordLock recordLock) {
+        PendingLock request = recordLock.waiters.poll();
+        while (request != null) {
+            RecordLockingManager.statistics.waitEnded(recordLock.recNo);
+            if (request.grant(request.cookie)) {
+                this.grantLock(recordLock, request.owner, request.cookie, 
+                        request.requestedAt);
+                
+                //Wakes the thread the record has been handed to, if the 
+                //request is a waiting thread.
+                if (request.handedOver != null) {
+                    request.handedOver.signal();
+                }
+                return;
+            }
+            request = recordLock.waiters.poll();
+        }
+    }
+    
+    /**
+     * This method unlocks the record if the client is the same client that had
      * originally locked the record with the same client cookie.
-     * 
+     *
      * @param recNo the record number to be unlocked.
      * @param cookie the client cookie obtained from locking a record.
-     * @throws SecurityException thrown if the client cookie is not the same as 
+     * @throws SecurityException thrown if the client cookie is not the same as
      * the client cookie obtained when record was locked.
      */
     public void unlock(long recNo, long cookie) throws SecurityException {
-        //Synchonized so only one thread can access this block at one time.
-        synchronized(RecordLockingManager.lockedRecords) {
-            //Retrieves the records cookie and checks that it is the same a 
-            //the cookie used to unlock the record.
-            Long clientCookie = RecordLockingManager.lockedRecords.get(recNo);
-            if (clientCookie == null || clientCookie != cookie) {
+        RecordLock recordLock = RecordLockingManager.recordLocks.get(recNo);
+        if (recordLock == null) {
+            throw new SecurityException(
+                    "The record you are trying to unlock has been locked "
+                    + "by another client.");
+        }
+        recordLock.guard.lock();
+        try {
+            //Checks that the records cookie is the same a the cookie used to
+            //unlock the record.
+            if (recordLock.cookie == null || recordLock.cookie != cookie) {
                 throw new SecurityException(
                         "The record you are trying to unlock has been locked "
                         + "by another client.");
-            } else {
-                //Removes the HashMap element to indicate the lock has been 
-                //released and notifies all other threads to retry for the 
-                //desired resources.
-                RecordLockingManager.lockedRecords.remove(recNo);
-                RecordLockingManager.lockedRecords.notifyAll();
             }
+            
+            //Clears the cookie to indicate the lock has been released and
+            //passes the record on to the next waiting client.
+            this.releaseLock(recordLock);
+        } finally {
+            recordLock.guard.unlock();
         }
     }
     
     /**
-     * This method checks that the client had locked a record by checking its
-     * locking cookie with the one stored in this HashMap related to the record 
-     * number.
+     * This method sets the Owner field of a record if it still holds the 
+     * expected owner, without the client taking a lock.  The records entry is 
+     * guarded while the owner is checked and set, so no lock can be granted in
+     * between, and the record is refused if a client already holds it.
      * 
+     * @param recNo the record number.
+     * @param expectedOwner the owner the record must hold.
+     * @param newOwner the owner to be set.
+     * @param fileAccess the fileAcces object used to update the record.
+     * @return true if the owner was set, false if the record held a different
+     * owner.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     * @throws SecurityException if the record is locked by a client.
+     * @throws IllegalArgumentException if the new owner is null or longer 
+     * than the Owner field.
+     */
+    public boolean compareAndSetOwner(long recNo, String expectedOwner, 
+            String newOwner, DatabaseFileAccess fileAccess) 
+            throws RecordNotFoundException, SecurityException {
+        //Thows a RecordNotFoundException exception if the record is marked
+        //deleted or does not exist, before its entry is created, so that 
+        //record numbers sent by a client cannot fill the map with entries.
+        if (!fileAccess.recordExists(recNo)) {
+            throw new RecordNotFoundException(
+                    "The record you are trying to book does not exist");
+        }
+        
+        RecordLock recordLock = this.getRecordLock(recNo);
+        recordLock.guard.lock();
+        try {
+            if (recordLock.cookie != null) {
+                throw new SecurityException(
+                        "The record is locked by another client.");
+            }
+            return fileAccess.compareAndSetOwner(
+                    recNo, expectedOwner, newOwner);
+        } finally {
+            recordLock.guard.unlock();
+        }
+    }
+    
+    /**
+     * This method renews the lease of a lock, so that a client needing a
+     * record for longer than the lease time can keep it.
+     *
+     * @param recNo the record number to be renewed.
+     * @param cookie the client cookie obtained from locking a record.
+     * @throws SecurityException thrown if the record is not locked with the
+     * client cookie, e.g. because its lease has already run out.
+     */
+    public void renewLock(long recNo, long cookie) throws SecurityException {
+        RecordLock recordLock = RecordLockingManager.recordLocks.get(recNo);
+        if (recordLock == null) {
+            throw new SecurityException(
+                    "The record you are trying to renew is not locked by "
+                    + "this client.");
+        }
+        recordLock.guard.lock();
+        try {
+            if (!this.isHeldWith(recordLock, cookie)) {
+                throw new SecurityException(
+                        "The record you are trying to renew is not locked by "
+                        + "this client.");
+            }
+            recordLock.expiresAt = System.nanoTime() + this.leaseNanos;
+        } finally {
+            recordLock.guard.unlock();
+        }
+    }
+    
+    /**
+     * This method releases every lock held by an owner and withdraws its
+     * queued asynchronous requests.  It is called when the owners connection
+     * closes so that its records are freed immediately.
+     *
+     * @param owner the <code>Data</code> instance the locks were taken
+     * through.
+     */
+    public void releaseLocks(Object owner) {
+        for (RecordLock recordLock
+                : RecordLockingManager.recordLocks.values()) {
+            recordLock.guard.lock();
+            try {
+                //Cancels the owners queued asynchronous requests so they are 
+                //never handed the record.
+                Iterator<PendingLock> requests
+                        = recordLock.waiters.iterator();
+                while (requests.hasNext()) {
+                    PendingLock request = requests.next();
+                    if (request.owner == owner && request.handedOver == null) {
+                        requests.remove();
+                        RecordLockingManager.statistics.waitEnded(
+                                recordLock.recNo);
+                        request.cancel(false);
+                    }
+                }
+                if (recordLock.cookie != null && recordLock.owner == owner) {
+                    this.releaseLock(recordLock);
+                }
+            } finally {
+                recordLock.guard.unlock();
+            }
+        }
+    }
+    
+    /**
+     * This private method is run by the reaper.  It releases every lock whose
+     * lease has run out, passing the record on to the next waiting client.
+     */
+    private void reapExpiredLocks() {
+        long now = System.nanoTime();
+        for (RecordLock recordLock
+                : RecordLockingManager.recordLocks.values()) {
+            recordLock.guard.lock();
+            try {
+                if (recordLock.cookie != null && !recordLock.leasePending
+                        && now - recordLock.expiresAt >= 0l) {
+                    this.releaseLock(recordLock);
+                }
+            } finally {
+                recordLock.guard.unlock();
+            }
+        }
+    }
+    
+    /**
+     * This private method checks that a record is locked with a cookie and
+     * that its lease has not run out.  It must be called while holding the
+     * entries guard.
+     *
+     * @param recordLock the entry of the record in question.
+     * @param cookie the cookie the client has submitted for check.
+     * @return true if the record is held with the cookie.
+     */
+    private boolean isHeldWith(RecordLock recordLock, long cookie) {
+        return recordLock.cookie != null && recordLock.cookie == cookie
+                && (recordLock.leasePending 
+                || System.nanoTime() - recordLock.expiresAt < 0l);
+    }
+    
+    /**
+     * This method checks that the client had locked a record by checking its
+     * locking cookie with the one stored in the records entry.
+     *
      * @param recNo the record number in question.
      * @param clientCookie the cookie the client has submitted for check.
-     * @return true if the cookies are the same and false if not.
+     * @return true if the cookies are the same and false if not, or if the
+     * record is not locked or its lease has run out.
      */
     public boolean isCorrectClient(long recNo, long clientCookie) {
-        //Retrieves the cookie from the HashMap and checks if the submitted one
-        //matches the stores one.
-        long cookie = RecordLockingManager.lockedRecords.get(recNo);
-        if (cookie == clientCookie) {
-            return true;
-        } else {
+        RecordLock recordLock = RecordLockingManager.recordLocks.get(recNo);
+        if (recordLock == null) {
             return false;
         }
+        recordLock.guard.lock();
+        try {
+            return this.isHeldWith(recordLock, clientCookie);
+        } finally {
+            recordLock.guard.unlock();
+        }
+    }
+    
+    /**
+     * The lock entry of a single record.
+     */
+    private static class RecordLock {
+        
+        /**
+         * The number of the record.
+         */
+        private final long recNo;
+        
+        /**
+         * Guards the entry.
+         */
+        private final ReentrantLock guard = new ReentrantLock();
+        
+        /**
+         * The cookie of the client holding the record, or null if the record
+         * is free.
+         */
+        private Long cookie;
+        
+        /**
+         * The <code>Data</code> instance holding the record, or null if the
+         * record is free.
+         */
+        private Object owner;
+        
+        /**
+         * The <code>System.nanoTime()</code> at which the lease runs out.
+         */
+        private long expiresAt;
+        
+        /**
+         * True while the record is held as part of a group that is still 
+         * being locked, so its lease has not started yet.
+         */
+        private boolean leasePending;
+        
+        /**
+         * The <code>System.nanoTime()</code> at which the lock was granted.
+         */
+        private long grantedAt;
+        
+        /**
+         * The waiting threads and asynchronous lock requests queued for the
+         * record, in the order they were made.
+         */
+        private final Queue<PendingLock> waiters
+                = new LinkedList<PendingLock>();
+        
+        /**
+         * Creates the entry of a record.
+         *
+         * @param recNo the number of the record.
+         */
+        RecordLock(long recNo) {
+            this.recNo = recNo;
+        }
+        
+    }
+    
+    /**
+     * A lock request queued for a record, either by a waiting thread or 
+     * asynchronously.  It is a <code>CallbackFuture</code> that is never run, 
+     * instead it is completed directly by the <code>RecordLockingManager</code> 
+     * when the lock is granted, which hands its callbacks to the callback 
+     * executor rather than running them under the entries guard.
+     */
+    private static class PendingLock extends CallbackFuture<Long> {
+        
+        /**
+         * The <code>Data</code> instance the lock is requested through.
+         */
+        private final Object owner;
+        
+        /**
+         * The cookie the record is locked with when it is handed over.
+         */
+        private final long cookie;
+        
+        /**
+         * The condition the requesting thread waits on, or null if the 
+         * request is asynchronous.
+         */
+        private final Condition handedOver;
+        
+        /**
+         * The <code>System.nanoTime()</code> at which the lock was requested.
+         */
+        private final long requestedAt = System.nanoTime();
+        
+        /**
+         * Creates a request that can only be completed by <code>grant()</code>,
+         * <code>fail()</code> or being cancelled.
+         *
+         * @param owner the <code>Data</code> instance the lock is requested
+         * through.
+         * @param cookie the cookie to lock the record with.
+         * @param handedOver the condition the requesting thread waits on, or 
+         * null if the request is asynchronous.
+         * @param callbackExecutor the executor that runs the callbacks, or 
+         * null if the request is not asynchronous and so has none.
+         */
+        PendingLock(Object owner, long cookie, Condition handedOver, 
+                Executor callbackExecutor) {
+            super(new Callable<Long>() {
+                
+                @Override
+                public Long call() {
+                    return null;
+                }
+                
+            }, callbackExecutor);
+            this.owner = owner;
+            this.cookie = cookie;
+            this.handedOver = handedOver;
+        }
+        
+        /**
+         * Completes the request with the lock cookie, unless it has already 
+         * been cancelled.
+         *
+         * @param cookie the clients cookie.
+         * @return false if the request had already been cancelled.
+         */
+        boolean grant(long cookie) {
+            this.set(cookie);
+            return !this.isCancelled();
+        }
+        
+        /**
+         * Completes the request with an exception.
+         *
+         * @param ex the exception to be thrown by <code>get()</code>.
+         */
+        void fail(Exception ex) {
+            this.setException(ex);
+        }
+        
     }
     
 }
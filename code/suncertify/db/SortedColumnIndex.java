@@ -0,0 +1,149 @@
+package suncertify.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * This is the worker class that holds a numeric field of every valid record as
+ * a primitive column, together with a sorted index of the values so that range
+ * queries (e.g. rate at most $80.00) only visit the matching records.<br/><br/>
+ *
+ * The column is a <code>long[]</code> indexed by record number, as record
+ * numbers are small and dense.  The index is a <code>TreeMap</code> from each
+ * value to the record numbers holding it.<br/><br/>
+ *
+ * This class is not thread safe, it is guarded by the
+ * <code>DatabaseFileAccess</code> read / write lock.  Note: that since this
+ * should only be used by the DatabaseFileAccess class, the class has been set
+ * to have default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class SortedColumnIndex {
+    
+    /**
+     * The initial number of record slots in the column.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    
+    /**
+     * The decoded value of every record, indexed by record number.  Records
+     * without a value hold <code>Contractor.NO_VALUE</code>.
+     */
+    private long[] column = new long[SortedColumnIndex.INITIAL_CAPACITY];
+    
+    /**
+     * The record numbers holding each value, ordered by value.
+     */
+    private final TreeMap<Long, Set<Long>> index = new TreeMap<Long, Set<Long>>();
+    
+    /**
+     * Creates an empty index.
+     */
+    SortedColumnIndex() {
+        Arrays.fill(this.column, Contractor.NO_VALUE);
+    }
+    
+    /**
+     * Stores the value of a record, replacing any previous value.  A value of
+     * <code>Contractor.NO_VALUE</code> removes the record from the index.
+     *
+     * @param recNo the record number (file position).
+     * @param value the decoded field value.
+     */
+    void put(long recNo, long value) {
+        this.remove(recNo);
+        if (value == Contractor.NO_VALUE) {
+            return;
+        }
+        
+        //Grows the column to fit the record number if needed.
+        if (recNo >= this.column.length) {
+            int oldLength = this.column.length;
+            this.column = Arrays.copyOf(this.column,
+                    (int) Math.max(recNo + 1, oldLength * 2));
+            Arrays.fill(this.column, oldLength, this.column.length,
+                    Contractor.NO_VALUE);
+        }
+        this.column[(int) recNo] = value;
+        
+        Set<Long> recNos = this.index.get(value);
+        if (recNos == null) {
+            recNos = new TreeSet<Long>();
+            this.index.put(value, recNos);
+        }
+        recNos.add(recNo);
+    }
+    
+    /**
+     * Removes a record from the index.
+     *
+     * @param recNo the record number (file position).
+     */
+    void remove(long recNo) {
+        long value = this.get(recNo);
+        if (value == Contractor.NO_VALUE) {
+            return;
+        }
+        this.column[(int) recNo] = Contractor.NO_VALUE;
+        
+        Set<Long> recNos = this.index.get(value);
+        recNos.remove(recNo);
+        if (recNos.isEmpty()) {
+            this.index.remove(value);
+        }
+    }
+    
+    /**
+     * Returns the value of a record.
+     *
+     * @param recNo the record number (file position).
+     * @return the value or <code>Contractor.NO_VALUE</code> if the record has
+     * none.
+     */
+    long get(long recNo) {
+        if (recNo < 0 || recNo >= this.column.length) {
+            return Contractor.NO_VALUE;
+        }
+        return this.column[(int) recNo];
+    }
+    
+    /**
+     * Returns the record numbers whose value lies between the two bounds
+     * inclusive, ordered by value and then by record number.
+     *
+     * @param minimum the lowest value to match.
+     * @param maximum the highest value to match.
+     * @return the matching record numbers.
+     */
+    List<Long> findRange(long minimum, long maximum) {
+        List<Long> recNos = new ArrayList<Long>();
+        if (minimum > maximum) {
+            return recNos;
+        }
+        for (Map.Entry<Long, Set<Long>> entry
+                : this.index.subMap(minimum, true, maximum, true).entrySet()) {
+            recNos.addAll(entry.getValue());
+        }
+        return recNos;
+    }
+    
+    /**
+     * Returns the record numbers holding each value, in ascending order of 
+     * value, so a caller can stop walking the index once it has enough 
+     * records.
+     *
+     * @return the record numbers grouped by value, ordered by value.
+     */
+    Collection<Set<Long>> valuesInOrder() {
+        return this.index.values();
+    }
+    
+}
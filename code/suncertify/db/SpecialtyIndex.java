@@ -0,0 +1,139 @@
+package suncertify.db;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This is the worker class that holds an inverted index of the Specialties
+ * field.  The field is a comma separated list of types of work (e.g.
+ * "Roofing, Electrical, Painting"), so each type of work is indexed as its own
+ * token, mapped to a <code>BitSet</code> of the valid records offering it.
+ * This lets a search find every contractor offering a type of work wherever it
+ * appears in the list.<br/><br/>
+ *
+ * Tokens are compared ignoring case and surrounding white space.  This class
+ * is not thread safe, it is guarded by the <code>DatabaseFileAccess</code>
+ * read / write lock.  Note: that since this should only be used by the
+ * DatabaseFileAccess class, the class has been set to have default access.
+ *
+ * @author Robert Black
+ * @version 1.0
+ */
+class SpecialtyIndex {
+    
+    /**
+     * The character separating the types of work in the Specialties field.
+     */
+    private static final String SEPARATOR = ",";
+    
+    /**
+     * A <code>HashMap</code> from each normalised type of work to the record
+     * numbers offering it.
+     */
+    private final Map<String, BitSet> index = new HashMap<String, BitSet>();
+    
+    /**
+     * Adds a record to the index under each type of work in its Specialties
+     * field.
+     *
+     * @param recNo the record number (file position).
+     * @param specialties the Specialties field.
+     */
+    void add(long recNo, String specialties) {
+        for (String token : SpecialtyIndex.tokenize(specialties)) {
+            BitSet recNos = this.index.get(token);
+            if (recNos == null) {
+                recNos = new BitSet();
+                this.index.put(token, recNos);
+            }
+            recNos.set((int) recNo);
+        }
+    }
+    
+    /**
+     * Removes a record from the index under each type of work in its
+     * Specialties field.
+     *
+     * @param recNo the record number (file position).
+     * @param specialties the Specialties field the record was indexed with.
+     */
+    void remove(long recNo, String specialties) {
+        for (String token : SpecialtyIndex.tokenize(specialties)) {
+            BitSet recNos = this.index.get(token);
+            if (recNos != null) {
+                recNos.clear((int) recNo);
+                if (recNos.isEmpty()) {
+                    this.index.remove(token);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the records offering the given types of work.
+     *
+     * @param specialties the types of work to look for.
+     * @param matchAll true if a record must offer every type of work, false if
+     * offering any one of them is enough.
+     * @return a new <code>BitSet</code> of the matching record numbers.
+     */
+    BitSet find(String[] specialties, boolean matchAll) {
+        BitSet matches = null;
+        for (String specialty : specialties) {
+            if (specialty == null || specialty.trim().equals("")) {
+                continue;
+            }
+            BitSet recNos = this.index.get(SpecialtyIndex.normalise(specialty));
+            if (recNos == null) {
+                recNos = new BitSet();
+            }
+            
+            //The first type of work starts the result, the rest are combined
+            //into it.
+            if (matches == null) {
+                matches = (BitSet) recNos.clone();
+            } else if (matchAll) {
+                matches.and(recNos);
+            } else {
+                matches.or(recNos);
+            }
+        }
+        return (matches == null) ? new BitSet() : matches;
+    }
+    
+    /**
+     * Splits a Specialties field into its normalised types of work.
+     *
+     * @param specialties the Specialties field.
+     * @return the types of work, without any empty entries.
+     */
+    static String[] tokenize(String specialties) {
+        if (specialties == null) {
+            return new String[0];
+        }
+        String[] tokens = specialties.split(SpecialtyIndex.SEPARATOR);
+        int count = 0;
+        for (String token : tokens) {
+            String normalised = SpecialtyIndex.normalise(token);
+            if (!normalised.equals("")) {
+                tokens[count++] = normalised;
+            }
+        }
+        String[] result = new String[count];
+        System.arraycopy(tokens, 0, result, 0, count);
+        return result;
+    }
+    
+    /**
+     * Normalises a type of work so that it can be compared.
+     *
+     * @param specialty the type of work.
+     * @return the type of work trimmed and in lower case.
+     */
+    static String normalise(String specialty) {
+        return specialty.trim().toLowerCase(Locale.ENGLISH);
+    }
+    
+}
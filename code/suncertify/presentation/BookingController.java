@@ -1,6 +1,7 @@
 package suncertify.presentation;
 
 import suncertify.business.RecordAlreadyBookedException;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.SecurityException;
 
@@ -42,10 +43,12 @@ public interface BookingController {
      * than lockCookie.
      * @throws RecordAlreadyBookedException if the record already has a customer 
      * number stored in the owner field i.e. already booked.
+     * @throws LockTimeoutException if another client holds the record for 
+     * too long.
      */
     void handleBookContractorGesture(long recNo, String custNo) 
             throws RecordNotFoundException, SecurityException, 
-            RecordAlreadyBookedException;
+            RecordAlreadyBookedException, LockTimeoutException;
     
     /**
      * A method that handles a user gesture called by the BookingView in 
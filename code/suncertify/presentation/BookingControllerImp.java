@@ -1,6 +1,7 @@
 package suncertify.presentation;
 
 import suncertify.business.RecordAlreadyBookedException;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.SecurityException;
 
@@ -75,11 +76,13 @@ public class BookingControllerImp implements BookingController {
      * than lockCookie.
      * @throws RecordAlreadyBookedException if the record already has a customer 
      * number stored in the owner field i.e. already booked.
+     * @throws LockTimeoutException if another client holds the record for 
+     * too long.
      */
     @Override
     public void handleBookContractorGesture(long recNo, String custNo) 
             throws RecordNotFoundException, SecurityException, 
-            RecordAlreadyBookedException {
+            RecordAlreadyBookedException, LockTimeoutException {
         model.bookContractor(recNo, custNo);
     }
 
@@ -1,8 +1,10 @@
 package suncertify.presentation;
 
 import java.util.Map;
+import suncertify.business.BookingOutcome;
 import suncertify.business.RecordAlreadyBookedException;
 import suncertify.db.Contractor;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.SecurityException;
 
@@ -54,6 +56,44 @@ public interface BookingModel {
     Map<Long, Contractor> searchContractors(String name, String location) 
             throws RecordNotFoundException;
     
+    /**
+     * A method that will call the <code>BookingBusinessAdapter</code> to 
+     * search for at most <code>limit</code> records matching the criteria, 
+     * sorted on the server in ascending order of the sort field (e.g. the 20 
+     * cheapest contractors in a city).  Records are returned as a 
+     * <code>LinkedHashMap</code> in sorted order with the field titles record 
+     * 0 first, and listeners are notified.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param sortField the field to sort on, one of 
+     * <code>Contractor.NAME_FIELD_INDEX</code>, 
+     * <code>Contractor.SIZE_FIELD_INDEX</code> or 
+     * <code>Contractor.RATE_FIELD_INDEX</code>.
+     * @param limit the largest number of contractors to return.
+     * @return a <code>LinkedHashMap<Contractors, Long></code> of records numbers 
+     * and <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    Map<Long, Contractor> searchContractors(String name, String location, 
+            int sortField, int limit) throws RecordNotFoundException;
+    
+    /**
+     * A method that will call the <code>BookingBusinessAdapter</code> to find 
+     * the contractors booked by a customer, e.g. when a customer calls about 
+     * their existing bookings.  Records are returned as with 
+     * <code>searchContractors()</code> and listeners are notified.
+     * 
+     * @param custNo the eight digit customer id.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    Map<Long, Contractor> getCustomerBookings(String custNo) 
+            throws RecordNotFoundException;
+    
     /**
      * A method that handles a call from the <code>BookingController</code> that 
      * will call the <code>BookingBusinessAdapter</code> to book the contractor 
@@ -67,10 +107,24 @@ public interface BookingModel {
      * than lockCookie.
      * @throws RecordAlreadyBookedException if the record already has a customer 
      * number
+     * @throws LockTimeoutException if another client holds the record for 
+     * too long.
      */
     void bookContractor(long recNo, String custNo) 
             throws RecordNotFoundException, SecurityException, 
-            RecordAlreadyBookedException;
+            RecordAlreadyBookedException, LockTimeoutException;
+    
+    /**
+     * A method that will call the <code>BookingBusinessAdapter</code> to book 
+     * a batch of contractors in one call, then refreshes the display once.
+     * 
+     * @param bookings the eight digit customer id to book each record number 
+     * (file position) for.
+     * @return the outcome of each booking, in the order of the bookings.
+     * @throws RecordNotFoundException if the display cannot be refreshed.
+     */
+    Map<Long, BookingOutcome> bookContractors(Map<Long, String> bookings) 
+            throws RecordNotFoundException;
     
     /**
      * This method checks to see if a contractor has already been booked and 
@@ -5,8 +5,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import suncertify.business.BookingBusinessAdapter;
+import suncertify.business.BookingOutcome;
 import suncertify.business.RecordAlreadyBookedException;
 import suncertify.db.Contractor;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.SecurityException;
 
@@ -42,6 +44,21 @@ public class BookingModelImp implements BookingModel {
      * Holds the cached location search criteria.
      */
     private String location;
+    
+    /**
+     * Holds the cached sort field of a sorted search.
+     */
+    private int sortField;
+    
+    /**
+     * Holds the cached limit of a sorted search.
+     */
+    private int limit;
+    
+    /**
+     * True if the cached search is a sorted search.
+     */
+    private boolean sorted;
 
     /**
      * the constructor takes a <code>BookingBusinessAdapter</code> and 
@@ -97,30 +114,76 @@ public class BookingModelImp implements BookingModel {
     @Override
     public Map<Long, Contractor> searchContractors(String name, String location) 
             throws RecordNotFoundException {
-        //This is populated with the searched contractors useing the Data file.
-        Map<Long, Contractor> contractors = new HashMap<Long, Contractor>();
-        
         //updates the name and location cache.
         this.name = name;
         this.location = location;
+        this.sorted = false;
         
-        //Creates a filter so the contractors become matched exatly to the 
-        //search criteria.
-        SearchRecordsExactFilter filterContractors 
-                = new SearchRecordsExactFilter(this.name, this.location);
+        //Returns the contractors exactly matching the search criteria, 
+        //matched by the database.
+        Map<Long, Contractor> contractors = this.bookingAdapter
+                .searchContractors(this.name, this.location, true);
         
-        //Returns the unfiltered search with records that begin with the search 
-        //criteria.
-        contractors 
-                = this.bookingAdapter.searchContractors(this.name, this.location);
+        //Notifies all listeners
+        this.fireChangeEvent(contractors);
+        
+        //Returns the Map<Long, Contractor>
+        return contractors;
+    }
+
+    /**
+     * A method that will call the <code>BookingBusinessAdapter</code> to 
+     * search for at most <code>limit</code> records matching the criteria, 
+     * sorted in ascending order of the sort field, and notifies all listeners.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param sortField the Name, Size or Rate field position.
+     * @param limit the largest number of contractors to return.
+     * @return a <code>LinkedHashMap<Contractors, Long></code> of records numbers 
+     * and <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public Map<Long, Contractor> searchContractors(String name, String location, 
+            int sortField, int limit) throws RecordNotFoundException {
+        //updates the search cache.
+        this.name = name;
+        this.location = location;
+        this.sortField = sortField;
+        this.limit = limit;
+        this.sorted = true;
         
-        //Filters the records.
-        contractors = filterContractors.filterResults(contractors);
+        //Returns the sorted search of exact matches, so the limit counts only 
+        //contractors that match.
+        Map<Long, Contractor> contractors = this.bookingAdapter
+                .searchContractors(this.name, this.location, true, 
+                this.sortField, this.limit);
         
         //Notifies all listeners
         this.fireChangeEvent(contractors);
+        return contractors;
+    }
+
+    /**
+     * A method that will call the <code>BookingBusinessAdapter</code> to find 
+     * the contractors booked by a customer and notifies all listeners.
+     * 
+     * @param custNo the eight digit customer id.
+     * @return a <code>HashMap<Contractors, Long></code> of records numbers and 
+     * <code>Contractor</code> objects.
+     * @throws RecordNotFoundException if the record is deleted or doesn't 
+     * exist.
+     */
+    @Override
+    public Map<Long, Contractor> getCustomerBookings(String custNo) 
+            throws RecordNotFoundException {
+        Map<Long, Contractor> contractors 
+                = this.bookingAdapter.getCustomerBookings(custNo);
         
-        //Returns the filtered Map<Long, Contractor>
+        //Notifies all listeners
+        this.fireChangeEvent(contractors);
         return contractors;
     }
 
@@ -137,15 +200,36 @@ public class BookingModelImp implements BookingModel {
      * than lockCookie.
      * @throws RecordAlreadyBookedException if the record already has a customer 
      * number
+     * @throws LockTimeoutException if another client holds the record for 
+     * too long.
      */
     @Override
     public void bookContractor(long recNo, String custNo) 
             throws RecordNotFoundException, SecurityException, 
-            RecordAlreadyBookedException {
+            RecordAlreadyBookedException, LockTimeoutException {
         this.bookingAdapter.bookContractor(recNo, custNo);
         this.refeshDisplay();
     }
 
+    /**
+     * A method that will call the <code>BookingBusinessAdapter</code> to book 
+     * a batch of contractors in one call, then refreshes the display once for 
+     * the whole batch.
+     * 
+     * @param bookings the eight digit customer id to book each record number 
+     * (file position) for.
+     * @return the outcome of each booking, in the order of the bookings.
+     * @throws RecordNotFoundException if the display cannot be refreshed.
+     */
+    @Override
+    public Map<Long, BookingOutcome> bookContractors(
+            Map<Long, String> bookings) throws RecordNotFoundException {
+        Map<Long, BookingOutcome> outcomes 
+                = this.bookingAdapter.bookContractors(bookings);
+        this.refeshDisplay();
+        return outcomes;
+    }
+
     /**
      * This method checks to see if a contractor has already been booked and 
      * sends a signal to the view so it can decided on the appropriate action.
@@ -199,7 +283,12 @@ public class BookingModelImp implements BookingModel {
             throws RecordNotFoundException {
         //Create a HashMap to hold searches contractor records.
         Map<Long, Contractor> contractors = new HashMap<Long, Contractor>();
-        contractors = this.searchContractors(this.name, this.location);
+        if (this.sorted) {
+            contractors = this.searchContractors(
+                    this.name, this.location, this.sortField, this.limit);
+        } else {
+            contractors = this.searchContractors(this.name, this.location);
+        }
         
         //Notifies listeners with an updated HashMap.
         this.fireChangeEvent(contractors);
@@ -1,16 +1,20 @@
 package suncertify.presentation;
 
 import suncertify.business.network.commands.BookContractorCommand;
+import suncertify.business.network.commands.BookContractorsCommand;
 import suncertify.business.network.commands.CheckContractorBookedCommand;
 import suncertify.business.network.commands.Command;
+import suncertify.business.network.commands.GetCustomerBookingsCommand;
 import suncertify.business.network.commands.GetSearchResultsCommand;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import suncertify.business.BookingOutcome;
 import suncertify.business.RecordAlreadyBookedException;
 import suncertify.business.network.client.BookingNwClient;
 import suncertify.db.Contractor;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 
 /**
@@ -40,6 +44,21 @@ public class BookingModelNwImp implements BookingModel {
      */
     private String location;
     
+    /**
+     * Stores the sort field of the last sorted search.
+     */
+    private int sortField;
+    
+    /**
+     * Stores the limit of the last sorted search.
+     */
+    private int limit;
+    
+    /**
+     * True if the last search entered was a sorted search.
+     */
+    private boolean sorted;
+    
     /**
      * Holds an instance of a <code>BookingNwClient</code> object.  The network 
      * client.
@@ -91,34 +110,67 @@ public class BookingModelNwImp implements BookingModel {
      * than lockCookie.
      */
     @Override
-    @SuppressWarnings("unchecked")
     public Map<Long, Contractor> searchContractors(String name, String location) 
             throws RecordNotFoundException, SecurityException {
-        //Create a HashMap to hold searches contractor records.
-        Map<Long, Contractor> contractors = new HashMap<Long, Contractor>();
-        
         //Updates the cached name and location search criteria.
         this.name = name;
         this.location = location;
+        this.sorted = false;
         
-        //Creates a filter so the contractors become matched exatly to the 
-        //search criteria.
-        SearchRecordsExactFilter filterContractors 
-                = new SearchRecordsExactFilter(this.name, this.location);
+        //Sends the search to the server.
+        return this.sendSearch(new GetSearchResultsCommand(name, location));
+    }
+
+    /**
+     * This method creates an ordered Map of the record numbers and at most 
+     * <code>limit</code> contractor records sorted on the server in ascending 
+     * order of the sort field, then notifies all listeners as well as 
+     * returning the Map.
+     * 
+     * @param name the name search criteria.
+     * @param location the location search criteria.
+     * @param sortField the Name, Size or Rate field position.
+     * @param limit the largest number of contractors to return.
+     * @return the LinkedHashMap with the search results.
+     * @throws RecordNotFoundException if the record is deleted or doesn't exist.
+     */
+    @Override
+    public Map<Long, Contractor> searchContractors(String name, String location, 
+            int sortField, int limit) throws RecordNotFoundException {
+        //Updates the cached search criteria.
+        this.name = name;
+        this.location = location;
+        this.sortField = sortField;
+        this.limit = limit;
+        this.sorted = true;
         
-        //Creates a Command  and Object variables.
-        Command cmd;
+        //Sends the search to the server.
+        return this.sendSearch(
+                new GetSearchResultsCommand(name, location, sortField, limit));
+    }
+
+    /**
+     * This private method sends a search command to the server.  The server 
+     * only returns exact matches of the criteria, in order.
+     * 
+     * @param cmd the <code>GetSearchResultsCommand</code> to send.
+     * @return the Map with the search results.
+     * @throws RecordNotFoundException if the record is deleted or doesn't exist.
+     * @throws SecurityException if the record is locked with a cookie other 
+     * than lockCookie.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, Contractor> sendSearch(Command cmd) 
+            throws RecordNotFoundException, SecurityException {
+        //Create a HashMap to hold searches contractor records.
+        Map<Long, Contractor> contractors = new HashMap<Long, Contractor>();
+        
+        //Creates an Object variable.
         Object result;
         try {
-            //Creates a GetSearchResultsCommand and sends it to the network 
-            //client.
-            cmd = new GetSearchResultsCommand(name, location);
-            this.nwClient.send(cmd);
-            
-            //Recieve the executed GetSearchResultsCommand from the network 
-            //client.
-            Object obj = BookingModelNwImp.this.nwClient.receive();
-            cmd = (Command) obj;
+            //Sends the GetSearchResultsCommand to the network client and 
+            //recieves it back executed.
+            cmd = this.nwClient.execute(cmd);
             
             //Extract the result object from the executed GetSearchResultsCommand 
             //object.  This throws and exception if the Command object holds an 
@@ -129,10 +181,7 @@ public class BookingModelNwImp implements BookingModel {
             if (result != null && result instanceof Map) {
                 contractors = (Map<Long, Contractor>) result;
                 
-                //Filters the records.
-                contractors = filterContractors.filterResults(contractors);
-                
-                //Notify all interested listeners passing the filtered HashMap.
+                //Notify all interested listeners passing the HashMap.
                 BookingModelNwImp.this.fireChangeEvent(contractors);
             }
         } catch (Exception ex) {
@@ -143,7 +192,56 @@ public class BookingModelNwImp implements BookingModel {
             }
         }
         
-        //Returns the filtered HashMap containing the searched contractors.
+        //Returns the HashMap containing the searched contractors.
+        return contractors;
+    }
+
+    /**
+     * This method creates a HashMap of record numbers and the contractor 
+     * records booked by a customer, then notifies all listeners as well as 
+     * returning the HashMap.
+     * 
+     * @param custNo the eight digit customer id.
+     * @return the HashMap with the customers bookings.
+     * @throws RecordNotFoundException if the record is deleted or doesn't exist.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Long, Contractor> getCustomerBookings(String custNo) 
+            throws RecordNotFoundException {
+        //Create a HashMap to hold the booked contractor records.
+        Map<Long, Contractor> contractors = new HashMap<Long, Contractor>();
+        
+        //Creates a Command  and Object variables.
+        Command cmd;
+        Object result;
+        try {
+            //Creates a GetCustomerBookingsCommand and sends it to the network 
+            //client.
+            cmd = new GetCustomerBookingsCommand(custNo);
+            
+            //Recieve the executed GetCustomerBookingsCommand from the network 
+            //client.
+            cmd = this.nwClient.execute(cmd);
+            
+            //Extract the result object from the executed command.  This throws 
+            //and exception if the Command object holds an exception object.
+            result = cmd.result();
+            
+            //Check the result object is not null and is a Map.
+            if (result != null && result instanceof Map) {
+                contractors = (Map<Long, Contractor>) result;
+                
+                //Notify all interested listeners passing the HashMap.
+                this.fireChangeEvent(contractors);
+            }
+        } catch (Exception ex) {
+            if (ex instanceof RecordNotFoundException) {
+                throw (RecordNotFoundException) ex;
+            }
+        }
+        
+        //Returns the HashMap containing the booked contractors.
         return contractors;
     }
 
@@ -160,11 +258,13 @@ public class BookingModelNwImp implements BookingModel {
      * than lockCookie.
      * @throws RecordAlreadyBookedException if the record already has a customer 
      * number stored in the owner field i.e. already booked.
+     * @throws LockTimeoutException if another client holds the record for 
+     * too long.
      */
     @Override
     public void bookContractor(long recNo, String custNo) 
             throws RecordNotFoundException, SecurityException, 
-            RecordAlreadyBookedException {
+            RecordAlreadyBookedException, LockTimeoutException {
         
         //Creates a Command  and Object variables.
         Command cmd;
@@ -172,10 +272,9 @@ public class BookingModelNwImp implements BookingModel {
         try {
             //Creates a BookContractorCommand and sends it to the network client.
             cmd = new BookContractorCommand(recNo, custNo);
-            nwClient.send(cmd);
             
             //Recieve the executed BookContractorCommand from the network client.
-            cmd = (Command) nwClient.receive();
+            cmd = nwClient.execute(cmd);
             
             //No expectation to have an object returned from the 
             //BookContractorCommand object but it throws and exception if the 
@@ -191,10 +290,59 @@ public class BookingModelNwImp implements BookingModel {
             if (ex instanceof RecordAlreadyBookedException) {
                 throw (RecordAlreadyBookedException) ex;
             }
+            if (ex instanceof LockTimeoutException) {
+                throw (LockTimeoutException) ex;
+            }
+        }
+        
+        //Refreshes the display in the display table.
+        this.refeshDisplay();
+    }
+
+    /**
+     * This method books a batch of contractors with a single 
+     * <code>BookContractorsCommand</code>, so the whole batch is one round 
+     * trip to the server, then refreshes the display once.
+     * 
+     * @param bookings the eight digit customer id to book each record number 
+     * (file position) for.
+     * @return the outcome of each booking, in the order of the bookings.
+     * @throws RecordNotFoundException if the display cannot be refreshed.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Long, BookingOutcome> bookContractors(
+            Map<Long, String> bookings) throws RecordNotFoundException {
+        Map<Long, BookingOutcome> outcomes 
+                = new HashMap<Long, BookingOutcome>();
+        
+        //Creates a Command  and Object variables.
+        Command cmd;
+        Object result;
+        try {
+            //Creates a BookContractorsCommand and sends it to the network 
+            //client.
+            cmd = new BookContractorsCommand(bookings);
+            
+            //Recieve the executed BookContractorsCommand from the network 
+            //client.
+            cmd = this.nwClient.execute(cmd);
+            
+            //Extract the outcomes from the executed command.  This throws and 
+            //exception if the Command object holds an exception object.
+            result = cmd.result();
+            if (result != null && result instanceof Map) {
+                outcomes = (Map<Long, BookingOutcome>) result;
+            }
+        } catch (Exception ex) {
+            if (ex instanceof RecordNotFoundException) {
+                throw (RecordNotFoundException) ex;
+            }
         }
         
         //Refreshes the display in the display table.
         this.refeshDisplay();
+        return outcomes;
     }
 
     /**
@@ -218,12 +366,10 @@ public class BookingModelNwImp implements BookingModel {
             //Creates a CheckContractorBookedCommand and sends it to the network 
             //client.
             cmd = new CheckContractorBookedCommand(recNo);
-            this.nwClient.send(cmd);
             
             //Recieve the executed CheckContractorBookedCommand from the network 
             //client.
-            Object obj = BookingModelNwImp.this.nwClient.receive();
-            cmd = (Command) obj;
+            cmd = this.nwClient.execute(cmd);
             
             //Extract the result object from the executed 
             //CheckContractorBookedCommand object.  This throws and exception 
@@ -277,7 +423,12 @@ public class BookingModelNwImp implements BookingModel {
             SecurityException {
         //Create a HashMap to hold searches contractor records.
         Map<Long, Contractor> contractors = new HashMap<Long, Contractor>();
-        contractors = this.searchContractors(name, location);
+        if (this.sorted) {
+            contractors = this.searchContractors(
+                    name, location, sortField, limit);
+        } else {
+            contractors = this.searchContractors(name, location);
+        }
         
         //Notifies listeners with an updated HashMap.
         this.fireChangeEvent(contractors);
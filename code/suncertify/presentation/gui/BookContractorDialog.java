@@ -18,6 +18,7 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JTextField;
 import suncertify.business.RecordAlreadyBookedException;
+import suncertify.db.LockTimeoutException;
 import suncertify.db.RecordNotFoundException;
 import suncertify.db.SecurityException;
 import suncertify.presentation.BookingController;
@@ -144,6 +145,10 @@ public class BookContractorDialog extends JDialog {
                         } catch (RecordNotFoundException ex1) {
                             ApplicationRunner.handleException(ex.getMessage());
                         }
+                    } catch (LockTimeoutException ex) {
+                        //The dialog stays open so the booking can be tried 
+                        //again once the other client has finished.
+                        ApplicationRunner.handleException(ex.getMessage());
                     } catch (RecordNotFoundException ex) {
                         ApplicationRunner.handleException(ex.getMessage());
                     } catch (SecurityException ex) {
@@ -30,7 +30,7 @@ import javax.swing.JPanel;
 import javax.swing.JTextField;
 import suncertify.presentation.BookingModelNwImp;
 import suncertify.business.network.client.BookingNwClient;
-import suncertify.db.DBAccess;
+import suncertify.db.ExtendedDBAccess;
 import suncertify.presentation.ApplicationMode;
 import suncertify.presentation.BookingController;
 import suncertify.presentation.BookingControllerImp;
@@ -698,7 +698,7 @@ public class BookingConfigurationPanel extends JPanel {
             this.dialog.setVisible(false);
             
             //Start the application as a stand alone client.
-            DBAccess dbAccess = new Data();
+            ExtendedDBAccess dbAccess = new Data();
             BookingBusinessAdapterImp dataAccessAdapter 
                     = new BookingBusinessAdapterImp(dbAccess);
             BookingModel model = new BookingModelImp(dataAccessAdapter);
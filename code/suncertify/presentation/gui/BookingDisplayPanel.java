@@ -7,9 +7,9 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.text.NumberFormat;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -200,15 +200,18 @@ public class BookingDisplayPanel extends JPanel implements BookingPanel {
      * This private method is used to refresh the display in the display table.
      */
     private void refresh() {
-        //Create a Set so when it is populated with Long objects they are sorted
-        //acending.
-        Set<Long>  recordNumbers = new TreeSet<Long>();
+        //Create a Set that keeps the record numbers in the order the 
+        //contractors were given, which is ascending record number unless the 
+        //search was sorted on the server.  The field titles record 0 is always 
+        //put first.
+        Set<Long>  recordNumbers = new LinkedHashSet<Long>();
+        recordNumbers.add(0l);
         
         //Create an array of String[] objects that inturn will hold the details 
         //of each record.
         String newData[][] = new String[contractors.size()][];
 
-        //Traverse the contractors HashMap, extract the record numbers (file 
+        //Traverse the contractors Map, extract the record numbers (file 
         //positions) and populate the recordNumbers Set.
         for (Map.Entry<Long, Contractor> entry : contractors.entrySet()) {
             recordNumbers.add(entry.getKey());
@@ -1,6 +1,7 @@
 package suncertify.presentation.gui;
 
 import javax.swing.table.AbstractTableModel;
+import suncertify.db.Contractor;
 
 /**
  * The contractor records display table model used by the
@@ -28,6 +29,20 @@ public class BookingDisplayTableModel extends AbstractTableModel {
      * An array of <code>String[]</code> objects representing the table records.
      */
     String[][] contractorArray;
+    
+    /**
+     * An array of <code>Integer</code> objects holding the size column of each 
+     * row, converted once when the model is created rather than every time a 
+     * cell is painted.
+     */
+    Integer[] sizes;
+    
+    /**
+     * An array of <code>Double</code> objects holding the rate column of each 
+     * row, converted once when the model is created rather than every time a 
+     * cell is painted.
+     */
+    Double[] rates;
 
     /**
      * The constructor takes a <code>String[]</code> to store the header titles 
@@ -42,6 +57,22 @@ public class BookingDisplayTableModel extends AbstractTableModel {
             String[] tableHeaders, String[][] contractorArray) {
         this.tableHeaders = tableHeaders;
         this.contractorArray = contractorArray;
+        
+        //Converts the size and rate columns to numbers for proper sorting.
+        this.sizes = new Integer[contractorArray.length];
+        this.rates = new Double[contractorArray.length];
+        for (int i = 0; i < contractorArray.length; i++) {
+            long size = Contractor.parseSize(
+                    contractorArray[i][Contractor.SIZE_FIELD_INDEX]);
+            if (size != Contractor.NO_VALUE) {
+                this.sizes[i] = Integer.valueOf((int) size);
+            }
+            long rateInCents = Contractor.parseRateInCents(
+                    contractorArray[i][Contractor.RATE_FIELD_INDEX]);
+            if (rateInCents != Contractor.NO_VALUE) {
+                this.rates[i] = Double.valueOf(rateInCents / 100.0);
+            }
+        }
     }
 
     /**
@@ -75,23 +106,10 @@ public class BookingDisplayTableModel extends AbstractTableModel {
     public Object getValueAt(int rowIndex, int columnIndex) {
         //Column 3 gets an Integer object for proper sorting.
         if (columnIndex == 3) {
-            String value = contractorArray[rowIndex][columnIndex];
-            if (!(value.equals(""))) {
-                Integer intValue = Integer.valueOf(value);
-                return intValue;
-            } else {
-                return null;
-            }
+            return this.sizes[rowIndex];
         //Column 4 gets a Double object for proper sorting.
         } else if (columnIndex == 4) {
-            String value = contractorArray[rowIndex][columnIndex];
-            if (!(value.equals(""))) {
-                value = value.substring(1);
-                Double doubleValue = Double.valueOf(value);
-                return doubleValue;
-            } else {
-                return null;
-            }
+            return this.rates[rowIndex];
         } else {
             return contractorArray[rowIndex][columnIndex];
         }